@@ -0,0 +1,493 @@
+/*
+ * AccessibleTermText
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.BreakIterator;
+
+import javax.accessibility.AccessibleContext;
+import javax.accessibility.AccessibleText;
+import javax.accessibility.AccessibleTextSequence;
+import javax.swing.Timer;
+import javax.swing.text.AttributeSet;
+
+/**
+ * Accessible text of the screen rows of a {@link TermPanel}, derived from its {@link RowTextCache}.
+ *
+ * <p>
+ * Rows are joined by line feeds without trailing blanks. After a frame the panel hands over the row versions; the
+ * joined text is rebuilt only when it is needed. Announcements go out in batches at most every
+ * {@link #ANNOUNCE_INTERVAL} milliseconds and hold each row changed since the last batch once, with its current
+ * text, up to {@link #MAX_ANNOUNCEMENT} chars from the bottom. A prompt edited per keystroke or a clock updated
+ * per second is therefore read once per batch, and a busy terminal neither floods the screen reader nor slows down
+ * rendering. Only used on the event dispatch thread.
+ * </p>
+ */
+final class AccessibleTermText implements AccessibleText {
+
+    /** The minimum interval between announcements in milliseconds. */
+    static final int ANNOUNCE_INTERVAL = 500;
+
+    /** The maximum length of an announcement. */
+    static final int MAX_ANNOUNCEMENT = 2000;
+
+    /** The panel. */
+    private final TermPanel panel;
+
+    /** The text cache. */
+    private final RowTextCache textCache;
+
+    /** The accessible context to fire events on. */
+    private final AccessibleContext context;
+
+    /** The announcement timer. */
+    private final Timer announceTimer;
+
+    /** The row versions seen at their rows, to tell when the text is stale. */
+    private long[] versions = new long[0];
+
+    /** The newest version announced; versions only grow, rows moved by scrolls keep older ones. */
+    private long announcedVersion;
+
+    /** The newest version seen. */
+    private long newestVersion;
+
+    /** The text, rebuilt when stale. */
+    private final StringBuilder text = new StringBuilder();
+
+    /** The offset of each row in the text. */
+    private int[] rowStart = new int[0];
+
+    /** The text is stale. */
+    private boolean stale = true;
+
+    /** The cursor column. */
+    private int cursorX;
+
+    /** The cursor row. */
+    private int cursorY;
+
+    /** The caret moved since the last announcement. */
+    private boolean caretMoved;
+
+    /** The number of announcements. */
+    private long announcements;
+
+    /**
+     * Instantiates a new accessible term text.
+     *
+     * @param panel
+     *            the panel
+     * @param textCache
+     *            the text cache of the panel
+     * @param context
+     *            the accessible context of the panel
+     */
+    AccessibleTermText(final TermPanel panel, final RowTextCache textCache, final AccessibleContext context) {
+        this.panel = panel;
+        this.textCache = textCache;
+        this.context = context;
+        this.announceTimer = new Timer(ANNOUNCE_INTERVAL, new ActionListener() {
+
+            @SuppressWarnings({ "synthetic-access", "unused" })
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                AccessibleTermText.this.announce();
+            }
+        });
+        this.announceTimer.setRepeats(false);
+    }
+
+    /**
+     * Take over the changes of a frame: remember the row versions and the newest one. The text is read when the
+     * batch is announced, so a row changed in several frames is announced once. Rows moved by server scrolls keep
+     * their version and are not announced again.
+     *
+     * @param cursor
+     *            the cursor position
+     */
+    void update(final Point cursor) {
+        final int height = this.textCache.getHeight();
+        if (this.versions.length != height) {
+            this.versions = new long[height];
+        }
+        for (int y = 0; y < height; y++) {
+            final long version = this.textCache.getVersion(y);
+            if (version != this.versions[y]) {
+                this.versions[y] = version;
+                this.newestVersion = Math.max(this.newestVersion, version);
+                this.stale = true;
+            }
+        }
+        if (cursor.x != this.cursorX || cursor.y != this.cursorY) {
+            this.cursorX = cursor.x;
+            this.cursorY = cursor.y;
+            this.caretMoved = true;
+        }
+        if ((this.newestVersion > this.announcedVersion || this.caretMoved) && !this.announceTimer.isRunning()) {
+            this.announceTimer.start();
+        }
+    }
+
+    /**
+     * Announce the rows changed since the last batch and the caret move. The rows are collected in one pass from the
+     * bottom; the sequence spans the text from the first to the last announced row, which is exactly the batch when
+     * the changed rows are adjacent, e.g. new output lines.
+     */
+    private void announce() {
+        if (this.newestVersion > this.announcedVersion) {
+            this.ensureText();
+            final int height = Math.min(this.versions.length, this.rowStart.length - 1);
+            int first = -1;
+            int last = -1;
+            int length = 0;
+            for (int y = height - 1; y >= 0; y--) {
+                final int rowLength = this.rowStart[y + 1] - this.rowStart[y];
+                /* blank rows have just their line feed */
+                if (this.versions[y] <= this.announcedVersion || rowLength <= 1) {
+                    continue;
+                }
+                if (last >= 0 && length + rowLength > MAX_ANNOUNCEMENT) {
+                    break;
+                }
+                if (last < 0) {
+                    last = y;
+                }
+                first = y;
+                length += rowLength;
+            }
+            if (first >= 0) {
+                final StringBuilder batch = new StringBuilder(length);
+                for (int y = first; y <= last; y++) {
+                    if (this.versions[y] > this.announcedVersion) {
+                        batch.append(this.text, this.rowStart[y], this.rowStart[y + 1]);
+                    }
+                }
+                this.announcements++;
+                this.context.firePropertyChange(AccessibleContext.ACCESSIBLE_TEXT_PROPERTY, null,
+                    new AccessibleTextSequence(this.rowStart[first], this.rowStart[last + 1], batch.toString()));
+            }
+            this.announcedVersion = this.newestVersion;
+        }
+        if (this.caretMoved) {
+            this.caretMoved = false;
+            this.context.firePropertyChange(AccessibleContext.ACCESSIBLE_CARET_PROPERTY, null,
+                Integer.valueOf(this.getCaretPosition()));
+        }
+    }
+
+    /**
+     * Stop announcing and drop the pending announcement.
+     */
+    void dispose() {
+        this.announceTimer.stop();
+        this.announcedVersion = this.newestVersion;
+    }
+
+    /**
+     * Gets the number of announcements.
+     *
+     * @return the announcements
+     */
+    long getAnnouncements() {
+        return this.announcements;
+    }
+
+    /**
+     * Gets the length of a row without trailing blanks.
+     *
+     * @param row
+     *            the row
+     * @return the length
+     */
+    private static int trimmedLength(final char[] row) {
+        int end = row.length;
+        while (end > 0 && Character.isWhitespace(row[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Rebuild the text from the text cache if stale.
+     */
+    private void ensureText() {
+        if (!this.stale) {
+            return;
+        }
+        final int height = this.textCache.getHeight();
+        if (this.rowStart.length != height + 1) {
+            this.rowStart = new int[height + 1];
+        }
+        this.text.setLength(0);
+        for (int y = 0; y < height; y++) {
+            this.rowStart[y] = this.text.length();
+            final char[] row = this.textCache.getRow(y);
+            this.text.append(row, 0, trimmedLength(row)).append('\n');
+        }
+        this.rowStart[height] = this.text.length();
+        this.stale = false;
+    }
+
+    /**
+     * Gets the row of an index.
+     *
+     * @param index
+     *            the index
+     * @return the row, -1 if out of range
+     */
+    private int rowOf(final int index) {
+        this.ensureText();
+        if (index < 0 || index >= this.text.length()) {
+            return -1;
+        }
+        int lo = 0;
+        int hi = this.rowStart.length - 2;
+        while (lo < hi) {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (this.rowStart[mid] <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Gets the index of a cell, clamped to the text of its row.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the index
+     */
+    private int indexOf(final int x, final int y) {
+        this.ensureText();
+        final int height = this.rowStart.length - 1;
+        if (height <= 0) {
+            return 0;
+        }
+        final int row = Math.max(0, Math.min(y, height - 1));
+        return this.rowStart[row] + Math.max(0, Math.min(x, this.rowStart[row + 1] - this.rowStart[row] - 1));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getIndexAtPoint(java.awt.Point)
+     */
+    /** {@inheritDoc} */
+    @Override
+    public int getIndexAtPoint(final Point p) {
+        final Point cell = this.panel.panelToCharCoords(p);
+        return cell.y < 0 ? -1 : this.indexOf(cell.x, cell.y);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getCharacterBounds(int)
+     */
+    /** {@inheritDoc} */
+    @Override
+    public Rectangle getCharacterBounds(final int i) {
+        final int row = this.rowOf(i);
+        if (row < 0) {
+            return null;
+        }
+        return this.panel.getCellBounds(i - this.rowStart[row], row);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getCharCount()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public int getCharCount() {
+        this.ensureText();
+        return this.text.length();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getCaretPosition()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public int getCaretPosition() {
+        return this.indexOf(this.cursorX, this.cursorY);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getAtIndex(int, int)
+     */
+    /** {@inheritDoc} */
+    @Override
+    public String getAtIndex(final int part, final int index) {
+        return this.getPart(part, index, 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getAfterIndex(int, int)
+     */
+    /** {@inheritDoc} */
+    @Override
+    public String getAfterIndex(final int part, final int index) {
+        return this.getPart(part, index, 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getBeforeIndex(int, int)
+     */
+    /** {@inheritDoc} */
+    @Override
+    public String getBeforeIndex(final int part, final int index) {
+        return this.getPart(part, index, -1);
+    }
+
+    /**
+     * Gets the character, word or row at, after or before an index. Rows stand in for sentences.
+     *
+     * @param part
+     *            the part, one of CHARACTER, WORD and SENTENCE
+     * @param index
+     *            the index
+     * @param direction
+     *            0 for the part at the index, 1 for the one after, -1 for the one before
+     * @return the text, null if there is none
+     */
+    private String getPart(final int part, final int index, final int direction) {
+        this.ensureText();
+        final int length = this.text.length();
+        if (index < 0 || index >= length) {
+            return null;
+        }
+        switch (part) {
+            case AccessibleText.CHARACTER: {
+                final int i = index + direction;
+                return i >= 0 && i < length ? String.valueOf(this.text.charAt(i)) : null;
+            }
+            case AccessibleText.WORD: {
+                final BreakIterator words = BreakIterator.getWordInstance();
+                words.setText(this.text.toString());
+                int start = words.isBoundary(index) ? index : words.preceding(index);
+                if (direction > 0) {
+                    start = words.following(index);
+                } else if (direction < 0) {
+                    start = start > 0 ? words.preceding(start) : BreakIterator.DONE;
+                }
+                if (start == BreakIterator.DONE || start >= length) {
+                    return null;
+                }
+                final int end = words.following(start);
+                return this.text.substring(start, end == BreakIterator.DONE ? length : end);
+            }
+            case AccessibleText.SENTENCE: {
+                final int row = this.rowOf(index) + direction;
+                if (row < 0 || row >= this.rowStart.length - 1) {
+                    return null;
+                }
+                return this.text.substring(this.rowStart[row], this.rowStart[row + 1]);
+            }
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getCharacterAttribute(int)
+     */
+    /** {@inheritDoc} */
+    @SuppressWarnings("unused")
+    @Override
+    public AttributeSet getCharacterAttribute(final int i) {
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getSelectionStart()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public int getSelectionStart() {
+        final Point[] selection = this.orderedSelection();
+        return selection == null ? this.getCaretPosition() : this.indexOf(selection[0].x, selection[0].y);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getSelectionEnd()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public int getSelectionEnd() {
+        final Point[] selection = this.orderedSelection();
+        return selection == null ? this.getCaretPosition() : this.indexOf(selection[1].x, selection[1].y);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.accessibility.AccessibleText#getSelectedText()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public String getSelectedText() {
+        return this.panel.getSelectedText();
+    }
+
+    /**
+     * Gets the selection of the panel clipped to the screen rows, start first.
+     *
+     * @return the start and the end, null if there is no selection on the screen rows
+     */
+    private Point[] orderedSelection() {
+        final Point a = this.panel.getSelectionStart();
+        final Point b = this.panel.getSelectionEnd();
+        if (a == null || b == null) {
+            return null;
+        }
+        final boolean ordered = a.y < b.y || a.y == b.y && a.x <= b.x;
+        final Point start = ordered ? a : b;
+        final Point end = ordered ? b : a;
+        if (end.y < 0) {
+            return null;
+        }
+        return new Point[] { start.y < 0 ? new Point(0, 0) : start, end };
+    }
+}
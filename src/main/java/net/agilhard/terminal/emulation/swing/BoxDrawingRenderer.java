@@ -0,0 +1,455 @@
+/*
+ * BoxDrawingRenderer
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+
+/**
+ * Draws box drawing (U+2500..U+257F) and block element (U+2580..U+259F) characters procedurally.
+ *
+ * <p>
+ * Each character is turned into a list of rectangles in cell coordinates once per cell size, drawing is a few
+ * fillRect calls in the current color. Lines always reach the cell edges, so adjacent cells join without gaps
+ * regardless of the font. Dashed lines are drawn as dashes, arcs as corners, diagonals as lines.
+ * </p>
+ */
+final class BoxDrawingRenderer {
+
+    /** The first code point handled. */
+    static final char FIRST = '\u2500';
+
+    /** The last code point handled. */
+    static final char LAST = '\u259f';
+
+    /** No line. */
+    private static final int NONE = 0;
+
+    /** Light line. */
+    private static final int LIGHT = 1;
+
+    /** Heavy line. */
+    private static final int HEAVY = 2;
+
+    /** Double line. */
+    private static final int DOUBLE = 3;
+
+    /**
+     * The arms of U+2500..U+257F, four digits per character for left, right, up and down: 0 none, 1 light, 2
+     * heavy, 3 double.
+     */
+    private static final String ARMS =
+        /* 2500 */ "1100220000110022110022000011002211002200001100220101020101020202"
+        /* 2510 */ + "1001200110022002011002100120022010102010102020200111021101210112"
+        /* 2520 */ + "0122022102120222101120111021101210222021201220221101210112012201"
+        /* 2530 */ + "1102210212022202111021101210221011202120122022201111211112112211"
+        /* 2540 */ + "1121111211222121122121121212222122122122122222221100220000110022"
+        /* 2550 */ + "3300003303010103030330011003300303100130033030101030303003110133"
+        /* 2560 */ + "0333301110333033330111033303331011303330331111333333010110011010"
+        /* 2570 */ + "0110000000000000100000100100000120000020020000021200001221000021";
+
+    /** The shade composites for U+2591..U+2593. */
+    private static final Composite[] SHADES = { AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.25f),
+        AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f),
+        AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.75f) };
+
+    /** The rectangles per character for the current cell size, x, y, w, h quadruples. */
+    private final int[][] rects = new int[LAST - FIRST + 1][];
+
+    /** The cell width. */
+    private int width;
+
+    /** The cell height. */
+    private int height;
+
+    /** The light line thickness. */
+    private int light;
+
+    /** The heavy line thickness. */
+    private int heavy;
+
+    /** The gap between the strokes of a double line. */
+    private int gap;
+
+    /** The rectangle buffer used while building. */
+    private int[] tmp = new int[64];
+
+    /** The number of ints in the buffer. */
+    private int tmpLen;
+
+    /**
+     * Checks if a char is handled.
+     *
+     * @param c
+     *            the char
+     * @return true, if handled
+     */
+    static boolean handles(final char c) {
+        return c >= FIRST && c <= LAST;
+    }
+
+    /**
+     * Reset the geometry for a new cell size.
+     *
+     * @param cellWidth
+     *            the cell width
+     * @param cellHeight
+     *            the cell height
+     */
+    void reset(final int cellWidth, final int cellHeight) {
+        this.width = cellWidth;
+        this.height = cellHeight;
+        this.light = Math.max(1, Math.round(cellWidth / 8f));
+        this.heavy = Math.max(this.light + 1, Math.round(cellWidth / 4f));
+        this.gap = Math.max(1, this.light);
+        Arrays.fill(this.rects, null);
+    }
+
+    /**
+     * Build the geometry of all characters ahead of time.
+     */
+    void warmUp() {
+        for (char c = FIRST; c <= LAST; c++) {
+            final boolean drawnDirectly = c >= '\u2571' && c <= '\u2573' || c >= '\u2591' && c <= '\u2593';
+            if (this.rects[c - FIRST] == null && !drawnDirectly) {
+                this.rects[c - FIRST] = this.build(c);
+            }
+        }
+    }
+
+    /**
+     * Draw a character in the current color.
+     *
+     * @param g
+     *            the graphics
+     * @param c
+     *            the char, see {@link #handles(char)}
+     * @param x
+     *            the pixel x of the cell
+     * @param y
+     *            the pixel y of the top of the cell
+     */
+    void draw(final Graphics2D g, final char c, final int x, final int y) {
+        if (c >= '\u2571' && c <= '\u2573') {
+            if (c != '\u2572') {
+                g.drawLine(x, y + this.height - 1, x + this.width - 1, y);
+            }
+            if (c != '\u2571') {
+                g.drawLine(x, y, x + this.width - 1, y + this.height - 1);
+            }
+            return;
+        }
+        if (c >= '\u2591' && c <= '\u2593') {
+            final Composite old = g.getComposite();
+            g.setComposite(SHADES[c - '\u2591']);
+            g.fillRect(x, y, this.width, this.height);
+            g.setComposite(old);
+            return;
+        }
+        int[] r = this.rects[c - FIRST];
+        if (r == null) {
+            r = this.build(c);
+            this.rects[c - FIRST] = r;
+        }
+        for (int i = 0; i < r.length; i += 4) {
+            g.fillRect(x + r[i], y + r[i + 1], r[i + 2], r[i + 3]);
+        }
+    }
+
+    /**
+     * Build the rectangles of a character.
+     *
+     * @param c
+     *            the char
+     * @return the rectangles
+     */
+    private int[] build(final char c) {
+        this.tmpLen = 0;
+        if (c < '\u2580') {
+            final int i = (c - FIRST) * 4;
+            final int left = ARMS.charAt(i) - '0';
+            final int right = ARMS.charAt(i + 1) - '0';
+            final int up = ARMS.charAt(i + 2) - '0';
+            final int down = ARMS.charAt(i + 3) - '0';
+            final int cx = this.width / 2;
+            final int cy = this.height / 2;
+            final int dashes = dashes(c);
+            if (dashes > 0 && left != NONE) {
+                this.dashed(true, left, dashes, cx, cy);
+            } else if (dashes > 0) {
+                this.dashed(false, up, dashes, cx, cy);
+            } else {
+                this.arm(true, left, 0, this.spanEnd(up == NONE && down == NONE ? left : Math.max(up, down), cx),
+                    cy);
+                this.arm(true, right, this.spanStart(up == NONE && down == NONE ? right : Math.max(up, down), cx),
+                    this.width, cy);
+                this.arm(false, up, 0, this.spanEnd(left == NONE && right == NONE ? up : Math.max(left, right), cy),
+                    cx);
+                this.arm(false, down,
+                    this.spanStart(left == NONE && right == NONE ? down : Math.max(left, right), cy), this.height,
+                    cx);
+            }
+        } else {
+            this.block(c);
+        }
+        return Arrays.copyOf(this.tmp, this.tmpLen);
+    }
+
+    /**
+     * Gets the number of dashes of a dashed line, 0 for solid lines.
+     *
+     * @param c
+     *            the char
+     * @return the dash count
+     */
+    private static int dashes(final char c) {
+        if (c >= '\u2504' && c <= '\u2507') {
+            return 3;
+        }
+        if (c >= '\u2508' && c <= '\u250b') {
+            return 4;
+        }
+        if (c >= '\u254c' && c <= '\u254f') {
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the first pixel of the span covered by a line of a type centered at c.
+     *
+     * @param type
+     *            the line type
+     * @param c
+     *            the center
+     * @return the first pixel
+     */
+    private int spanStart(final int type, final int c) {
+        switch (type) {
+            case HEAVY:
+                return c - this.heavy / 2;
+            case DOUBLE:
+                return c - (this.light + this.gap) / 2 - this.light / 2;
+            default:
+                return c - this.light / 2;
+        }
+    }
+
+    /**
+     * Gets the pixel after the span covered by a line of a type centered at c.
+     *
+     * @param type
+     *            the line type
+     * @param c
+     *            the center
+     * @return the end pixel, exclusive
+     */
+    private int spanEnd(final int type, final int c) {
+        switch (type) {
+            case HEAVY:
+                return this.spanStart(type, c) + this.heavy;
+            case DOUBLE:
+                return this.spanStart(type, c) + 2 * this.light + this.gap;
+            default:
+                return this.spanStart(type, c) + this.light;
+        }
+    }
+
+    /**
+     * Add the rectangles of an arm.
+     *
+     * @param horizontal
+     *            true for a horizontal arm
+     * @param type
+     *            the line type
+     * @param from
+     *            the first pixel along the arm
+     * @param to
+     *            the pixel after the arm
+     * @param c
+     *            the center across the arm
+     */
+    private void arm(final boolean horizontal, final int type, final int from, final int to, final int c) {
+        if (type == NONE || to <= from) {
+            return;
+        }
+        final int s = this.spanStart(type, c);
+        if (type == DOUBLE) {
+            this.stroke(horizontal, from, to, s, this.light);
+            this.stroke(horizontal, from, to, s + this.light + this.gap, this.light);
+        } else {
+            this.stroke(horizontal, from, to, s, type == HEAVY ? this.heavy : this.light);
+        }
+    }
+
+    /**
+     * Add a dashed line across the whole cell.
+     *
+     * @param horizontal
+     *            true for a horizontal line
+     * @param type
+     *            the line type
+     * @param count
+     *            the dash count
+     * @param cx
+     *            the center x
+     * @param cy
+     *            the center y
+     */
+    private void dashed(final boolean horizontal, final int type, final int count, final int cx, final int cy) {
+        final int length = horizontal ? this.width : this.height;
+        final int space = Math.max(1, length / (count * 4));
+        for (int k = 0; k < count; k++) {
+            final int from = k * length / count;
+            final int to = (k + 1) * length / count - space;
+            this.arm(horizontal, type, from, Math.max(from + 1, to), horizontal ? cy : cx);
+        }
+    }
+
+    /**
+     * Add a stroke.
+     *
+     * @param horizontal
+     *            true for a horizontal stroke
+     * @param from
+     *            the first pixel along the stroke
+     * @param to
+     *            the pixel after the stroke
+     * @param across
+     *            the first pixel across the stroke
+     * @param thickness
+     *            the thickness
+     */
+    private void stroke(final boolean horizontal, final int from, final int to, final int across,
+        final int thickness) {
+        if (horizontal) {
+            this.add(from, across, to - from, thickness);
+        } else {
+            this.add(across, from, thickness, to - from);
+        }
+    }
+
+    /**
+     * Add the rectangles of a block element.
+     *
+     * @param c
+     *            the char
+     */
+    private void block(final char c) {
+        final int w = this.width;
+        final int h = this.height;
+        final int hw = w / 2;
+        final int hh = h / 2;
+        if (c == '\u2580') {
+            this.add(0, 0, w, hh);
+        } else if (c >= '\u2581' && c <= '\u2588') {
+            /* lower eighths */
+            final int eighths = c - '\u2580';
+            final int top = h - h * eighths / 8;
+            this.add(0, top, w, h - top);
+        } else if (c >= '\u2589' && c <= '\u258f') {
+            /* left eighths */
+            final int eighths = '\u2590' - c;
+            this.add(0, 0, w * eighths / 8, h);
+        } else if (c == '\u2590') {
+            this.add(hw, 0, w - hw, h);
+        } else if (c == '\u2594') {
+            this.add(0, 0, w, Math.max(1, h / 8));
+        } else if (c == '\u2595') {
+            final int e = Math.max(1, w / 8);
+            this.add(w - e, 0, e, h);
+        } else {
+            /* quadrants, bits upper left, upper right, lower left, lower right */
+            final int q = quadrants(c);
+            if ((q & 1) != 0) {
+                this.add(0, 0, hw, hh);
+            }
+            if ((q & 2) != 0) {
+                this.add(hw, 0, w - hw, hh);
+            }
+            if ((q & 4) != 0) {
+                this.add(0, hh, hw, h - hh);
+            }
+            if ((q & 8) != 0) {
+                this.add(hw, hh, w - hw, h - hh);
+            }
+        }
+    }
+
+    /**
+     * Gets the quadrants of U+2596..U+259F.
+     *
+     * @param c
+     *            the char
+     * @return the quadrant bits
+     */
+    private static int quadrants(final char c) {
+        switch (c) {
+            case '\u2596':
+                return 4;
+            case '\u2597':
+                return 8;
+            case '\u2598':
+                return 1;
+            case '\u2599':
+                return 1 | 4 | 8;
+            case '\u259a':
+                return 1 | 8;
+            case '\u259b':
+                return 1 | 2 | 4;
+            case '\u259c':
+                return 1 | 2 | 8;
+            case '\u259d':
+                return 2;
+            case '\u259e':
+                return 2 | 4;
+            case '\u259f':
+                return 2 | 4 | 8;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Add a rectangle.
+     *
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param w
+     *            the w
+     * @param h
+     *            the h
+     */
+    private void add(final int x, final int y, final int w, final int h) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        if (this.tmpLen + 4 > this.tmp.length) {
+            this.tmp = Arrays.copyOf(this.tmp, this.tmp.length * 2);
+        }
+        this.tmp[this.tmpLen++] = x;
+        this.tmp[this.tmpLen++] = y;
+        this.tmp[this.tmpLen++] = w;
+        this.tmp[this.tmpLen++] = h;
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * CellTextRenderer
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws runs of characters so that every character stays on its cell.
+ *
+ * <p>
+ * Runs of printable ASCII are drawn with a single drawChars call. Other characters are drawn one by one: wide
+ * (East Asian wide and fullwidth, emoji) characters span two cells when followed by a padding cell ({@code '\0'} or
+ * the low surrogate of the pair) and are squeezed into one cell otherwise, combining marks are drawn over the
+ * preceding cell, characters missing from the terminal font are drawn with a fallback font. The font, offset and
+ * horizontal scale of each code point are resolved once and cached; the fallback fonts and the code points none of them
+ * can display are shared by all renderers and survive zooms. Box drawing and block elements are drawn
+ * procedurally by a {@link BoxDrawingRenderer} unless disabled.
+ * </p>
+ */
+final class CellTextRenderer {
+
+    /** The glyph cache capacity, must be a power of two. */
+    private static final int CACHE_CAPACITY = 4096;
+
+    /** The most font families probed for a fallback. */
+    private static final int MAX_FALLBACK_FAMILIES = 48;
+
+    /** The families probed first, the usual wide coverage fonts of the platforms. */
+    private static final String[] PREFERRED_FAMILIES = { "Dialog", "DejaVu Sans", "DejaVu Sans Mono", "Noto Sans",
+        "Noto Sans Symbols", "Noto Sans Symbols2", "Noto Sans CJK SC", "Noto Color Emoji", "Symbola", "Segoe UI",
+        "Segoe UI Symbol", "Segoe UI Emoji", "MS Gothic", "Microsoft YaHei", "Arial Unicode MS", "Menlo",
+        "Apple Symbols", "Apple Color Emoji", "PingFang SC", "Hiragino Sans" };
+
+    /** The glyph cache keys, code point shifted left by one, or-ed with 1 for bold; -1 for empty slots. */
+    private final int[] keys = new int[CACHE_CAPACITY];
+
+    /** The glyph cache values. */
+    private final Glyph[] glyphs = new Glyph[CACHE_CAPACITY];
+
+    /** The family that last provided a fallback, per unicode block, shared by all renderers. Guarded by itself. */
+    private static final Map<Character.UnicodeBlock, String> BLOCK_FAMILIES = new HashMap<>();
+
+    /** The code points no probed family can display, shared by all renderers. Guarded by itself. */
+    private static final BitSet UNDISPLAYABLE = new BitSet();
+
+    /** The fonts probed for a fallback, at size 1, shared by all renderers; null until loaded. */
+    private static volatile Font[] fallbackProbes;
+
+    /** The background load of the probes was started. */
+    private static boolean fallbackProbesLoading;
+
+    /** The cell width. */
+    private int cellWidth;
+
+    /** The cell height. */
+    private int cellHeight;
+
+    /** The descent. */
+    private int descent;
+
+    /** The box drawing renderer. */
+    private final BoxDrawingRenderer boxRenderer = new BoxDrawingRenderer();
+
+    /** The procedural box drawing flag. */
+    private boolean boxDrawing = true;
+
+    /** The graphics used to measure glyphs. */
+    private final Graphics2D measure;
+
+    /**
+     * The Class Glyph.
+     */
+    static final class Glyph {
+
+        /** The font to draw with, scaled if needed. */
+        final Font font;
+
+        /** The x offset in the first cell. */
+        final int offset;
+
+        /** The wide flag. */
+        final boolean wide;
+
+        /** The combining flag. */
+        final boolean combining;
+
+        /** The font squeezed into a single cell, created on first use. */
+        Font squeezedFont;
+
+        /**
+         * Instantiates a new glyph.
+         *
+         * @param font
+         *            the font
+         * @param offset
+         *            the offset
+         * @param wide
+         *            the wide flag
+         * @param combining
+         *            the combining flag
+         */
+        Glyph(final Font font, final int offset, final boolean wide, final boolean combining) {
+            this.font = font;
+            this.offset = offset;
+            this.wide = wide;
+            this.combining = combining;
+        }
+    }
+
+    /**
+     * Instantiates a new cell text renderer.
+     */
+    CellTextRenderer() {
+        this.measure = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        this.reset(1, 1, 0);
+    }
+
+    /**
+     * Reset the caches for a new cell size, fonts changed.
+     *
+     * @param newCellWidth
+     *            the new cell width
+     * @param newCellHeight
+     *            the new cell height
+     * @param newDescent
+     *            the new descent
+     */
+    void reset(final int newCellWidth, final int newCellHeight, final int newDescent) {
+        this.cellWidth = newCellWidth;
+        this.cellHeight = newCellHeight;
+        this.descent = newDescent;
+        this.boxRenderer.reset(newCellWidth, newCellHeight);
+        for (int i = 0; i < CACHE_CAPACITY; i++) {
+            this.keys[i] = -1;
+            this.glyphs[i] = null;
+        }
+    }
+
+    /**
+     * Prepare the caches for fonts ahead of time: rasterizes the printable ASCII glyphs at the device scale into
+     * the font caches of the JDK and builds the box drawing geometry. Safe to call off the event dispatch thread
+     * on a renderer that is not in use yet.
+     *
+     * @param fonts
+     *            the fonts
+     * @param antialiasing
+     *            the text antialiasing flag
+     */
+    void warmUp(final FontSetup fonts, final boolean antialiasing) {
+        final char[] ascii = new char[0x7f - ' '];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (char) (' ' + i);
+        }
+        final FontRenderContext frc =
+            new FontRenderContext(AffineTransform.getScaleInstance(fonts.scale, fonts.scale), antialiasing, false);
+        fonts.normalFont.createGlyphVector(frc, ascii).getVisualBounds();
+        fonts.boldFont.createGlyphVector(frc, ascii).getVisualBounds();
+        this.boxRenderer.warmUp();
+        getFallbackProbes();
+    }
+
+    /**
+     * Release the graphics used to measure glyphs, once the renderer was replaced.
+     */
+    void dispose() {
+        this.measure.dispose();
+    }
+
+    /**
+     * Load the fonts probed for a fallback on a background thread, unless loaded or loading already, so that the
+     * first fallback on the event dispatch thread does not have to.
+     */
+    static void loadFallbacksInBackground() {
+        synchronized (CellTextRenderer.class) {
+            if (fallbackProbes != null || fallbackProbesLoading) {
+                return;
+            }
+            fallbackProbesLoading = true;
+        }
+        final Thread loader = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                getFallbackProbes();
+            }
+        }, "TermPanel font fallbacks");
+        loader.setDaemon(true);
+        loader.setPriority(Thread.MIN_PRIORITY);
+        loader.start();
+    }
+
+    /**
+     * Draw a run of cells.
+     *
+     * @param g
+     *            the graphics
+     * @param font
+     *            the terminal font for the run
+     * @param bold
+     *            the bold flag
+     * @param buf
+     *            the buffer
+     * @param start
+     *            the start
+     * @param len
+     *            the length
+     * @param x
+     *            the pixel x of the first cell
+     * @param baseLine
+     *            the base line
+     */
+    void drawRun(final Graphics2D g, final Font font, final boolean bold, final char[] buf, final int start,
+        final int len, final int x, final int baseLine) {
+        final int end = start + len;
+        int i = start;
+        /* fast path for the printable ASCII prefix */
+        while (i < end && buf[i] >= ' ' && buf[i] < 0x7f) {
+            i++;
+        }
+        if (i > start) {
+            g.drawChars(buf, start, i - start, x, baseLine);
+        }
+        if (i == end) {
+            return;
+        }
+        int prevX = x + (i - start - 1) * this.cellWidth;
+        while (i < end) {
+            final char c = buf[i];
+            final int cellX = x + (i - start) * this.cellWidth;
+            if (c == 0) {
+                i++;
+                continue;
+            }
+            if (this.boxDrawing && BoxDrawingRenderer.handles(c)) {
+                this.boxRenderer.draw(g, c, cellX, baseLine + this.descent - this.cellHeight);
+                prevX = cellX;
+                i++;
+                continue;
+            }
+            int n = 1;
+            int cp = c;
+            if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(buf[i + 1])) {
+                cp = Character.toCodePoint(c, buf[i + 1]);
+                n = 2;
+            }
+            final Glyph glyph = this.glyph(font, bold, cp);
+            if (glyph.combining) {
+                g.setFont(glyph.font);
+                g.drawChars(buf, i, n, prevX + glyph.offset, baseLine);
+            } else {
+                final boolean padded = n == 2 || i + 1 < end && buf[i + 1] == 0;
+                if (glyph.wide && !padded) {
+                    g.setFont(squeezed(glyph));
+                    g.drawChars(buf, i, n, cellX + glyph.offset / 2, baseLine);
+                } else {
+                    g.setFont(glyph.font);
+                    g.drawChars(buf, i, n, cellX + glyph.offset, baseLine);
+                }
+                prevX = cellX;
+            }
+            i += n;
+        }
+        g.setFont(font);
+    }
+
+    /**
+     * Sets the procedural box drawing flag.
+     *
+     * @param enabled
+     *            true to draw box drawing and block elements procedurally
+     */
+    void setBoxDrawing(final boolean enabled) {
+        this.boxDrawing = enabled;
+    }
+
+    /**
+     * Checks the procedural box drawing flag.
+     *
+     * @return true, if box drawing and block elements are drawn procedurally
+     */
+    boolean isBoxDrawing() {
+        return this.boxDrawing;
+    }
+
+    /**
+     * Gets the cached glyph of a code point.
+     *
+     * @param font
+     *            the terminal font
+     * @param bold
+     *            the bold flag
+     * @param cp
+     *            the code point
+     * @return the glyph
+     */
+    private Glyph glyph(final Font font, final boolean bold, final int cp) {
+        final int key = cp << 1 | (bold ? 1 : 0);
+        final int slot = (key ^ key >>> 12) & CACHE_CAPACITY - 1;
+        if (this.keys[slot] == key) {
+            return this.glyphs[slot];
+        }
+        final Glyph glyph = this.resolve(font, cp);
+        this.keys[slot] = key;
+        this.glyphs[slot] = glyph;
+        return glyph;
+    }
+
+    /**
+     * Resolve font, offset and scale of a code point.
+     *
+     * @param font
+     *            the terminal font
+     * @param cp
+     *            the code point
+     * @return the glyph
+     */
+    private Glyph resolve(final Font font, final int cp) {
+        final boolean combining = isCombining(cp);
+        final boolean wide = !combining && isWide(cp);
+        Font f = font.canDisplay(cp) ? font : fallback(font, cp);
+
+        this.measure.setFont(f);
+        final FontMetrics fm = this.measure.getFontMetrics();
+        final int advance = fm.charWidth(cp);
+        final int target = (wide ? 2 : 1) * this.cellWidth;
+        int offset = 0;
+        if (combining) {
+            /* marks with an advance are drawn back over the base cell */
+            offset = advance > 0 ? (this.cellWidth - advance) / 2 : 0;
+        } else if (advance > target) {
+            f = f.deriveFont(AffineTransform.getScaleInstance((double) target / advance, 1));
+        } else {
+            offset = (target - advance) / 2;
+        }
+        return new Glyph(f, offset, wide, combining);
+    }
+
+    /**
+     * Gets the font of a wide glyph squeezed into a single cell.
+     *
+     * @param glyph
+     *            the glyph
+     * @return the font
+     */
+    private static Font squeezed(final Glyph glyph) {
+        if (glyph.squeezedFont == null) {
+            glyph.squeezedFont = glyph.font.deriveFont(AffineTransform.getScaleInstance(0.5, 1));
+        }
+        return glyph.squeezedFont;
+    }
+
+    /**
+     * Find a fallback font able to display a code point.
+     *
+     * @param font
+     *            the terminal font
+     * @param cp
+     *            the code point
+     * @return the fallback, the terminal font if none found
+     */
+    private static Font fallback(final Font font, final int cp) {
+        synchronized (UNDISPLAYABLE) {
+            if (UNDISPLAYABLE.get(cp)) {
+                return font;
+            }
+        }
+        final Character.UnicodeBlock block = Character.UnicodeBlock.of(cp);
+        final String known;
+        synchronized (BLOCK_FAMILIES) {
+            known = block != null ? BLOCK_FAMILIES.get(block) : null;
+        }
+        if (known != null) {
+            final Font f = new Font(known, font.getStyle(), font.getSize());
+            if (f.canDisplay(cp)) {
+                return f;
+            }
+        }
+        for (final Font probe : getFallbackProbes()) {
+            if (probe.canDisplay(cp)) {
+                final String family = probe.getFamily();
+                if (block != null) {
+                    synchronized (BLOCK_FAMILIES) {
+                        BLOCK_FAMILIES.put(block, family);
+                    }
+                }
+                return new Font(family, font.getStyle(), font.getSize());
+            }
+        }
+        synchronized (UNDISPLAYABLE) {
+            UNDISPLAYABLE.set(cp);
+        }
+        return font;
+    }
+
+    /**
+     * Gets the fonts probed for a fallback, loading them if not loaded yet. A caller arriving while another thread
+     * loads them waits for that load.
+     *
+     * @return the probes
+     */
+    private static Font[] getFallbackProbes() {
+        Font[] probes = fallbackProbes;
+        if (probes == null) {
+            synchronized (CellTextRenderer.class) {
+                probes = fallbackProbes;
+                if (probes == null) {
+                    probes = loadFallbackProbes();
+                    fallbackProbes = probes;
+                }
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * Load the fonts probed for a fallback: the available preferred families, then the other families up to
+     * {@link #MAX_FALLBACK_FAMILIES}.
+     *
+     * @return the probes
+     */
+    private static Font[] loadFallbackProbes() {
+        final String[] available = GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames();
+        final List<String> names = new ArrayList<>(Arrays.asList(available));
+        final List<Font> probes = new ArrayList<>();
+        for (final String family : PREFERRED_FAMILIES) {
+            if (names.remove(family)) {
+                probes.add(new Font(family, Font.PLAIN, 1));
+            }
+        }
+        for (final String family : names) {
+            if (probes.size() >= MAX_FALLBACK_FAMILIES) {
+                break;
+            }
+            probes.add(new Font(family, Font.PLAIN, 1));
+        }
+        return probes.toArray(new Font[probes.size()]);
+    }
+
+    /**
+     * Checks if a code point is a combining mark or zero width joiner/selector.
+     *
+     * @param cp
+     *            the code point
+     * @return true, if combining
+     */
+    static boolean isCombining(final int cp) {
+        final int type = Character.getType(cp);
+        return type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK
+            || type == Character.COMBINING_SPACING_MARK || cp == 0x200d || cp >= 0xfe00 && cp <= 0xfe0f;
+    }
+
+    /**
+     * Checks if a code point takes two cells.
+     *
+     * @param cp
+     *            the code point
+     * @return true, if wide
+     */
+    static boolean isWide(final int cp) {
+        if (cp < 0x1100) {
+            return false;
+        }
+        return cp <= 0x115f || cp >= 0x2e80 && cp <= 0x303e || cp >= 0x3041 && cp <= 0x33ff
+            || cp >= 0x3400 && cp <= 0x4dbf || cp >= 0x4e00 && cp <= 0x9fff || cp >= 0xa000 && cp <= 0xa4cf
+            || cp >= 0xac00 && cp <= 0xd7a3 || cp >= 0xf900 && cp <= 0xfaff || cp >= 0xfe30 && cp <= 0xfe4f
+            || cp >= 0xff00 && cp <= 0xff60 || cp >= 0xffe0 && cp <= 0xffe6 || cp >= 0x1f300 && cp <= 0x1f64f
+            || cp >= 0x1f900 && cp <= 0x1f9ff || cp >= 0x20000 && cp <= 0x2fffd || cp >= 0x30000 && cp <= 0x3fffd;
+    }
+}
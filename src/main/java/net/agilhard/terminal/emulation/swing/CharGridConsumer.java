@@ -0,0 +1,184 @@
+/*
+ * CharGridConsumer
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.util.Arrays;
+
+import net.agilhard.terminal.emulation.Style;
+import net.agilhard.terminal.emulation.StyledRunConsumer;
+
+/**
+ * Captures the characters of a rectangular cell region from pumped runs.
+ *
+ * <p>
+ * Runs outside of the region are clipped, so whole lines may be pumped (as the scroll buffer does) while only the
+ * requested columns are copied. Cells not covered by any run read as blanks. The backing array is reused between
+ * captures.
+ * </p>
+ */
+final class CharGridConsumer implements StyledRunConsumer {
+
+    /** The cells, row major. */
+    private char[] cells = new char[0];
+
+    /** The first column. */
+    private int x0;
+
+    /** The first row. */
+    private int y0;
+
+    /** The width. */
+    private int width;
+
+    /** The height. */
+    private int height;
+
+    /**
+     * Reset the grid to capture a new region.
+     *
+     * @param x
+     *            the first column
+     * @param y
+     *            the first row
+     * @param w
+     *            the width
+     * @param h
+     *            the height
+     */
+    void reset(final int x, final int y, final int w, final int h) {
+        this.x0 = x;
+        this.y0 = y;
+        this.width = Math.max(0, w);
+        this.height = Math.max(0, h);
+        final int size = this.width * this.height;
+        if (this.cells.length < size) {
+            this.cells = new char[size];
+        }
+        Arrays.fill(this.cells, 0, size, ' ');
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see net.agilhard.terminal.emulation.StyledRunConsumer#consumeRun(int, int,
+     * net.agilhard.terminal.emulation.Style, char[], int, int)
+     */
+    /** {@inheritDoc} */
+    @SuppressWarnings("unused")
+    @Override
+    public void consumeRun(final int x, final int y, final Style style, final char[] buf, final int start,
+        final int len) {
+        final int row = y - this.y0;
+        if (row < 0 || row >= this.height) {
+            return;
+        }
+        final int from = Math.max(x, this.x0);
+        final int to = Math.min(x + len, this.x0 + this.width);
+        if (from >= to) {
+            return;
+        }
+        System.arraycopy(buf, start + from - x, this.cells, row * this.width + from - this.x0, to - from);
+    }
+
+    /**
+     * Gets the char at a cell.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the char, a blank outside of the region
+     */
+    char charAt(final int x, final int y) {
+        final int col = x - this.x0;
+        final int row = y - this.y0;
+        if (col < 0 || col >= this.width || row < 0 || row >= this.height) {
+            return ' ';
+        }
+        return this.cells[row * this.width + col];
+    }
+
+    /**
+     * Append a captured row without trailing blanks.
+     *
+     * @param sb
+     *            the target
+     * @param y
+     *            the row
+     */
+    void appendRow(final StringBuffer sb, final int y) {
+        final int row = y - this.y0;
+        if (row < 0 || row >= this.height) {
+            return;
+        }
+        final int offset = row * this.width;
+        int end = this.width;
+        while (end > 0 && Character.isWhitespace(this.cells[offset + end - 1])) {
+            end--;
+        }
+        sb.append(this.cells, offset, end);
+    }
+
+    /**
+     * Gets the backing array, row major with {@link #getWidth()} cells per row.
+     *
+     * @return the cells
+     */
+    char[] getCells() {
+        return this.cells;
+    }
+
+    /**
+     * Gets the offset of a row in the backing array.
+     *
+     * @param y
+     *            the row
+     * @return the offset
+     */
+    int getOffset(final int y) {
+        return (y - this.y0) * this.width;
+    }
+
+    /**
+     * Gets the width.
+     *
+     * @return the width
+     */
+    int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Gets the first row.
+     *
+     * @return the first row
+     */
+    int getY0() {
+        return this.y0;
+    }
+
+    /**
+     * Gets the height.
+     *
+     * @return the height
+     */
+    int getHeight() {
+        return this.height;
+    }
+}
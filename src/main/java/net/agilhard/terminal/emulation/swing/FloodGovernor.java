@@ -0,0 +1,221 @@
+/*
+ * FloodGovernor
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+/**
+ * Detects output floods and throttles rendering while they last.
+ *
+ * <p>
+ * The governor keeps an exponential moving average of the output rate in screens per second, from the lines scrolled
+ * between two rendered frames. Damage in place is not counted: full screen applications such as vim or less repaint
+ * the whole screen per page and must not be throttled for it. Above {@link #ENTER_RATE} it enters flood mode and
+ * lets only every {@link #FLOOD_INTERVAL}th redraw tick render; below {@link #EXIT_RATE} it returns to normal. The
+ * gap between both thresholds keeps the mode from flapping. Access is confined to holders of the back buffer lock,
+ * except for {@link #shouldRender()} which is called on the event dispatch thread only.
+ * </p>
+ */
+final class FloodGovernor {
+
+    /** The rate in screens per second above which flood mode is entered. */
+    static final double ENTER_RATE = 8.0;
+
+    /** The rate in screens per second below which flood mode is left. */
+    static final double EXIT_RATE = 2.0;
+
+    /** The smoothing factor of the moving average. */
+    private static final double ALPHA = 0.3;
+
+    /** In flood mode only every FLOOD_INTERVAL-th redraw tick renders. */
+    static final int FLOOD_INTERVAL = 4;
+
+    /** The enabled flag. */
+    private volatile boolean enabled = true;
+
+    /** The flooding flag. */
+    private volatile boolean flooding;
+
+    /** The lines scrolled since the last sample. */
+    private int scrolledLines;
+
+    /** The time of the last sample, 0 before the first one. */
+    private long lastSample;
+
+    /** The smoothed rate in screens per second. */
+    private volatile double rate;
+
+    /** The ticks since the last rendered frame in flood mode. */
+    private int ticks;
+
+    /** The number of flood episodes. */
+    private volatile long episodes;
+
+    /** The number of redraw ticks dropped. */
+    private volatile long framesDropped;
+
+    /** The number of frames collapsed into a full repaint. */
+    private volatile long framesCollapsed;
+
+    /**
+     * Adds scrolled lines.
+     *
+     * @param lines
+     *            the lines
+     */
+    void addScrolledLines(final int lines) {
+        this.scrolledLines += lines;
+    }
+
+    /**
+     * Forget the output seen so far and leave flood mode, e.g. after rendering was suspended.
+     */
+    void reset() {
+        this.scrolledLines = 0;
+        this.lastSample = 0;
+        this.rate = 0;
+        this.ticks = 0;
+        this.flooding = false;
+    }
+
+    /**
+     * Checks whether the current redraw tick should render.
+     *
+     * @return true, if the tick should render
+     */
+    boolean shouldRender() {
+        if (!this.flooding) {
+            return true;
+        }
+        if (++this.ticks < FLOOD_INTERVAL) {
+            this.framesDropped++;
+            return false;
+        }
+        this.ticks = 0;
+        return true;
+    }
+
+    /**
+     * Sample the output since the last sample and update the mode.
+     *
+     * @param height
+     *            the terminal height
+     * @param now
+     *            the current time in nanoseconds
+     */
+    void sample(final int height, final long now) {
+        if (this.lastSample != 0 && now > this.lastSample && height > 0) {
+            final double screens = (double) this.scrolledLines / height;
+            final double current = screens * 1e9 / (now - this.lastSample);
+            this.rate += ALPHA * (current - this.rate);
+        }
+        this.lastSample = now;
+        this.scrolledLines = 0;
+
+        final boolean flood = this.enabled && (this.flooding ? this.rate > EXIT_RATE : this.rate > ENTER_RATE);
+        if (flood && !this.flooding) {
+            this.episodes++;
+            this.ticks = 0;
+        }
+        this.flooding = flood;
+    }
+
+    /**
+     * Checks whether pending scrolls should be collapsed into a full repaint: in flood mode, once at least a screen
+     * has scrolled away copying the old pixels is wasted work.
+     *
+     * @param pendingLines
+     *            the lines scrolled by the pending scrolls
+     * @param height
+     *            the terminal height
+     * @return true, if the frame should be collapsed
+     */
+    boolean shouldCollapse(final int pendingLines, final int height) {
+        if (this.flooding && pendingLines >= height) {
+            this.framesCollapsed++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if is enabled.
+     *
+     * @return true, if is enabled
+     */
+    boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Sets the enabled flag. Disabling leaves flood mode at once.
+     *
+     * @param enabled
+     *            the new enabled flag
+     */
+    void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            this.flooding = false;
+        }
+    }
+
+    /**
+     * Checks if is flooding.
+     *
+     * @return true, if is flooding
+     */
+    boolean isFlooding() {
+        return this.flooding;
+    }
+
+    /**
+     * Gets the smoothed output rate.
+     *
+     * @return the rate in screens per second
+     */
+    double getRate() {
+        return this.rate;
+    }
+
+    /**
+     * Gets the number of flood episodes.
+     *
+     * @return the episodes
+     */
+    long getEpisodes() {
+        return this.episodes;
+    }
+
+    /**
+     * Gets the number of dropped redraw ticks.
+     *
+     * @return the frames dropped
+     */
+    long getFramesDropped() {
+        return this.framesDropped;
+    }
+
+    /**
+     * Gets the number of frames collapsed into a full repaint.
+     *
+     * @return the frames collapsed
+     */
+    long getFramesCollapsed() {
+        return this.framesCollapsed;
+    }
+}
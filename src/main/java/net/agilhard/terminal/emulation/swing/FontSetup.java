@@ -0,0 +1,125 @@
+/*
+ * FontSetup
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Immutable fonts and cell metrics of a {@link TermPanel}.
+ *
+ * <p>
+ * Measuring does not touch the panel, so it can be done off the event dispatch thread and swapped in later.
+ * </p>
+ */
+final class FontSetup {
+
+    /** The normal font. */
+    final Font normalFont;
+
+    /** The bold font. */
+    final Font boldFont;
+
+    /** The cell width. */
+    final int charWidth;
+
+    /** The cell height. */
+    final int charHeight;
+
+    /** The descent, including the line space. */
+    final int descent;
+
+    /** The device scale the metrics were measured for. */
+    final double scale;
+
+    /**
+     * Instantiates a new font setup.
+     *
+     * @param normalFont
+     *            the normal font
+     * @param boldFont
+     *            the bold font
+     * @param charWidth
+     *            the char width
+     * @param charHeight
+     *            the char height
+     * @param descent
+     *            the descent
+     * @param scale
+     *            the scale
+     */
+    private FontSetup(final Font normalFont, final Font boldFont, final int charWidth, final int charHeight,
+        final int descent, final double scale) {
+        this.normalFont = normalFont;
+        this.boldFont = boldFont;
+        this.charWidth = charWidth;
+        this.charHeight = charHeight;
+        this.descent = descent;
+        this.scale = scale;
+    }
+
+    /**
+     * Measure fonts.
+     *
+     * @param normalFont
+     *            the normal font
+     * @param boldFont
+     *            the bold font
+     * @param scale
+     *            the device scale
+     * @param lineSpace
+     *            the line space
+     * @return the font setup
+     */
+    static FontSetup measure(final Font normalFont, final Font boldFont, final double scale, final int lineSpace) {
+        final BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = image.createGraphics();
+        try {
+            /* measure with the device transform so the grid matches the hinted glyphs */
+            graphics.setTransform(AffineTransform.getScaleInstance(scale, scale));
+            graphics.setFont(normalFont);
+
+            final FontMetrics fo = graphics.getFontMetrics();
+            return new FontSetup(normalFont, boldFont, fo.charWidth('@'), fo.getHeight() + lineSpace * 2,
+                fo.getDescent() + lineSpace, scale);
+        } finally {
+            graphics.dispose();
+            image.flush();
+        }
+    }
+
+    /**
+     * Measure monospaced fonts of a size.
+     *
+     * @param size
+     *            the size
+     * @param scale
+     *            the device scale
+     * @param lineSpace
+     *            the line space
+     * @return the font setup
+     */
+    static FontSetup monospaced(final int size, final double scale, final int lineSpace) {
+        return measure(new Font("monospaced", Font.PLAIN, size), new Font("monospaced", Font.BOLD, size), scale,
+            lineSpace);
+    }
+}
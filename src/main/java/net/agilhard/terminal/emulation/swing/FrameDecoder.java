@@ -0,0 +1,390 @@
+/*
+ * FrameDecoder
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes the stream written by a {@link FrameEncoder} back into a character grid.
+ *
+ * <p>
+ * Used by remote viewers and to check round trips locally without a network.
+ * </p>
+ */
+public class FrameDecoder {
+
+    /** The columns. */
+    private int columns;
+
+    /** The rows. */
+    private int rows;
+
+    /** The chars. */
+    private char[][] chars = new char[0][];
+
+    /** The style id per cell, -1 for blank cells. */
+    private int[][] styles = new int[0][];
+
+    /** The foreground per style id. */
+    private int[] styleForeground = new int[16];
+
+    /** The background per style id. */
+    private int[] styleBackground = new int[16];
+
+    /** The flags per style id. */
+    private int[] styleFlags = new int[16];
+
+    /** The cursor x. */
+    private int cursorX;
+
+    /** The cursor y. */
+    private int cursorY;
+
+    /** The frames read. */
+    private long framesRead;
+
+    /**
+     * Read one frame.
+     *
+     * @param in
+     *            the stream
+     * @return true, if a frame was read; false at the end of the stream
+     * @throws IOException
+     *             Signals that an I/O exception has occurred or that the stream is corrupt.
+     */
+    public boolean readFrame(final InputStream in) throws IOException {
+        final int first = in.read();
+        if (first < 0) {
+            return false;
+        }
+        if (first != FrameEncoder.OP_FRAME) {
+            throw new IOException("frame expected, got opcode " + first);
+        }
+        final int newColumns = readVarint(in);
+        final int newRows = readVarint(in);
+        final boolean keyframe = readByte(in) != 0;
+        this.resize(newColumns, newRows, keyframe);
+
+        for (;;) {
+            final int op = readByte(in);
+            switch (op) {
+                case FrameEncoder.OP_STYLE:
+                    this.readStyle(in);
+                    break;
+                case FrameEncoder.OP_RUN:
+                    this.readRun(in);
+                    break;
+                case FrameEncoder.OP_SCROLL:
+                    this.scroll(readSignedVarint(in), readVarint(in), readSignedVarint(in));
+                    break;
+                case FrameEncoder.OP_CURSOR:
+                    this.cursorX = readVarint(in);
+                    this.cursorY = readVarint(in);
+                    break;
+                case FrameEncoder.OP_END:
+                    this.framesRead++;
+                    return true;
+                default:
+                    throw new IOException("unknown opcode " + op);
+            }
+        }
+    }
+
+    /**
+     * Resize the grid.
+     *
+     * @param newColumns
+     *            the new columns
+     * @param newRows
+     *            the new rows
+     * @param clear
+     *            true to drop the old content
+     */
+    private void resize(final int newColumns, final int newRows, final boolean clear) {
+        if (!clear && newColumns == this.columns && newRows == this.rows) {
+            return;
+        }
+        final char[][] newChars = new char[newRows][newColumns];
+        final int[][] newStyles = new int[newRows][newColumns];
+        for (int y = 0; y < newRows; y++) {
+            Arrays.fill(newChars[y], ' ');
+            Arrays.fill(newStyles[y], -1);
+            if (!clear && y < this.rows) {
+                final int w = Math.min(newColumns, this.columns);
+                System.arraycopy(this.chars[y], 0, newChars[y], 0, w);
+                System.arraycopy(this.styles[y], 0, newStyles[y], 0, w);
+            }
+        }
+        this.chars = newChars;
+        this.styles = newStyles;
+        this.columns = newColumns;
+        this.rows = newRows;
+    }
+
+    /**
+     * Read a style definition.
+     *
+     * @param in
+     *            the stream
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void readStyle(final InputStream in) throws IOException {
+        final int id = readVarint(in);
+        if (id >= this.styleForeground.length) {
+            final int size = Math.max(id + 1, this.styleForeground.length * 2);
+            this.styleForeground = Arrays.copyOf(this.styleForeground, size);
+            this.styleBackground = Arrays.copyOf(this.styleBackground, size);
+            this.styleFlags = Arrays.copyOf(this.styleFlags, size);
+        }
+        this.styleForeground[id] = readVarint(in);
+        this.styleBackground[id] = readVarint(in);
+        this.styleFlags[id] = readVarint(in);
+    }
+
+    /**
+     * Read a run.
+     *
+     * @param in
+     *            the stream
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void readRun(final InputStream in) throws IOException {
+        final int x = readVarint(in);
+        final int y = readSignedVarint(in);
+        final int style = readVarint(in);
+        final int len = readVarint(in);
+        final boolean inside = y >= 0 && y < this.rows;
+        for (int i = 0; i < len; i++) {
+            final char c = (char) readVarint(in);
+            if (inside && x + i < this.columns) {
+                this.chars[y][x + i] = c;
+                this.styles[y][x + i] = style;
+            }
+        }
+    }
+
+    /**
+     * Move the rows y to y + h - 1 by dy rows, like the copyArea of the panel.
+     *
+     * @param y
+     *            the first row
+     * @param h
+     *            the row count
+     * @param dy
+     *            the distance
+     */
+    private void scroll(final int y, final int h, final int dy) {
+        final int from = Math.max(y, -dy);
+        final int to = Math.min(y + h, this.rows - dy);
+        if (dy < 0) {
+            for (int row = Math.max(from, 0); row < Math.min(to, this.rows); row++) {
+                this.copyRow(row, row + dy);
+            }
+        } else if (dy > 0) {
+            for (int row = Math.min(to, this.rows) - 1; row >= Math.max(from, 0); row--) {
+                this.copyRow(row, row + dy);
+            }
+        }
+    }
+
+    /**
+     * Copy a row.
+     *
+     * @param src
+     *            the source row
+     * @param dst
+     *            the destination row
+     */
+    private void copyRow(final int src, final int dst) {
+        System.arraycopy(this.chars[src], 0, this.chars[dst], 0, this.columns);
+        System.arraycopy(this.styles[src], 0, this.styles[dst], 0, this.columns);
+    }
+
+    /**
+     * Read a byte.
+     *
+     * @param in
+     *            the stream
+     * @return the byte
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static int readByte(final InputStream in) throws IOException {
+        final int b = in.read();
+        if (b < 0) {
+            throw new EOFException("truncated frame");
+        }
+        return b;
+    }
+
+    /**
+     * Read an unsigned variable length integer.
+     *
+     * @param in
+     *            the stream
+     * @return the value
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static int readVarint(final InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = readByte(in);
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    /**
+     * Read a zigzag encoded signed variable length integer.
+     *
+     * @param in
+     *            the stream
+     * @return the value
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static int readSignedVarint(final InputStream in) throws IOException {
+        final int v = readVarint(in);
+        return v >>> 1 ^ -(v & 1);
+    }
+
+    /**
+     * Gets the text of a row without trailing blanks.
+     *
+     * @param y
+     *            the row
+     * @return the text
+     */
+    public String getRowText(final int y) {
+        int end = this.columns;
+        while (end > 0 && this.chars[y][end - 1] == ' ') {
+            end--;
+        }
+        return new String(this.chars[y], 0, end);
+    }
+
+    /**
+     * Gets the char at a cell.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the char
+     */
+    public char getChar(final int x, final int y) {
+        return this.chars[y][x];
+    }
+
+    /**
+     * Gets the foreground rgb of a cell.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the rgb, -1 for a blank cell
+     */
+    public int getForeground(final int x, final int y) {
+        final int style = this.styles[y][x];
+        return style < 0 ? -1 : this.styleForeground[style];
+    }
+
+    /**
+     * Gets the background rgb of a cell.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the rgb, -1 for a blank cell
+     */
+    public int getBackground(final int x, final int y) {
+        final int style = this.styles[y][x];
+        return style < 0 ? -1 : this.styleBackground[style];
+    }
+
+    /**
+     * Gets the style flags of a cell.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the flags, see {@link FrameEncoder#FLAG_BOLD} and {@link FrameEncoder#FLAG_UNDERLINE}
+     */
+    public int getFlags(final int x, final int y) {
+        final int style = this.styles[y][x];
+        return style < 0 ? 0 : this.styleFlags[style];
+    }
+
+    /**
+     * Gets the columns.
+     *
+     * @return the columns
+     */
+    public int getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * Gets the rows.
+     *
+     * @return the rows
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Gets the cursor x.
+     *
+     * @return the cursor x
+     */
+    public int getCursorX() {
+        return this.cursorX;
+    }
+
+    /**
+     * Gets the cursor y.
+     *
+     * @return the cursor y
+     */
+    public int getCursorY() {
+        return this.cursorY;
+    }
+
+    /**
+     * Gets the frames read.
+     *
+     * @return the frames read
+     */
+    public long getFramesRead() {
+        return this.framesRead;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * FrameEncoder
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.agilhard.terminal.emulation.Style;
+
+/**
+ * Encodes the frames of a {@link TermPanel} into a compact binary delta stream.
+ *
+ * <p>
+ * Each frame is buffered and written to the target stream with a single write when it ends. The stream is a
+ * sequence of one byte opcodes followed by unsigned (or zigzag signed) variable length integers:
+ * </p>
+ * <ul>
+ * <li>{@link #OP_FRAME} columns, rows, keyframe flag</li>
+ * <li>{@link #OP_STYLE} id, foreground rgb, background rgb, flags; sent once before the first run using it</li>
+ * <li>{@link #OP_RUN} x, y, style id, length, chars</li>
+ * <li>{@link #OP_SCROLL} y, h, signed dy</li>
+ * <li>{@link #OP_CURSOR} x, y</li>
+ * <li>{@link #OP_END}</li>
+ * </ul>
+ * <p>
+ * Style ids restart with every key frame, so a receiver can join at any key frame. Ids are never reused within
+ * the stream between key frames; once more than {@link #MAX_STYLES} styles are in use the encoder asks for a key
+ * frame. {@link FrameDecoder} reads the stream back into a grid.
+ * </p>
+ */
+public class FrameEncoder implements FrameSink {
+
+    /** The frame opcode. */
+    public static final int OP_FRAME = 1;
+
+    /** The style definition opcode. */
+    public static final int OP_STYLE = 2;
+
+    /** The run opcode. */
+    public static final int OP_RUN = 3;
+
+    /** The scroll opcode. */
+    public static final int OP_SCROLL = 4;
+
+    /** The cursor opcode. */
+    public static final int OP_CURSOR = 5;
+
+    /** The end of frame opcode. */
+    public static final int OP_END = 6;
+
+    /** The bold style flag. */
+    public static final int FLAG_BOLD = 1;
+
+    /** The underline style flag. */
+    public static final int FLAG_UNDERLINE = 2;
+
+    /** The number of interned styles above which a key frame restarts the table. */
+    public static final int MAX_STYLES = 4096;
+
+    /** The Logger. */
+    private final Logger log = LoggerFactory.getLogger(FrameEncoder.class);
+
+    /** The target. */
+    private final OutputStream out;
+
+    /** The frame buffer. */
+    private final ByteArrayOutputStream frame = new ByteArrayOutputStream(4096);
+
+    /** The interned style ids. */
+    private final Map<Style, Integer> styleIds = new IdentityHashMap<>();
+
+    /** The failed flag, set once the target threw. */
+    private boolean failed;
+
+    /** The bytes written. */
+    private long bytesWritten;
+
+    /** The frames written. */
+    private long framesWritten;
+
+    /**
+     * Instantiates a new frame encoder.
+     *
+     * @param out
+     *            the target stream, it should hand the data off rather than block
+     */
+    public FrameEncoder(final OutputStream out) {
+        this.out = out;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see net.agilhard.terminal.emulation.swing.FrameSink#beginFrame(int, int, boolean)
+     */
+    /** {@inheritDoc} */
+    @Override
+    public void beginFrame(final int columns, final int rows, final boolean keyframe) {
+        this.frame.reset();
+        if (keyframe) {
+            /* the decoder drops its grid, old ids are no longer referenced */
+            this.styleIds.clear();
+        }
+        this.frame.write(OP_FRAME);
+        this.writeVarint(columns);
+        this.writeVarint(rows);
+        this.frame.write(keyframe ? 1 : 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see net.agilhard.terminal.emulation.swing.FrameSink#scroll(int, int, int)
+     */
+    /** {@inheritDoc} */
+    @Override
+    public void scroll(final int y, final int h, final int dy) {
+        this.frame.write(OP_SCROLL);
+        this.writeSignedVarint(y);
+        this.writeVarint(h);
+        this.writeSignedVarint(dy);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see net.agilhard.terminal.emulation.StyledRunConsumer#consumeRun(int, int,
+     * net.agilhard.terminal.emulation.Style, char[], int, int)
+     */
+    /** {@inheritDoc} */
+    @Override
+    public void consumeRun(final int x, final int y, final Style style, final char[] buf, final int start,
+        final int len) {
+        final int id = this.styleId(style);
+        this.frame.write(OP_RUN);
+        this.writeVarint(x);
+        this.writeSignedVarint(y);
+        this.writeVarint(id);
+        this.writeVarint(len);
+        for (int i = start; i < start + len; i++) {
+            this.writeVarint(buf[i]);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see net.agilhard.terminal.emulation.swing.FrameSink#cursorMoved(int, int)
+     */
+    /** {@inheritDoc} */
+    @Override
+    public void cursorMoved(final int x, final int y) {
+        this.frame.write(OP_CURSOR);
+        this.writeVarint(x);
+        this.writeVarint(y);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see net.agilhard.terminal.emulation.swing.FrameSink#endFrame()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public void endFrame() {
+        this.frame.write(OP_END);
+        if (this.failed) {
+            return;
+        }
+        try {
+            this.frame.writeTo(this.out);
+            this.out.flush();
+            this.bytesWritten += this.frame.size();
+            this.framesWritten++;
+        }
+        catch (final IOException e) {
+            this.failed = true;
+            this.log.error("Could not write frame, stopping the encoder:", e);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see net.agilhard.terminal.emulation.swing.FrameSink#needsKeyframe()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public boolean needsKeyframe() {
+        return this.styleIds.size() > MAX_STYLES;
+    }
+
+    /**
+     * Gets the id of a style, defining it in the current frame on first use. Ids already sent are never redefined
+     * before the next key frame, since the receiver keeps them per cell.
+     *
+     * @param style
+     *            the style
+     * @return the id
+     */
+    private int styleId(final Style style) {
+        final Integer known = this.styleIds.get(style);
+        if (known != null) {
+            return known.intValue();
+        }
+        final int id = this.styleIds.size();
+        this.styleIds.put(style, Integer.valueOf(id));
+
+        int flags = 0;
+        if (style.hasOption(Style.Option.BOLD)) {
+            flags |= FLAG_BOLD;
+        }
+        if (style.hasOption(Style.Option.UNDERSCORE)) {
+            flags |= FLAG_UNDERLINE;
+        }
+        this.frame.write(OP_STYLE);
+        this.writeVarint(id);
+        this.writeVarint(style.getForegroundForRun().getRGB() & 0xffffff);
+        this.writeVarint(style.getBackgroundForRun().getRGB() & 0xffffff);
+        this.writeVarint(flags);
+        return id;
+    }
+
+    /**
+     * Write an unsigned variable length integer.
+     *
+     * @param value
+     *            the value
+     */
+    private void writeVarint(final int value) {
+        int v = value;
+        while ((v & ~0x7f) != 0) {
+            this.frame.write(v & 0x7f | 0x80);
+            v >>>= 7;
+        }
+        this.frame.write(v);
+    }
+
+    /**
+     * Write a zigzag encoded signed variable length integer.
+     *
+     * @param value
+     *            the value
+     */
+    private void writeSignedVarint(final int value) {
+        this.writeVarint(value << 1 ^ value >> 31);
+    }
+
+    /**
+     * Checks if the encoder stopped after a write error.
+     *
+     * @return true, if failed
+     */
+    public boolean isFailed() {
+        return this.failed;
+    }
+
+    /**
+     * Gets the bytes written.
+     *
+     * @return the bytes written
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+    /**
+     * Gets the frames written.
+     *
+     * @return the frames written
+     */
+    public long getFramesWritten() {
+        return this.framesWritten;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * FrameSink
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import net.agilhard.terminal.emulation.StyledRunConsumer;
+
+/**
+ * Receives the frames rendered by a {@link TermPanel}, for example to mirror a session remotely.
+ *
+ * <p>
+ * A frame starts with {@link #beginFrame(int, int, boolean)}, followed by the server scrolls in the order they were
+ * enacted, the damaged runs via {@link #consumeRun}, an optional cursor move, and {@link #endFrame()}. A key frame
+ * carries every row of the back buffer and replaces all previous state. All calls are made on the event dispatch
+ * thread while the back buffer is locked, so implementations must not block.
+ * </p>
+ */
+public interface FrameSink extends StyledRunConsumer {
+
+    /**
+     * Begin a frame.
+     *
+     * @param columns
+     *            the column count
+     * @param rows
+     *            the row count
+     * @param keyframe
+     *            true if the frame replaces all previous state
+     */
+    void beginFrame(int columns, int rows, boolean keyframe);
+
+    /**
+     * Move the rows y to y + h - 1 by dy rows.
+     *
+     * @param y
+     *            the first row
+     * @param h
+     *            the row count
+     * @param dy
+     *            the distance, negative to move up
+     */
+    void scroll(int y, int h, int dy);
+
+    /**
+     * Cursor moved.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row, as passed to {@link TermPanel#setCursor(int, int)}
+     */
+    void cursorMoved(int x, int y);
+
+    /**
+     * End the frame.
+     */
+    void endFrame();
+
+    /**
+     * Checks if the sink needs a key frame to go on, e.g. because its own state ran full. Asked before each frame.
+     *
+     * @return true, if the next frame must be a key frame
+     */
+    boolean needsKeyframe();
+}
@@ -0,0 +1,112 @@
+/*
+ * FrameSnapshot
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * Copy of the pixels of the off-screen frame of a {@link TermPanel}.
+ *
+ * <p>
+ * Only the band of pixel rows damaged since the last update is copied again. The frame image is only read through
+ * {@link BufferedImage#copyData(WritableRaster)}, so it is never handed out and stays eligible for acceleration.
+ * The copy itself is handed out as a {@link Raster} and shared by all callers; it is writable in fact, callers must
+ * not modify it.
+ * </p>
+ */
+final class FrameSnapshot {
+
+    /** The copy. */
+    private WritableRaster copy;
+
+    /** The first dirty source row. */
+    private int dirtyTop;
+
+    /** The last dirty source row, smaller than dirtyTop when clean. */
+    private int dirtyBottom = -1;
+
+    /** The generation of the frame the copy holds. */
+    private long generation = -1;
+
+    /**
+     * Mark a band of source pixel rows dirty.
+     *
+     * @param top
+     *            the first row
+     * @param bottom
+     *            the last row
+     */
+    void markDirty(final int top, final int bottom) {
+        if (this.dirtyBottom < this.dirtyTop) {
+            this.dirtyTop = top;
+            this.dirtyBottom = bottom;
+        } else {
+            this.dirtyTop = Math.min(this.dirtyTop, top);
+            this.dirtyBottom = Math.max(this.dirtyBottom, bottom);
+        }
+    }
+
+    /**
+     * Mark the whole source dirty.
+     */
+    void markAllDirty() {
+        this.markDirty(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Release the copy.
+     */
+    void release() {
+        this.copy = null;
+        this.generation = -1;
+    }
+
+    /**
+     * Gets the copy, updating it from the dirty band of the source.
+     *
+     * @param source
+     *            the off-screen frame
+     * @param sourceGeneration
+     *            the generation of the source
+     * @return the copy, shared and not to be modified
+     */
+    Raster get(final BufferedImage source, final long sourceGeneration) {
+        if (this.copy == null || this.copy.getWidth() != source.getWidth()
+            || this.copy.getHeight() != source.getHeight()) {
+            this.copy = source.getColorModel().createCompatibleWritableRaster(source.getWidth(), source.getHeight());
+            this.markAllDirty();
+        } else if (sourceGeneration == this.generation) {
+            return this.copy;
+        }
+        if (this.dirtyBottom >= this.dirtyTop) {
+            final int top = Math.max(0, this.dirtyTop);
+            final int bottom = Math.min(source.getHeight() - 1, this.dirtyBottom);
+            if (top <= bottom) {
+                source.copyData(
+                    this.copy.createWritableChild(0, top, source.getWidth(), bottom - top + 1, 0, top, null));
+            }
+        }
+        this.dirtyTop = 0;
+        this.dirtyBottom = -1;
+        this.generation = sourceGeneration;
+        return this.copy;
+    }
+}
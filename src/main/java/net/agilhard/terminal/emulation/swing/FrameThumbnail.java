@@ -0,0 +1,128 @@
+/*
+ * FrameThumbnail
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Downscaled copy of the off-screen frame of a {@link TermPanel}.
+ *
+ * <p>
+ * Only the band of pixel rows damaged since the last update is scaled again. The band is widened to whole
+ * thumbnail rows so that no seams show up between partial updates.
+ * </p>
+ */
+final class FrameThumbnail {
+
+    /** The thumbnail image. */
+    private BufferedImage image;
+
+    /** The first dirty source row. */
+    private int dirtyTop;
+
+    /** The last dirty source row, smaller than dirtyTop when clean. */
+    private int dirtyBottom = -1;
+
+    /** The generation of the frame the thumbnail shows. */
+    private long generation = -1;
+
+    /**
+     * Mark a band of source pixel rows dirty.
+     *
+     * @param top
+     *            the first row
+     * @param bottom
+     *            the last row
+     */
+    void markDirty(final int top, final int bottom) {
+        if (this.dirtyBottom < this.dirtyTop) {
+            this.dirtyTop = top;
+            this.dirtyBottom = bottom;
+        } else {
+            this.dirtyTop = Math.min(this.dirtyTop, top);
+            this.dirtyBottom = Math.max(this.dirtyBottom, bottom);
+        }
+    }
+
+    /**
+     * Mark the whole source dirty.
+     */
+    void markAllDirty() {
+        this.markDirty(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Release the thumbnail image.
+     */
+    void release() {
+        if (this.image != null) {
+            this.image.flush();
+            this.image = null;
+        }
+        this.generation = -1;
+    }
+
+    /**
+     * Gets the thumbnail, updating it from the dirty band of the source.
+     *
+     * @param source
+     *            the off-screen frame
+     * @param sourceGeneration
+     *            the generation of the source
+     * @param width
+     *            the thumbnail width
+     * @param height
+     *            the thumbnail height
+     * @return the thumbnail
+     */
+    BufferedImage get(final BufferedImage source, final long sourceGeneration, final int width, final int height) {
+        if (this.image == null || this.image.getWidth() != width || this.image.getHeight() != height) {
+            this.release();
+            this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            this.markAllDirty();
+        } else if (sourceGeneration == this.generation) {
+            return this.image;
+        }
+        if (source != null && this.dirtyBottom >= this.dirtyTop) {
+            final int sh = source.getHeight();
+            final int top = Math.max(0, this.dirtyTop);
+            final int bottom = Math.min(sh - 1, this.dirtyBottom);
+            if (top <= bottom) {
+                /* widen to whole thumbnail rows */
+                final int dy1 = (int) ((long) top * height / sh);
+                final int dy2 = Math.min(height, (int) (((long) bottom + 1) * height + sh - 1) / sh);
+                final int sy1 = (int) ((long) dy1 * sh / height);
+                final int sy2 = (int) ((long) dy2 * sh / height);
+                final Graphics2D g = this.image.createGraphics();
+                try {
+                    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    g.drawImage(source, 0, dy1, width, dy2, 0, sy1, source.getWidth(), sy2, null);
+                } finally {
+                    g.dispose();
+                }
+            }
+        }
+        this.dirtyTop = 0;
+        this.dirtyBottom = -1;
+        this.generation = sourceGeneration;
+        return this.image;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * KeystrokeTrace
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+/**
+ * Latency breakdown of one keystroke, from the key event to the paint that showed its echo.
+ *
+ * <p>
+ * Timestamps are {@link System#nanoTime()} values taken when the panel got the key event, when the key handler had
+ * passed it on to the emulator, when the emulator next moved the cursor, when the next frame was rendered from the
+ * damage and when that frame was painted. The echo interval covers the emulator, the connection and the remote
+ * application; the others are spent in the panel.
+ * </p>
+ */
+public final class KeystrokeTrace {
+
+    /** The key code. */
+    private final int keyCode;
+
+    /** The milliseconds the key event waited in the event queue. */
+    private final long queueMillis;
+
+    /** The time of the key event. */
+    private final long keyNanos;
+
+    /** The time the key was handed on. */
+    private final long sentNanos;
+
+    /** The time of the echo. */
+    private final long echoNanos;
+
+    /** The time of the frame. */
+    private final long frameNanos;
+
+    /** The time of the paint. */
+    private final long paintNanos;
+
+    /**
+     * Instantiates a new keystroke trace.
+     *
+     * @param keyCode
+     *            the key code
+     * @param queueMillis
+     *            the milliseconds the key event waited in the event queue
+     * @param keyNanos
+     *            the time of the key event
+     * @param sentNanos
+     *            the time the key was handed on
+     * @param echoNanos
+     *            the time of the echo
+     * @param frameNanos
+     *            the time of the frame
+     * @param paintNanos
+     *            the time of the paint
+     */
+    KeystrokeTrace(final int keyCode, final long queueMillis, final long keyNanos, final long sentNanos,
+        final long echoNanos, final long frameNanos, final long paintNanos) {
+        this.keyCode = keyCode;
+        this.queueMillis = queueMillis;
+        this.keyNanos = keyNanos;
+        this.sentNanos = sentNanos;
+        this.echoNanos = echoNanos;
+        this.frameNanos = frameNanos;
+        this.paintNanos = paintNanos;
+    }
+
+    /**
+     * Gets the key code.
+     *
+     * @return the key code
+     */
+    public int getKeyCode() {
+        return this.keyCode;
+    }
+
+    /**
+     * Gets the milliseconds the key event waited in the event queue before the panel got it.
+     *
+     * @return the queue millis
+     */
+    public long getQueueMillis() {
+        return this.queueMillis;
+    }
+
+    /**
+     * Gets the time of the key event.
+     *
+     * @return the key nanos
+     */
+    public long getKeyNanos() {
+        return this.keyNanos;
+    }
+
+    /**
+     * Gets the nanoseconds spent in the key handler.
+     *
+     * @return the handler nanos
+     */
+    public long getHandlerNanos() {
+        return this.sentNanos - this.keyNanos;
+    }
+
+    /**
+     * Gets the nanoseconds from handing the key on to the echo: emulator, connection and remote application.
+     *
+     * @return the echo nanos
+     */
+    public long getEchoNanos() {
+        return this.echoNanos - this.sentNanos;
+    }
+
+    /**
+     * Gets the nanoseconds from the echo to the rendered frame.
+     *
+     * @return the frame wait nanos
+     */
+    public long getFrameNanos() {
+        return this.frameNanos - this.echoNanos;
+    }
+
+    /**
+     * Gets the nanoseconds from the rendered frame to its paint.
+     *
+     * @return the paint nanos
+     */
+    public long getPaintNanos() {
+        return this.paintNanos - this.frameNanos;
+    }
+
+    /**
+     * Gets the nanoseconds from the key event to the paint.
+     *
+     * @return the total nanos
+     */
+    public long getTotalNanos() {
+        return this.paintNanos - this.keyNanos;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "key " + this.keyCode + ": queue " + this.queueMillis + " ms, handler " + this.getHandlerNanos()
+            + " ns, echo " + this.getEchoNanos() + " ns, frame " + this.getFrameNanos() + " ns, paint "
+            + this.getPaintNanos() + " ns, total " + this.getTotalNanos() + " ns";
+    }
+}
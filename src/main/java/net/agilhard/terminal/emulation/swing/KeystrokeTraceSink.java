@@ -0,0 +1,34 @@
+/*
+ * KeystrokeTraceSink
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+/**
+ * Receives the latency breakdown of keystrokes, see {@link TermPanel#setKeystrokeTraceSink(KeystrokeTraceSink)}.
+ */
+public interface KeystrokeTraceSink {
+
+    /**
+     * A keystroke was echoed and the echo painted. Called on the event dispatch thread; implementations should
+     * only record or hand off the trace.
+     *
+     * @param trace
+     *            the trace
+     */
+    void keystrokeTraced(KeystrokeTrace trace);
+}
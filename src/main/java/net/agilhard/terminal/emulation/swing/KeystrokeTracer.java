@@ -0,0 +1,241 @@
+/*
+ * KeystrokeTracer
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Correlates key events with the echo, frame and paint that follow them.
+ *
+ * <p>
+ * Keystrokes wait in a queue: the oldest one handed on and not echoed is stamped by the next cursor move, all echoed
+ * ones by the next rendered frame, all rendered ones by the next paint, which hands them to the sink. Keystrokes
+ * without an echo expire. Without a sink every hook is a single volatile read.
+ * </p>
+ */
+final class KeystrokeTracer {
+
+    /** The maximum number of keystrokes waiting. */
+    private static final int MAX_PENDING = 64;
+
+    /** The nanoseconds after which a keystroke without echo expires. */
+    private static final long TIMEOUT_NANOS = 5000000000L;
+
+    /** The sink, null when disabled. */
+    private volatile KeystrokeTraceSink sink;
+
+    /** The keystrokes waiting, guarded by this. */
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+
+    /** The number of keystrokes traced. */
+    private volatile long traced;
+
+    /** The number of keystrokes expired or dropped. */
+    private volatile long dropped;
+
+    /**
+     * A keystroke waiting for its echo, frame or paint.
+     */
+    private static final class Pending {
+
+        /** The key code. */
+        final int keyCode;
+
+        /** The queue millis. */
+        final long queueMillis;
+
+        /** The key nanos. */
+        final long keyNanos;
+
+        /** The sent nanos. */
+        long sentNanos;
+
+        /** The echo nanos. */
+        long echoNanos;
+
+        /** The frame nanos. */
+        long frameNanos;
+
+        /**
+         * Instantiates a new pending keystroke.
+         *
+         * @param keyCode
+         *            the key code
+         * @param queueMillis
+         *            the queue millis
+         * @param keyNanos
+         *            the key nanos
+         */
+        Pending(final int keyCode, final long queueMillis, final long keyNanos) {
+            this.keyCode = keyCode;
+            this.queueMillis = queueMillis;
+            this.keyNanos = keyNanos;
+        }
+    }
+
+    /**
+     * Checks if tracing is enabled.
+     *
+     * @return true, if enabled
+     */
+    boolean isEnabled() {
+        return this.sink != null;
+    }
+
+    /**
+     * Gets the sink.
+     *
+     * @return the sink, null when disabled
+     */
+    KeystrokeTraceSink getSink() {
+        return this.sink;
+    }
+
+    /**
+     * Sets the sink. Disabling drops the keystrokes waiting.
+     *
+     * @param sink
+     *            the sink, null to disable
+     */
+    void setSink(final KeystrokeTraceSink sink) {
+        this.sink = sink;
+        if (sink == null) {
+            synchronized (this) {
+                this.pending.clear();
+            }
+        }
+    }
+
+    /**
+     * A key event arrived.
+     *
+     * @param keyCode
+     *            the key code
+     * @param when
+     *            the time stamp of the event in milliseconds
+     * @param now
+     *            the current nano time
+     */
+    synchronized void keyPressed(final int keyCode, final long when, final long now) {
+        if (this.pending.size() >= MAX_PENDING) {
+            this.pending.removeFirst();
+            this.dropped++;
+        }
+        this.pending.addLast(new Pending(keyCode, Math.max(0, System.currentTimeMillis() - when), now));
+    }
+
+    /**
+     * The key handler passed the latest key on.
+     *
+     * @param now
+     *            the current nano time
+     */
+    synchronized void keySent(final long now) {
+        final Pending p = this.pending.peekLast();
+        if (p != null && p.echoNanos == 0) {
+            p.sentNanos = now;
+        }
+    }
+
+    /**
+     * The emulator moved the cursor.
+     *
+     * @param now
+     *            the current nano time
+     */
+    synchronized void cursorMoved(final long now) {
+        for (final Pending p : this.pending) {
+            if (p.sentNanos != 0 && p.echoNanos == 0) {
+                p.echoNanos = now;
+                return;
+            }
+        }
+    }
+
+    /**
+     * A frame was rendered from the damage.
+     *
+     * @param now
+     *            the current nano time
+     */
+    synchronized void frameRendered(final long now) {
+        for (final Pending p : this.pending) {
+            if (p.echoNanos != 0 && p.frameNanos == 0) {
+                p.frameNanos = now;
+            }
+        }
+    }
+
+    /**
+     * The panel was painted. Hands the keystrokes whose frame it showed to the sink.
+     *
+     * @param now
+     *            the current nano time
+     */
+    void painted(final long now) {
+        final KeystrokeTraceSink target = this.sink;
+        if (target == null) {
+            return;
+        }
+        List<KeystrokeTrace> done = null;
+        synchronized (this) {
+            for (final Iterator<Pending> it = this.pending.iterator(); it.hasNext();) {
+                final Pending p = it.next();
+                if (p.frameNanos != 0) {
+                    if (done == null) {
+                        done = new ArrayList<>();
+                    }
+                    done.add(new KeystrokeTrace(p.keyCode, p.queueMillis, p.keyNanos, p.sentNanos, p.echoNanos,
+                        p.frameNanos, now));
+                    it.remove();
+                } else if (now - p.keyNanos > TIMEOUT_NANOS) {
+                    it.remove();
+                    this.dropped++;
+                }
+            }
+        }
+        if (done != null) {
+            for (final KeystrokeTrace trace : done) {
+                target.keystrokeTraced(trace);
+            }
+            this.traced += done.size();
+        }
+    }
+
+    /**
+     * Gets the number of keystrokes traced.
+     *
+     * @return the traced
+     */
+    long getTraced() {
+        return this.traced;
+    }
+
+    /**
+     * Gets the number of keystrokes expired without echo or dropped.
+     *
+     * @return the dropped
+     */
+    long getDropped() {
+        return this.dropped;
+    }
+}
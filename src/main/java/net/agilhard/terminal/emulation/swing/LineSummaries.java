@@ -0,0 +1,347 @@
+/*
+ * LineSummaries
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import net.agilhard.terminal.emulation.Style;
+import net.agilhard.terminal.emulation.StyledRunConsumer;
+
+/**
+ * Downsampled summary of each line moved to the scroll buffer, for the overview strip.
+ *
+ * <p>
+ * A line is summarized into one int when it leaves the screen: the share of non-blank cells, the foreground color
+ * of its longest non-blank run, and whether it contains one of the error words. Summaries are kept in a ring
+ * indexed by absolute line, so the memory per line is constant and the history is never rendered again. Written by
+ * the emulator thread and read by the event dispatch thread, both holding the back buffer lock.
+ * </p>
+ */
+final class LineSummaries implements StyledRunConsumer {
+
+    /** The mask of the foreground color. */
+    static final int RGB = 0xffffff;
+
+    /** The shift of the density. */
+    static final int DENSITY_SHIFT = 24;
+
+    /** The maximum density. */
+    static final int DENSITY_MAX = 0x3f;
+
+    /** The flag of a summary with a foreground color, else the default foreground. */
+    static final int COLORED = 1 << 30;
+
+    /** The flag of a line containing an error word. */
+    static final int ERROR = 1 << 31;
+
+    /** The default error words, matched case insensitively. */
+    private static final String[] DEFAULT_ERROR_WORDS = { "error", "fatal", "exception", "failed" };
+
+    /** The summaries, a ring. */
+    private int[] ring = new int[1024];
+
+    /** The absolute line of the oldest summary. */
+    private int first;
+
+    /** The number of summaries. */
+    private int count;
+
+    /** The error words, lower case. */
+    private volatile char[][] errorWords = toChars(DEFAULT_ERROR_WORDS);
+
+    /** The absolute line of the first row of the current capture. */
+    private int line;
+
+    /** The screen row of the first row of the current capture. */
+    private int y0;
+
+    /** The width of the screen. */
+    private int width;
+
+    /** The non-blank cells per captured row. */
+    private int[] nonBlank = new int[0];
+
+    /** The length of the longest non-blank run per captured row. */
+    private int[] longest = new int[0];
+
+    /** The flags and color per captured row. */
+    private int[] bits = new int[0];
+
+    /**
+     * Convert words to lower case char arrays.
+     *
+     * @param words
+     *            the words
+     * @return the chars
+     */
+    private static char[][] toChars(final String[] words) {
+        final char[][] chars = new char[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            chars[i] = words[i].toLowerCase().toCharArray();
+        }
+        return chars;
+    }
+
+    /**
+     * Sets the error words, matched case insensitively as whole words. Lines summarized before keep their flag.
+     *
+     * @param words
+     *            the words
+     */
+    void setErrorWords(final String... words) {
+        this.errorWords = toChars(words);
+    }
+
+    /**
+     * Begin capturing rows about to move to the scroll buffer.
+     *
+     * @param firstLine
+     *            the absolute line the first row becomes
+     * @param y
+     *            the screen row of the first row
+     * @param rows
+     *            the number of rows
+     * @param w
+     *            the width of the screen
+     */
+    void begin(final int firstLine, final int y, final int rows, final int w) {
+        this.line = firstLine;
+        this.y0 = y;
+        this.width = Math.max(1, w);
+        if (this.nonBlank.length < rows) {
+            this.nonBlank = new int[rows];
+            this.longest = new int[rows];
+            this.bits = new int[rows];
+        } else {
+            Arrays.fill(this.nonBlank, 0, rows, 0);
+            Arrays.fill(this.longest, 0, rows, 0);
+            Arrays.fill(this.bits, 0, rows, 0);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see net.agilhard.terminal.emulation.StyledRunConsumer#consumeRun(int, int,
+     * net.agilhard.terminal.emulation.Style, char[], int, int)
+     */
+    /** {@inheritDoc} */
+    @SuppressWarnings("unused")
+    @Override
+    public void consumeRun(final int x, final int y, final Style style, final char[] buf, final int start,
+        final int len) {
+        final int row = y - this.y0;
+        if (row < 0 || row >= this.nonBlank.length) {
+            return;
+        }
+        int cells = 0;
+        for (int i = start; i < start + len; i++) {
+            if (buf[i] > ' ') {
+                cells++;
+            }
+        }
+        if (cells == 0) {
+            return;
+        }
+        this.nonBlank[row] += cells;
+        if (cells > this.longest[row]) {
+            this.longest[row] = cells;
+            final Color fg = style.getForegroundForRun();
+            this.bits[row] = this.bits[row] & ERROR | (fg != null ? COLORED | fg.getRGB() & RGB : 0);
+        }
+        if ((this.bits[row] & ERROR) == 0 && this.containsErrorWord(buf, start, len)) {
+            this.bits[row] |= ERROR;
+        }
+    }
+
+    /**
+     * Checks if a run contains an error word as a whole word.
+     *
+     * @param buf
+     *            the buffer
+     * @param start
+     *            the start
+     * @param len
+     *            the length
+     * @return true, if found
+     */
+    private boolean containsErrorWord(final char[] buf, final int start, final int len) {
+        final char[][] words = this.errorWords;
+        for (int i = start; i < start + len; i++) {
+            if (i > start && Character.isLetterOrDigit(buf[i - 1])) {
+                continue;
+            }
+            for (final char[] word : words) {
+                if (word.length > 0 && matches(buf, i, start + len, word)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a word matches at a position, ignoring case, and is not followed by a letter or digit.
+     *
+     * @param buf
+     *            the buffer
+     * @param at
+     *            the position
+     * @param end
+     *            the end of the run
+     * @param word
+     *            the lower case word
+     * @return true, if matching
+     */
+    private static boolean matches(final char[] buf, final int at, final int end, final char[] word) {
+        if (at + word.length > end || at + word.length < end && Character.isLetterOrDigit(buf[at + word.length])) {
+            return false;
+        }
+        for (int k = 0; k < word.length; k++) {
+            if (Character.toLowerCase(buf[at + k]) != word[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * End capturing and append the summaries of the captured rows.
+     *
+     * @param rows
+     *            the number of rows
+     * @param oldest
+     *            the absolute line of the oldest line still in the scroll buffer
+     */
+    void end(final int rows, final int oldest) {
+        if (this.count > 0 && this.first + this.count != this.line) {
+            /* summaries were off for a while, start over */
+            this.count = 0;
+        }
+        if (this.count == 0) {
+            this.first = this.line;
+        }
+        for (int r = 0; r < rows; r++) {
+            final int density = Math.min(DENSITY_MAX, (this.nonBlank[r] * DENSITY_MAX + this.width - 1) / this.width);
+            this.append(this.bits[r] | density << DENSITY_SHIFT);
+        }
+        this.trim(oldest);
+    }
+
+    /**
+     * Append a summary, growing the ring when full.
+     *
+     * @param summary
+     *            the summary
+     */
+    private void append(final int summary) {
+        if (this.count == this.ring.length) {
+            final int[] grown = new int[this.ring.length * 2];
+            for (int i = 0; i < this.count; i++) {
+                grown[Math.floorMod(this.first + i, grown.length)] = this.get(this.first + i);
+            }
+            this.ring = grown;
+        }
+        this.ring[Math.floorMod(this.first + this.count, this.ring.length)] = summary;
+        this.count++;
+    }
+
+    /**
+     * Drop the summaries of lines the scroll buffer no longer holds.
+     *
+     * @param oldest
+     *            the absolute line of the oldest line still in the scroll buffer
+     */
+    void trim(final int oldest) {
+        final int drop = Math.min(this.count, oldest - this.first);
+        if (drop > 0) {
+            this.first += drop;
+            this.count -= drop;
+        }
+    }
+
+    /**
+     * Drop all summaries.
+     */
+    void clear() {
+        this.count = 0;
+    }
+
+    /**
+     * Gets the absolute line of the oldest summary.
+     *
+     * @return the first line
+     */
+    int getFirst() {
+        return this.first;
+    }
+
+    /**
+     * Gets the number of summaries.
+     *
+     * @return the count
+     */
+    int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Downsample a range of lines into buckets. Each bucket merges its lines into the summary of the densest line,
+     * flagged as error if any line is; lines without a summary count as empty.
+     *
+     * @param buckets
+     *            the buckets
+     * @param n
+     *            the number of buckets to fill
+     * @param fromLine
+     *            the absolute line at the top of the first bucket
+     * @param toLine
+     *            the absolute line at the bottom of the last bucket, exclusive
+     */
+    void downsample(final int[] buckets, final int n, final int fromLine, final int toLine) {
+        final long lines = (long) toLine - fromLine;
+        final int end = this.first + this.count;
+        for (int b = 0; b < n; b++) {
+            final int lo = (int) (fromLine + lines * b / n);
+            final int hi = Math.max(lo + 1, (int) (fromLine + lines * (b + 1) / n));
+            int merged = 0;
+            int errors = 0;
+            for (int l = Math.max(lo, this.first); l < Math.min(hi, end); l++) {
+                final int summary = this.get(l);
+                errors |= summary & ERROR;
+                if ((summary >>> DENSITY_SHIFT & DENSITY_MAX) > (merged >>> DENSITY_SHIFT & DENSITY_MAX)) {
+                    merged = summary;
+                }
+            }
+            buckets[b] = merged | errors;
+        }
+    }
+
+    /**
+     * Gets the summary of a line.
+     *
+     * @param absLine
+     *            the absolute line, between the first line and the first line plus the count
+     * @return the summary
+     */
+    int get(final int absLine) {
+        return this.ring[Math.floorMod(absLine, this.ring.length)];
+    }
+}
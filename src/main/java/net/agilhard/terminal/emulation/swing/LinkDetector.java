@@ -0,0 +1,473 @@
+/*
+ * LinkDetector
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detects links in terminal text incrementally.
+ *
+ * <p>
+ * Only rows that were damaged (taken from the dirty rows of a {@link RowTextCache}) and lines moved to the scroll
+ * buffer are scanned. Scanning runs in batches on a shared low priority background thread; while a batch is in
+ * flight, further rows are coalesced into the next one. Matches of back buffer rows are kept by row version, so
+ * they follow scrolls and are dropped when the row changes; matches of scroll buffer lines are kept by absolute
+ * line number for a bounded number of lines. All methods except {@link #submitHistory(int, char[], int, int)} are
+ * called on the event dispatch thread.
+ * </p>
+ */
+final class LinkDetector {
+
+    /** The number of scroll buffer lines matches are kept for. */
+    private static final int MAX_HISTORY = 10000;
+
+    /** The no matches. */
+    private static final LinkMatch[] NONE = new LinkMatch[0];
+
+    /** The shared detection thread. */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "TermPanel link detection");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    /**
+     * A pattern with its kind.
+     */
+    private static final class Kind {
+
+        /** The name. */
+        final String name;
+
+        /** The pattern. */
+        final Pattern pattern;
+
+        /**
+         * Instantiates a new kind.
+         *
+         * @param name
+         *            the name
+         * @param pattern
+         *            the pattern
+         */
+        Kind(final String name, final Pattern pattern) {
+            this.name = name;
+            this.pattern = pattern;
+        }
+    }
+
+    /**
+     * A row handed to the detection thread.
+     */
+    private static final class RowSnapshot {
+
+        /** The back buffer row version, 0 for scroll buffer lines. */
+        final long version;
+
+        /** The absolute scroll buffer line, for scroll buffer lines. */
+        final int line;
+
+        /** The text. */
+        final char[] text;
+
+        /** The matches, set by the detection thread. */
+        LinkMatch[] matches;
+
+        /** True, if the version this row replaced had matches, whose underlines are still on screen. */
+        boolean hadMatches;
+
+        /**
+         * Instantiates a new row snapshot.
+         *
+         * @param version
+         *            the version
+         * @param line
+         *            the line
+         * @param text
+         *            the text
+         */
+        RowSnapshot(final long version, final int line, final char[] text) {
+            this.version = version;
+            this.line = line;
+            this.text = text;
+        }
+    }
+
+    /** The patterns. */
+    private final List<Kind> kinds = new CopyOnWriteArrayList<>();
+
+    /** The text cache of the back buffer rows. */
+    private final RowTextCache textCache;
+
+    /** The matches of back buffer rows by version. */
+    private final Map<Long, LinkMatch[]> screenMatches = new HashMap<>();
+
+    /** The version each row's cached matches belong to, avoids map lookups while drawing. */
+    private long[] cachedVersions = new long[0];
+
+    /** The cached matches per row. */
+    private LinkMatch[][] cachedMatches = new LinkMatch[0][];
+
+    /** The matches of scroll buffer lines by absolute line. */
+    private final Map<Integer, LinkMatch[]> historyMatches = new LinkedHashMap<Integer, LinkMatch[]>() {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, LinkMatch[]> eldest) {
+            return this.size() > MAX_HISTORY;
+        }
+    };
+
+    /** The rows waiting for the next batch. */
+    private final List<RowSnapshot> pending = new ArrayList<>();
+
+    /** The scroll buffer lines waiting for the next batch, filled from the emulator thread. */
+    private final ConcurrentLinkedQueue<RowSnapshot> pendingHistory = new ConcurrentLinkedQueue<>();
+
+    /** The finished batches. */
+    private final ConcurrentLinkedQueue<List<RowSnapshot>> finished = new ConcurrentLinkedQueue<>();
+
+    /** The batch in flight flag. */
+    private boolean batchInFlight;
+
+    /** The rows to redraw after applying results, reused. */
+    private final List<Integer> redrawRows = new ArrayList<>();
+
+    /** The nanos spent on the last batch. */
+    private volatile long lastBatchNanos;
+
+    /** The nanos spent on all batches. */
+    private volatile long totalNanos;
+
+    /** The rows scanned. */
+    private volatile long rowsScanned;
+
+    /**
+     * Instantiates a new link detector with the default patterns for urls, file:line references and ticket ids.
+     *
+     * @param textCache
+     *            the text cache
+     */
+    LinkDetector(final RowTextCache textCache) {
+        this.textCache = textCache;
+        this.addPattern("url", Pattern.compile("\\b(?:https?|ftp|file)://[^\\s<>\"'`]+"));
+        this.addPattern("file", Pattern.compile("(?<![\\w/.-])(?:[\\w.-]*/)*[\\w-]+\\.\\w+:\\d+(?::\\d+)?"));
+        this.addPattern("ticket", Pattern.compile("\\b[A-Z][A-Z0-9]+-\\d+\\b"));
+    }
+
+    /**
+     * Adds a pattern.
+     *
+     * @param name
+     *            the kind name
+     * @param pattern
+     *            the pattern
+     */
+    void addPattern(final String name, final Pattern pattern) {
+        this.kinds.add(new Kind(name, pattern));
+    }
+
+    /**
+     * Clear the patterns.
+     */
+    void clearPatterns() {
+        this.kinds.clear();
+    }
+
+    /**
+     * Queue a scroll buffer line for detection. Called from the thread moving lines to the scroll buffer.
+     *
+     * @param line
+     *            the absolute line
+     * @param text
+     *            the text, copied
+     * @param offset
+     *            the offset
+     * @param len
+     *            the length
+     */
+    void submitHistory(final int line, final char[] text, final int offset, final int len) {
+        final char[] copy = new char[len];
+        System.arraycopy(text, offset, copy, 0, len);
+        this.pendingHistory.add(new RowSnapshot(0, line, copy));
+    }
+
+    /**
+     * Queue the dirty rows of the text cache for detection and start a batch if none is in flight.
+     */
+    void submitDirtyRows() {
+        for (int y = this.textCache.nextDirty(0); y >= 0; y = this.textCache.nextDirty(y + 1)) {
+            final RowSnapshot row = new RowSnapshot(this.textCache.getVersion(y), 0, this.textCache.getRow(y).clone());
+            final LinkMatch[] base = this.screenMatches.get(Long.valueOf(this.textCache.getBaseVersion(y)));
+            row.hadMatches = base != null && base.length > 0;
+            this.pending.add(row);
+        }
+        this.textCache.clearDirty();
+        RowSnapshot history;
+        while ((history = this.pendingHistory.poll()) != null) {
+            this.pending.add(history);
+        }
+        if (!this.batchInFlight && !this.pending.isEmpty()) {
+            final List<RowSnapshot> batch = new ArrayList<>(this.pending);
+            this.pending.clear();
+            this.batchInFlight = true;
+            EXECUTOR.execute(new Runnable() {
+
+                @SuppressWarnings("synthetic-access")
+                @Override
+                public void run() {
+                    LinkDetector.this.detect(batch);
+                }
+            });
+        }
+    }
+
+    /**
+     * Detect the links of a batch, on the detection thread.
+     *
+     * @param batch
+     *            the batch
+     */
+    private void detect(final List<RowSnapshot> batch) {
+        final long start = System.nanoTime();
+        try {
+            for (final RowSnapshot row : batch) {
+                row.matches = this.scan(row.text);
+            }
+        } finally {
+            final long nanos = System.nanoTime() - start;
+            this.lastBatchNanos = nanos;
+            this.totalNanos += nanos;
+            this.rowsScanned += batch.size();
+            this.finished.add(batch);
+        }
+    }
+
+    /**
+     * Scan a row.
+     *
+     * @param text
+     *            the text
+     * @return the matches
+     */
+    private LinkMatch[] scan(final char[] text) {
+        List<LinkMatch> found = null;
+        final CharBuffer cb = CharBuffer.wrap(text);
+        for (final Kind kind : this.kinds) {
+            final Matcher m = kind.pattern.matcher(cb);
+            while (m.find()) {
+                int end = m.end();
+                /* trailing punctuation is rarely part of a link */
+                while (end > m.start() + 1 && ".,;:!?)]}'\"".indexOf(text[end - 1]) >= 0) {
+                    end--;
+                }
+                if (found == null) {
+                    found = new ArrayList<>();
+                } else if (overlaps(found, m.start(), end)) {
+                    continue;
+                }
+                found.add(new LinkMatch(kind.name, new String(text, m.start(), end - m.start()), m.start(), end));
+            }
+        }
+        return found == null ? NONE : found.toArray(new LinkMatch[found.size()]);
+    }
+
+    /**
+     * Checks if a range overlaps earlier matches, earlier patterns win.
+     *
+     * @param found
+     *            the matches
+     * @param start
+     *            the start
+     * @param end
+     *            the end
+     * @return true, if overlapping
+     */
+    private static boolean overlaps(final List<LinkMatch> found, final int start, final int end) {
+        for (final LinkMatch match : found) {
+            if (start < match.getEndColumn() && end > match.getStartColumn()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Apply finished batches.
+     *
+     * @param historyLines
+     *            the number of lines moved to the scroll buffer so far
+     * @return the rows whose matches changed and are in the back buffer or scroll buffer, to be redrawn; the list
+     *         is reused by the next call
+     */
+    List<Integer> applyResults(final int historyLines) {
+        this.redrawRows.clear();
+        List<RowSnapshot> batch;
+        while ((batch = this.finished.poll()) != null) {
+            this.batchInFlight = false;
+            for (final RowSnapshot row : batch) {
+                if (row.version == 0) {
+                    final LinkMatch[] old = this.historyMatches.put(Integer.valueOf(row.line), row.matches);
+                    if (row.matches.length > 0 || old != null && old.length > 0) {
+                        this.redrawRows.add(Integer.valueOf(row.line - historyLines));
+                    }
+                } else {
+                    final int y = this.textCache.rowOf(row.version);
+                    if (y >= 0) {
+                        this.screenMatches.put(Long.valueOf(row.version), row.matches);
+                        if (y < this.cachedVersions.length) {
+                            this.cachedVersions[y] = row.version;
+                            this.cachedMatches[y] = row.matches;
+                        }
+                        if (row.matches.length > 0 || row.hadMatches) {
+                            this.redrawRows.add(Integer.valueOf(y));
+                        }
+                    }
+                }
+            }
+        }
+        this.pruneScreenMatches();
+        return this.redrawRows;
+    }
+
+    /**
+     * Drop the matches of versions no longer in the text cache.
+     */
+    private void pruneScreenMatches() {
+        if (this.screenMatches.size() <= this.textCache.getHeight() * 2) {
+            return;
+        }
+        for (final Iterator<Long> it = this.screenMatches.keySet().iterator(); it.hasNext();) {
+            if (this.textCache.rowOf(it.next().longValue()) < 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Checks if a batch is in flight or rows are waiting.
+     *
+     * @return true, if busy
+     */
+    boolean isBusy() {
+        return this.batchInFlight || !this.pending.isEmpty() || !this.finished.isEmpty();
+    }
+
+    /**
+     * Gets the matches of a row.
+     *
+     * @param y
+     *            the buffer row, negative for the scroll buffer
+     * @param historyLines
+     *            the number of lines moved to the scroll buffer so far
+     * @return the matches, may be empty
+     */
+    LinkMatch[] getMatches(final int y, final int historyLines) {
+        if (y < 0) {
+            final LinkMatch[] matches = this.historyMatches.get(Integer.valueOf(historyLines + y));
+            return matches != null ? matches : NONE;
+        }
+        if (y >= this.cachedVersions.length) {
+            return NONE;
+        }
+        final long version = this.textCache.getVersion(y);
+        if (this.cachedVersions[y] != version) {
+            final LinkMatch[] matches = this.screenMatches.get(Long.valueOf(version));
+            this.cachedVersions[y] = version;
+            this.cachedMatches[y] = matches != null ? matches : NONE;
+        }
+        return this.cachedMatches[y];
+    }
+
+    /**
+     * Find the match at a cell.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the buffer row
+     * @param historyLines
+     *            the number of lines moved to the scroll buffer so far
+     * @return the match, null if none
+     */
+    LinkMatch findAt(final int x, final int y, final int historyLines) {
+        for (final LinkMatch match : this.getMatches(y, historyLines)) {
+            if (match.contains(x)) {
+                return match;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Clear all matches of back buffer rows, e.g. after a resize.
+     */
+    void clear() {
+        this.screenMatches.clear();
+        this.pending.clear();
+        this.cachedVersions = new long[this.textCache.getHeight()];
+        this.cachedMatches = new LinkMatch[this.textCache.getHeight()][];
+    }
+
+    /**
+     * Gets the nanos spent on the last batch.
+     *
+     * @return the nanos
+     */
+    long getLastBatchNanos() {
+        return this.lastBatchNanos;
+    }
+
+    /**
+     * Gets the nanos spent on all batches.
+     *
+     * @return the nanos
+     */
+    long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    /**
+     * Gets the rows scanned.
+     *
+     * @return the rows scanned
+     */
+    long getRowsScanned() {
+        return this.rowsScanned;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * LinkMatch
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+/**
+ * A link found in the terminal text by the link detection of a {@link TermPanel}.
+ */
+public final class LinkMatch {
+
+    /** The kind, the name the pattern was registered with. */
+    private final String kind;
+
+    /** The text. */
+    private final String text;
+
+    /** The first column. */
+    private final int startColumn;
+
+    /** The column after the last one. */
+    private final int endColumn;
+
+    /**
+     * Instantiates a new link match.
+     *
+     * @param kind
+     *            the kind
+     * @param text
+     *            the text
+     * @param startColumn
+     *            the first column
+     * @param endColumn
+     *            the column after the last one
+     */
+    public LinkMatch(final String kind, final String text, final int startColumn, final int endColumn) {
+        this.kind = kind;
+        this.text = text;
+        this.startColumn = startColumn;
+        this.endColumn = endColumn;
+    }
+
+    /**
+     * Gets the kind, the name the pattern was registered with, e.g. {@code "url"}.
+     *
+     * @return the kind
+     */
+    public String getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Gets the text.
+     *
+     * @return the text
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * Gets the first column.
+     *
+     * @return the start column
+     */
+    public int getStartColumn() {
+        return this.startColumn;
+    }
+
+    /**
+     * Gets the column after the last one.
+     *
+     * @return the end column
+     */
+    public int getEndColumn() {
+        return this.endColumn;
+    }
+
+    /**
+     * Checks if the match covers a column.
+     *
+     * @param column
+     *            the column
+     * @return true, if covered
+     */
+    public boolean contains(final int column) {
+        return column >= this.startColumn && column < this.endColumn;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return this.kind + "[" + this.startColumn + ".." + this.endColumn + "]: " + this.text;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * OverviewStrip
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+import javax.swing.BoundedRangeModel;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * Narrow overview of the whole scroll buffer of a {@link TermPanel}, to be placed beside it.
+ *
+ * <p>
+ * Each pixel row shows the downsampled summaries of the lines it covers: a bar as long as the densest line, in its
+ * foreground color, or a full width bar in the error color if any of the lines contains an error word. The lines
+ * on screen are outlined. Clicking or dragging scrolls the panel to center the line under the mouse.
+ * </p>
+ *
+ * <p>
+ * The summaries are taken once per line as it moves to the scroll buffer, see
+ * {@link TermPanel#setOverviewSummariesEnabled(boolean)}. Repaints are coalesced, so the overview costs the panel
+ * nothing per frame beyond a notification. Only used on the event dispatch thread.
+ * </p>
+ */
+public class OverviewStrip extends JComponent {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
+    /** The default width in pixels. */
+    private static final int DEFAULT_WIDTH = 12;
+
+    /** The delay repaints are coalesced over in milliseconds. */
+    private static final int REPAINT_DELAY = 250;
+
+    /** The delay to paint again after the emulator held the back buffer in milliseconds. */
+    private static final int RETRY_DELAY = 20;
+
+    /** The default error color. */
+    private static final Color DEFAULT_ERROR_COLOR = new Color(0xe04040);
+
+    /** The panel. */
+    private final TermPanel panel;
+
+    /** The coalescing repaint timer. */
+    private final Timer repaintTimer;
+
+    /** The error color. */
+    private Color errorColor = DEFAULT_ERROR_COLOR;
+
+    /** The buckets, one per pixel row. */
+    private int[] buckets = new int[0];
+
+    /**
+     * Instantiates a new overview strip.
+     *
+     * @param panel
+     *            the panel whose scroll buffer to show
+     */
+    public OverviewStrip(final TermPanel panel) {
+        this.panel = panel;
+        this.setOpaque(true);
+        this.repaintTimer = new Timer(REPAINT_DELAY, new ActionListener() {
+
+            @SuppressWarnings("unused")
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                OverviewStrip.this.repaint();
+            }
+        });
+        this.repaintTimer.setRepeats(false);
+
+        final MouseAdapter jump = new MouseAdapter() {
+
+            @SuppressWarnings("synthetic-access")
+            @Override
+            public void mousePressed(final MouseEvent e) {
+                OverviewStrip.this.jumpTo(e.getY());
+            }
+
+            @SuppressWarnings("synthetic-access")
+            @Override
+            public void mouseDragged(final MouseEvent e) {
+                OverviewStrip.this.jumpTo(e.getY());
+            }
+        };
+        this.addMouseListener(jump);
+        this.addMouseMotionListener(jump);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.JComponent#addNotify()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        this.panel.addOverview(this);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.JComponent#removeNotify()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public void removeNotify() {
+        this.panel.removeOverview(this);
+        this.repaintTimer.stop();
+        super.removeNotify();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.JComponent#getPreferredSize()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public Dimension getPreferredSize() {
+        if (this.isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        return new Dimension(DEFAULT_WIDTH, this.panel.getPixelHeight());
+    }
+
+    /**
+     * Gets the error color.
+     *
+     * @return the error color
+     */
+    public Color getErrorColor() {
+        return this.errorColor;
+    }
+
+    /**
+     * Sets the error color.
+     *
+     * @param errorColor
+     *            the error color
+     */
+    public void setErrorColor(final Color errorColor) {
+        this.errorColor = errorColor;
+        this.repaint();
+    }
+
+    /**
+     * Called by the panel after a frame moved lines to the scroll buffer or scrolled the view.
+     */
+    void historyChanged() {
+        if (!this.repaintTimer.isRunning()) {
+            this.repaintTimer.start();
+        }
+    }
+
+    /**
+     * Gets the absolute line at the top of the overview.
+     *
+     * @return the first line
+     */
+    private int getFirstLine() {
+        return this.panel.getOldestLine();
+    }
+
+    /**
+     * Gets the absolute line below the bottom of the overview, the end of the live rows.
+     *
+     * @return the end line
+     */
+    private int getEndLine() {
+        return this.panel.getHistoryLines() + this.panel.getTermSize().height;
+    }
+
+    /**
+     * Scroll the panel to center a line.
+     *
+     * @param y
+     *            the y of the line in the overview
+     */
+    private void jumpTo(final int y) {
+        final int height = this.getHeight();
+        if (height <= 0) {
+            return;
+        }
+        final int first = this.getFirstLine();
+        final long lines = (long) this.getEndLine() - first;
+        final int line = (int) (first + lines * Math.max(0, Math.min(y, height - 1)) / height);
+        final BoundedRangeModel brm = this.panel.getBoundedRangeModel();
+        brm.setValue(line - this.panel.getHistoryLines() - brm.getExtent() / 2);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
+     */
+    /** {@inheritDoc} */
+    @Override
+    protected void paintComponent(final Graphics g) {
+        final int width = this.getWidth();
+        final int height = this.getHeight();
+        g.setColor(this.panel.getDefaultBackground());
+        g.fillRect(0, 0, width, height);
+        if (height <= 0) {
+            return;
+        }
+        if (this.buckets.length < height) {
+            this.buckets = new int[height];
+        }
+        final int first = this.getFirstLine();
+        final int end = this.getEndLine();
+        if (!this.panel.downsampleHistory(this.buckets, height, first, end)) {
+            /* the emulator holds the back buffer */
+            this.repaint(RETRY_DELAY);
+            return;
+        }
+
+        final Color foreground = this.panel.getDefaultForeground();
+        int rgb = -1;
+        for (int y = 0; y < height; y++) {
+            final int summary = this.buckets[y];
+            if ((summary & LineSummaries.ERROR) != 0) {
+                g.setColor(this.errorColor);
+                rgb = -1;
+                g.fillRect(0, y, width, 1);
+                continue;
+            }
+            final int density = summary >>> LineSummaries.DENSITY_SHIFT & LineSummaries.DENSITY_MAX;
+            if (density == 0) {
+                continue;
+            }
+            final int color = (summary & LineSummaries.COLORED) != 0 ? summary & LineSummaries.RGB
+                : foreground.getRGB() & LineSummaries.RGB;
+            if (color != rgb) {
+                rgb = color;
+                g.setColor(new Color(color));
+            }
+            g.fillRect(0, y, Math.max(1, density * width / LineSummaries.DENSITY_MAX), 1);
+        }
+
+        /* outline the lines on screen */
+        final long lines = (long) end - first;
+        if (lines <= 0) {
+            return;
+        }
+        final int top = this.panel.getHistoryLines() + this.panel.getBoundedRangeModel().getValue();
+        final int y0 = (int) ((top - first) * height / lines);
+        final int y1 = (int) ((top + (long) this.panel.getTermSize().height - first) * height / lines);
+        g.setColor(foreground);
+        g.drawRect(0, y0, width - 1, Math.max(1, y1 - y0 - 1));
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * PasteStreamer
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.swing.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.agilhard.terminal.emulation.Emulator;
+
+/**
+ * Streams pasted text to the emulator in chunks from a Swing timer.
+ *
+ * <p>
+ * The text is read from a reader while it is sent, so a large paste is never held in memory as a whole. Each tick
+ * sends about rate / ticks per second bytes, or a fixed chunk without a rate limit. In bracketed paste mode the text
+ * is wrapped in {@code ESC [ 200 ~} and {@code ESC [ 201 ~} and escape characters are dropped from it, so pasted
+ * text cannot end the bracket early. Only used on the event dispatch thread.
+ * </p>
+ */
+final class PasteStreamer {
+
+    /** The timer delay in milliseconds. */
+    private static final int TICK = 20;
+
+    /** The chunk size without a rate limit. */
+    private static final int UNLIMITED_CHUNK = 64 * 1024;
+
+    /** The start of a bracketed paste. */
+    private static final byte[] BRACKET_START = { 0x1b, '[', '2', '0', '0', '~' };
+
+    /** The end of a bracketed paste. */
+    private static final byte[] BRACKET_END = { 0x1b, '[', '2', '0', '1', '~' };
+
+    /** The Logger. */
+    private final Logger log = LoggerFactory.getLogger(PasteStreamer.class);
+
+    /** The panel. */
+    private final TermPanel panel;
+
+    /** The timer. */
+    private final Timer timer;
+
+    /** The flight recorder event of the running paste. */
+    private RenderEvents.Clipboard event;
+
+    /** The chunk buffer. */
+    private char[] chunk = new char[0];
+
+    /** The emulator of the running paste. */
+    private Emulator emulator;
+
+    /** The head of the running paste, already read from the reader. */
+    private String head;
+
+    /** The position in the head. */
+    private int headPos;
+
+    /** The reader of the running paste, null once exhausted. */
+    private Reader reader;
+
+    /** A high surrogate held back until its low surrogate is read. */
+    private char carry;
+
+    /** The running paste is bracketed. */
+    private boolean bracketed;
+
+    /** The rate limit of the running paste in bytes per second, 0 for none. */
+    private int rate;
+
+    /** The start of the running paste. */
+    private long startNanos;
+
+    /** The bytes sent by the running paste. */
+    private long bytes;
+
+    /** The number of pastes finished. */
+    private long pastes;
+
+    /** The bytes sent by all pastes. */
+    private long totalBytes;
+
+    /** The bytes sent by the last finished paste. */
+    private long lastBytes;
+
+    /** The duration of the last finished paste. */
+    private long lastNanos;
+
+    /**
+     * Instantiates a new paste streamer.
+     *
+     * @param panel
+     *            the panel pasting, for the flight recorder events
+     */
+    PasteStreamer(final TermPanel panel) {
+        this.panel = panel;
+        this.timer = new Timer(TICK, new ActionListener() {
+
+            @SuppressWarnings({ "synthetic-access", "unused" })
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                PasteStreamer.this.tick();
+            }
+        });
+    }
+
+    /**
+     * Start a paste.
+     *
+     * @param target
+     *            the emulator
+     * @param text
+     *            the head of the text, already read
+     * @param rest
+     *            the reader for the rest of the text, null if the head is all
+     * @param bracket
+     *            true to wrap the text in bracketed paste markers
+     * @param bytesPerSecond
+     *            the rate limit, 0 for none
+     */
+    void start(final Emulator target, final String text, final Reader rest, final boolean bracket,
+        final int bytesPerSecond) {
+        this.cancel();
+        this.emulator = target;
+        this.head = text;
+        this.headPos = 0;
+        this.reader = rest;
+        this.carry = 0;
+        this.bracketed = bracket;
+        this.rate = bytesPerSecond;
+        this.startNanos = System.nanoTime();
+        this.bytes = 0;
+        this.event = new RenderEvents.Clipboard();
+        this.event.begin();
+        if (bracket) {
+            this.emulator.sendBytes(BRACKET_START);
+        }
+        this.tick();
+        if (this.emulator != null) {
+            this.timer.start();
+        }
+    }
+
+    /**
+     * Checks if a paste is running.
+     *
+     * @return true, if busy
+     */
+    boolean isBusy() {
+        return this.emulator != null;
+    }
+
+    /**
+     * Cancel the running paste. The bracket is closed.
+     */
+    void cancel() {
+        if (this.emulator != null) {
+            this.finish();
+        }
+    }
+
+    /**
+     * Send the next chunk.
+     */
+    private void tick() {
+        final int budget = this.rate > 0 ? Math.max(1, this.rate * TICK / 1000) : UNLIMITED_CHUNK;
+        if (this.chunk.length < budget + 1) {
+            this.chunk = new char[budget + 1];
+        }
+        try {
+            int n = 0;
+            if (this.carry != 0) {
+                this.chunk[n++] = this.carry;
+                this.carry = 0;
+            }
+            final int fromHead = Math.min(budget - n, this.head.length() - this.headPos);
+            if (fromHead > 0) {
+                this.head.getChars(this.headPos, this.headPos + fromHead, this.chunk, n);
+                this.headPos += fromHead;
+                n += fromHead;
+            }
+            while (n < budget && this.reader != null) {
+                final int r = this.reader.read(this.chunk, n, budget - n);
+                if (r < 0) {
+                    this.reader.close();
+                    this.reader = null;
+                } else {
+                    n += r;
+                }
+            }
+            final boolean more = this.reader != null || this.headPos < this.head.length();
+            if (more && n > 0 && Character.isHighSurrogate(this.chunk[n - 1])) {
+                this.carry = this.chunk[--n];
+            }
+            if (n > 0) {
+                final byte[] b = this.encode(n);
+                this.emulator.sendBytes(b);
+                this.bytes += b.length;
+            }
+            if (!more && this.carry == 0) {
+                this.finish();
+            }
+        }
+        catch (final IOException e) {
+            this.log.debug("I/O error in paste", e);
+            this.finish();
+        }
+    }
+
+    /**
+     * Encode the chunk, dropping escape characters from bracketed pastes.
+     *
+     * @param n
+     *            the number of chars in the chunk
+     * @return the bytes
+     */
+    private byte[] encode(final int n) {
+        int len = n;
+        if (this.bracketed) {
+            len = 0;
+            for (int i = 0; i < n; i++) {
+                if (this.chunk[i] != 0x1b) {
+                    this.chunk[len++] = this.chunk[i];
+                }
+            }
+        }
+        return new String(this.chunk, 0, len).getBytes();
+    }
+
+    /**
+     * Finish the running paste and record its metrics.
+     */
+    private void finish() {
+        this.timer.stop();
+        if (this.reader != null) {
+            try {
+                this.reader.close();
+            }
+            catch (final IOException e) {
+                this.log.debug("I/O error closing paste", e);
+            }
+            this.reader = null;
+        }
+        if (this.bracketed) {
+            this.emulator.sendBytes(BRACKET_END);
+        }
+        this.emulator = null;
+        this.head = null;
+        this.pastes++;
+        this.totalBytes += this.bytes;
+        this.lastBytes = this.bytes;
+        this.lastNanos = System.nanoTime() - this.startNanos;
+        this.event.end();
+        if (this.event.shouldCommit()) {
+            this.event.panelId = this.panel.getPanelId();
+            this.event.panelName = this.panel.getName();
+            this.event.operation = "paste";
+            this.event.size = this.bytes;
+            this.event.commit();
+        }
+        this.event = null;
+    }
+
+    /**
+     * Gets the number of pastes finished.
+     *
+     * @return the pastes
+     */
+    long getPastes() {
+        return this.pastes;
+    }
+
+    /**
+     * Gets the bytes sent by all pastes.
+     *
+     * @return the total bytes
+     */
+    long getTotalBytes() {
+        return this.totalBytes;
+    }
+
+    /**
+     * Gets the bytes sent by the last finished paste.
+     *
+     * @return the last bytes
+     */
+    long getLastBytes() {
+        return this.lastBytes;
+    }
+
+    /**
+     * Gets the duration of the last finished paste.
+     *
+     * @return the nanos
+     */
+    long getLastNanos() {
+        return this.lastNanos;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * RenderEvents
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events of {@link TermPanel}.
+ *
+ * <p>
+ * All events carry the panel id and the panel name so recordings of several sessions can be told apart. They are
+ * created and committed only when enabled in the recording settings; otherwise the JIT removes them.
+ * </p>
+ */
+final class RenderEvents {
+
+    /** The category of all events. */
+    private static final String CATEGORY = "Terminal";
+
+    /**
+     * Instantiates a new render events.
+     */
+    private RenderEvents() {
+        // holder only
+    }
+
+    /**
+     * A frame rendered from the pending scrolls and the damage.
+     */
+    @Name("net.agilhard.terminal.Frame")
+    @Label("Terminal Frame")
+    @Category(CATEGORY)
+    @Description("A frame rendered from the pending scrolls and the damage of the back buffer")
+    @StackTrace(false)
+    static final class Frame extends Event {
+
+        /** The panel id. */
+        @Label("Panel Id")
+        int panelId;
+
+        /** The panel name. */
+        @Label("Panel Name")
+        String panelName;
+
+        /** The columns. */
+        @Label("Columns")
+        int columns;
+
+        /** The rows. */
+        @Label("Rows")
+        int rows;
+
+        /** The damaged cells. */
+        @Label("Damaged Cells")
+        int damagedCells;
+
+        /** The lines scrolled. */
+        @Label("Scrolled Lines")
+        int scrolledLines;
+
+        /** The collapsed flag. */
+        @Label("Collapsed")
+        @Description("The frame repainted the whole viewport instead of scrolling")
+        boolean collapsed;
+
+        /** The flooding flag. */
+        @Label("Flooding")
+        boolean flooding;
+    }
+
+    /**
+     * The redraw timer found the back buffer locked by the emulator.
+     */
+    @Name("net.agilhard.terminal.LockContention")
+    @Label("Terminal Back Buffer Contention")
+    @Category(CATEGORY)
+    @Description("The redraw found the back buffer locked; skipped frames or the wait for the lock")
+    @StackTrace(false)
+    static final class LockContention extends Event {
+
+        /** The panel id. */
+        @Label("Panel Id")
+        int panelId;
+
+        /** The panel name. */
+        @Label("Panel Name")
+        String panelName;
+
+        /** The frames skipped before. */
+        @Label("Frames Skipped")
+        int framesSkipped;
+
+        /** The blocked flag. */
+        @Label("Blocked")
+        @Description("The redraw waited for the lock instead of skipping the frame")
+        boolean blocked;
+    }
+
+    /**
+     * The scrolls of the emulator since the previous frame.
+     */
+    @Name("net.agilhard.terminal.ScrollBurst")
+    @Label("Terminal Scroll Burst")
+    @Category(CATEGORY)
+    @Description("The scrollArea calls of the emulator between two frames")
+    @StackTrace(false)
+    static final class ScrollBurst extends Event {
+
+        /** The panel id. */
+        @Label("Panel Id")
+        int panelId;
+
+        /** The panel name. */
+        @Label("Panel Name")
+        String panelName;
+
+        /** The calls. */
+        @Label("Calls")
+        int calls;
+
+        /** The lines. */
+        @Label("Lines")
+        int lines;
+
+        /** The lines moved to the scroll buffer. */
+        @Label("History Lines")
+        int historyLines;
+
+        /** The time since the first call. */
+        @Label("Burst Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long burstNanos;
+    }
+
+    /**
+     * A resize of the terminal.
+     */
+    @Name("net.agilhard.terminal.Resize")
+    @Label("Terminal Resize")
+    @Category(CATEGORY)
+    @Description("A resize of the terminal, from the back buffer to the new images")
+    static final class Resize extends Event {
+
+        /** The panel id. */
+        @Label("Panel Id")
+        int panelId;
+
+        /** The panel name. */
+        @Label("Panel Name")
+        String panelName;
+
+        /** The old columns. */
+        @Label("Old Columns")
+        int oldColumns;
+
+        /** The old rows. */
+        @Label("Old Rows")
+        int oldRows;
+
+        /** The columns. */
+        @Label("Columns")
+        int columns;
+
+        /** The rows. */
+        @Label("Rows")
+        int rows;
+    }
+
+    /**
+     * An allocation of the off-screen image.
+     */
+    @Name("net.agilhard.terminal.ImageSetup")
+    @Label("Terminal Image Setup")
+    @Category(CATEGORY)
+    @Description("An allocation of the off-screen image")
+    @StackTrace(false)
+    static final class ImageSetup extends Event {
+
+        /** The panel id. */
+        @Label("Panel Id")
+        int panelId;
+
+        /** The panel name. */
+        @Label("Panel Name")
+        String panelName;
+
+        /** The width. */
+        @Label("Device Width")
+        int width;
+
+        /** The height. */
+        @Label("Device Height")
+        int height;
+
+        /** The scale. */
+        @Label("Device Scale")
+        double scale;
+    }
+
+    /**
+     * A copy to or a paste from a clipboard.
+     */
+    @Name("net.agilhard.terminal.Clipboard")
+    @Label("Terminal Clipboard")
+    @Category(CATEGORY)
+    @Description("A copy to or a paste from a clipboard")
+    @StackTrace(false)
+    static final class Clipboard extends Event {
+
+        /** The panel id. */
+        @Label("Panel Id")
+        int panelId;
+
+        /** The panel name. */
+        @Label("Panel Name")
+        String panelName;
+
+        /** The operation. */
+        @Label("Operation")
+        String operation;
+
+        /** The size. */
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    /**
+     * A change of the fonts.
+     */
+    @Name("net.agilhard.terminal.FontChange")
+    @Label("Terminal Font Change")
+    @Category(CATEGORY)
+    @Description("A change of the terminal fonts or of the device scale")
+    static final class FontChange extends Event {
+
+        /** The panel id. */
+        @Label("Panel Id")
+        int panelId;
+
+        /** The panel name. */
+        @Label("Panel Name")
+        String panelName;
+
+        /** The font. */
+        @Label("Font")
+        String font;
+
+        /** The size. */
+        @Label("Size")
+        float size;
+
+        /** The cell width. */
+        @Label("Cell Width")
+        int cellWidth;
+
+        /** The cell height. */
+        @Label("Cell Height")
+        int cellHeight;
+
+        /** The scale. */
+        @Label("Device Scale")
+        double scale;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * RowShadow
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.util.Arrays;
+
+/**
+ * Shadow of the cells drawn into the off-screen image, as characters and style palette ids per visible row.
+ *
+ * <p>
+ * Damaged runs are compared against the shadow so that only the cells that differ are rasterized again. The shadow
+ * mirrors every pixel copy done on the image; cells whose pixels are unknown hold the style id -1 and never
+ * compare equal. Only used on the event dispatch thread.
+ * </p>
+ */
+final class RowShadow {
+
+    /** The style id of cells with unknown content. */
+    private static final int UNKNOWN = -1;
+
+    /** The characters per row. */
+    private char[][] chars = new char[0][];
+
+    /** The style ids per row. */
+    private int[][] styles = new int[0][];
+
+    /** The width. */
+    private int width;
+
+    /** The height. */
+    private int height;
+
+    /** The damaged cells compared. */
+    private long cellsCompared;
+
+    /** The damaged cells drawn. */
+    private long cellsDrawn;
+
+    /**
+     * Resize, forgetting all cells.
+     *
+     * @param w
+     *            the width
+     * @param h
+     *            the height
+     */
+    void resize(final int w, final int h) {
+        this.width = w;
+        this.height = h;
+        this.chars = new char[h][w];
+        this.styles = new int[h][w];
+        this.invalidate();
+    }
+
+    /**
+     * Forget all cells.
+     */
+    void invalidate() {
+        for (final int[] row : this.styles) {
+            Arrays.fill(row, UNKNOWN);
+        }
+    }
+
+    /**
+     * Forget the cells of a row, after its pixels were drawn by other means.
+     *
+     * @param row
+     *            the visible row
+     */
+    void invalidateRow(final int row) {
+        if (row >= 0 && row < this.height) {
+            Arrays.fill(this.styles[row], UNKNOWN);
+        }
+    }
+
+    /**
+     * Record cells as drawn.
+     *
+     * @param x
+     *            the first column
+     * @param row
+     *            the visible row
+     * @param styleId
+     *            the style palette id
+     * @param buf
+     *            the buffer
+     * @param start
+     *            the start in the buffer
+     * @param len
+     *            the length
+     */
+    void record(final int x, final int row, final int styleId, final char[] buf, final int start, final int len) {
+        if (row < 0 || row >= this.height) {
+            return;
+        }
+        final int from = Math.max(x, 0);
+        final int to = Math.min(x + len, this.width);
+        if (from >= to) {
+            return;
+        }
+        System.arraycopy(buf, start + from - x, this.chars[row], from, to - from);
+        Arrays.fill(this.styles[row], from, to, styleId);
+    }
+
+    /**
+     * Find the first cell of a run at or after an offset that differs from the shadow.
+     *
+     * @param x
+     *            the first column of the run
+     * @param row
+     *            the visible row
+     * @param styleId
+     *            the style palette id
+     * @param buf
+     *            the buffer
+     * @param start
+     *            the start in the buffer
+     * @param len
+     *            the length of the run
+     * @param offset
+     *            the offset in the run to start at
+     * @return the offset of the first differing cell, len if none
+     */
+    int skipSame(final int x, final int row, final int styleId, final char[] buf, final int start, final int len,
+        final int offset) {
+        if (row < 0 || row >= this.height) {
+            return offset < len ? offset : len;
+        }
+        final char[] c = this.chars[row];
+        final int[] s = this.styles[row];
+        int i = offset;
+        while (i < len) {
+            final int col = x + i;
+            if (col < 0 || col >= this.width || s[col] != styleId || c[col] != buf[start + i]) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Find the first cell of a run at or after an offset that equals the shadow.
+     *
+     * @param x
+     *            the first column of the run
+     * @param row
+     *            the visible row
+     * @param styleId
+     *            the style palette id
+     * @param buf
+     *            the buffer
+     * @param start
+     *            the start in the buffer
+     * @param len
+     *            the length of the run
+     * @param offset
+     *            the offset in the run to start at
+     * @return the offset of the first equal cell, len if none
+     */
+    int skipChanged(final int x, final int row, final int styleId, final char[] buf, final int start, final int len,
+        final int offset) {
+        int i = offset;
+        while (i < len && this.skipSame(x, row, styleId, buf, start, len, i) == i) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Mirror a copy of rows on the image: rows y to y + h - 1 move by dy, clipped to the shadow, rows left behind
+     * keep their cells just like their pixels.
+     *
+     * @param y
+     *            the first row
+     * @param h
+     *            the number of rows
+     * @param dy
+     *            the distance
+     */
+    void scroll(final int y, final int h, final int dy) {
+        final int from = Math.max(Math.max(y, -dy), 0);
+        final int to = Math.min(Math.min(y + h, this.height - dy), this.height);
+        if (dy < 0) {
+            for (int row = from; row < to; row++) {
+                this.copyRow(row, row + dy);
+            }
+        } else if (dy > 0) {
+            for (int row = to - 1; row >= from; row--) {
+                this.copyRow(row, row + dy);
+            }
+        }
+    }
+
+    /**
+     * Copy a row.
+     *
+     * @param src
+     *            the source row
+     * @param dst
+     *            the destination row
+     */
+    private void copyRow(final int src, final int dst) {
+        System.arraycopy(this.chars[src], 0, this.chars[dst], 0, this.width);
+        System.arraycopy(this.styles[src], 0, this.styles[dst], 0, this.width);
+    }
+
+    /**
+     * Count damaged cells.
+     *
+     * @param compared
+     *            the cells compared
+     * @param drawn
+     *            the cells drawn
+     */
+    void count(final int compared, final int drawn) {
+        this.cellsCompared += compared;
+        this.cellsDrawn += drawn;
+    }
+
+    /**
+     * Gets the damaged cells compared.
+     *
+     * @return the cells compared
+     */
+    long getCellsCompared() {
+        return this.cellsCompared;
+    }
+
+    /**
+     * Gets the damaged cells skipped because they were unchanged.
+     *
+     * @return the cells skipped
+     */
+    long getCellsSkipped() {
+        return this.cellsCompared - this.cellsDrawn;
+    }
+}
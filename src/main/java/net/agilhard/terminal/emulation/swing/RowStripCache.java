@@ -0,0 +1,182 @@
+/*
+ * RowStripCache
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small least recently used cache of rasterized rows for smooth scrolling and the views of a panel.
+ *
+ * <p>
+ * Each strip is one row of the off-screen image at device resolution. Strips are keyed by absolute line number,
+ * that is the number of lines moved to the scroll buffer before the row plus the row, so strips of scroll buffer
+ * lines stay valid while output scrolls. Strips of back buffer lines have keys at or above the current number of
+ * history lines and are dropped on damage. Only used on the event dispatch thread.
+ * </p>
+ */
+final class RowStripCache {
+
+    /** The strips. */
+    private final LinkedHashMap<Integer, BufferedImage> strips;
+
+    /** The maximum number of strips. */
+    private int capacity;
+
+    /** The hits. */
+    private long hits;
+
+    /** The misses. */
+    private long misses;
+
+    /**
+     * Instantiates a new row strip cache.
+     *
+     * @param capacity
+     *            the maximum number of strips
+     */
+    RowStripCache(final int capacity) {
+        this.capacity = capacity;
+        this.strips = new LinkedHashMap<Integer, BufferedImage>(capacity * 2, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @SuppressWarnings("synthetic-access")
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Integer, BufferedImage> eldest) {
+                if (this.size() > RowStripCache.this.capacity) {
+                    eldest.getValue().flush();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Sets the capacity. A smaller capacity takes effect as strips are added.
+     *
+     * @param capacity
+     *            the maximum number of strips
+     */
+    void setCapacity(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets a strip, counting hits and misses.
+     *
+     * @param line
+     *            the absolute line
+     * @return the strip, null if not cached
+     */
+    BufferedImage get(final int line) {
+        final BufferedImage strip = this.strips.get(Integer.valueOf(line));
+        if (strip != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+        return strip;
+    }
+
+    /**
+     * Gets a strip without counting hits and misses, for readers other than smooth scrolling.
+     *
+     * @param line
+     *            the absolute line
+     * @return the strip, null if not cached
+     */
+    BufferedImage peek(final int line) {
+        return this.strips.get(Integer.valueOf(line));
+    }
+
+    /**
+     * Checks if a strip is cached, without counting or touching it.
+     *
+     * @param line
+     *            the absolute line
+     * @return true, if cached
+     */
+    boolean contains(final int line) {
+        return this.strips.containsKey(Integer.valueOf(line));
+    }
+
+    /**
+     * Put a strip.
+     *
+     * @param line
+     *            the absolute line
+     * @param strip
+     *            the strip
+     */
+    void put(final int line, final BufferedImage strip) {
+        final BufferedImage old = this.strips.put(Integer.valueOf(line), strip);
+        if (old != null) {
+            old.flush();
+        }
+    }
+
+    /**
+     * Drop all strips of lines at or after a line.
+     *
+     * @param line
+     *            the first absolute line to drop
+     */
+    void dropFrom(final int line) {
+        for (final Iterator<Map.Entry<Integer, BufferedImage>> it = this.strips.entrySet().iterator(); it
+            .hasNext();) {
+            final Map.Entry<Integer, BufferedImage> e = it.next();
+            if (e.getKey().intValue() >= line) {
+                e.getValue().flush();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop all strips.
+     */
+    void clear() {
+        for (final BufferedImage strip : this.strips.values()) {
+            strip.flush();
+        }
+        this.strips.clear();
+    }
+
+    /**
+     * Gets the hits.
+     *
+     * @return the hits
+     */
+    long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Gets the misses.
+     *
+     * @return the misses
+     */
+    long getMisses() {
+        return this.misses;
+    }
+}
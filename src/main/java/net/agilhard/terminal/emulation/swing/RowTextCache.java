@@ -0,0 +1,237 @@
+/*
+ * RowTextCache
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import net.agilhard.terminal.emulation.Style;
+import net.agilhard.terminal.emulation.StyledRunConsumer;
+
+/**
+ * Text of the back buffer rows, maintained from damaged runs and server scrolls only.
+ *
+ * <p>
+ * Every write gives the row a new version, versions move with the rows when they scroll. Consumers keep
+ * derived data keyed by version and never need to re-read the back buffer. Rows written since the last
+ * {@link #clearDirty()} are flagged dirty and remember the version they had before, the one still on screen
+ * until they are redrawn. Only used on the event dispatch thread.
+ * </p>
+ */
+final class RowTextCache implements StyledRunConsumer {
+
+    /** The rows. */
+    private char[][] rows = new char[0][];
+
+    /** The version per row. */
+    private long[] versions = new long[0];
+
+    /** The version per row before it became dirty. */
+    private long[] baseVersions = new long[0];
+
+    /** The dirty rows. */
+    private final BitSet dirty = new BitSet();
+
+    /** The width. */
+    private int width;
+
+    /** The height. */
+    private int height;
+
+    /** The last version handed out. */
+    private long lastVersion;
+
+    /**
+     * Resize, dropping all text.
+     *
+     * @param w
+     *            the width
+     * @param h
+     *            the height
+     */
+    void resize(final int w, final int h) {
+        this.width = w;
+        this.height = h;
+        this.rows = new char[h][w];
+        this.versions = new long[h];
+        this.baseVersions = new long[h];
+        for (int y = 0; y < h; y++) {
+            Arrays.fill(this.rows[y], ' ');
+            this.versions[y] = ++this.lastVersion;
+            this.baseVersions[y] = this.versions[y];
+        }
+        this.dirty.clear();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see net.agilhard.terminal.emulation.StyledRunConsumer#consumeRun(int, int,
+     * net.agilhard.terminal.emulation.Style, char[], int, int)
+     */
+    /** {@inheritDoc} */
+    @SuppressWarnings("unused")
+    @Override
+    public void consumeRun(final int x, final int y, final Style style, final char[] buf, final int start,
+        final int len) {
+        if (y < 0 || y >= this.height || x >= this.width) {
+            return;
+        }
+        final int n = Math.min(len, this.width - x);
+        System.arraycopy(buf, start, this.rows[y], x, n);
+        if (!this.dirty.get(y)) {
+            this.baseVersions[y] = this.versions[y];
+        }
+        this.versions[y] = ++this.lastVersion;
+        this.dirty.set(y);
+    }
+
+    /**
+     * Move the rows y to y + h - 1 by dy rows, like the copyArea of the panel.
+     *
+     * @param y
+     *            the first row
+     * @param h
+     *            the row count
+     * @param dy
+     *            the distance
+     */
+    void scroll(final int y, final int h, final int dy) {
+        final int from = Math.max(Math.max(y, -dy), 0);
+        final int to = Math.min(Math.min(y + h, this.height - dy), this.height);
+        if (dy < 0) {
+            for (int row = from; row < to; row++) {
+                this.copyRow(row, row + dy);
+            }
+        } else if (dy > 0) {
+            for (int row = to - 1; row >= from; row--) {
+                this.copyRow(row, row + dy);
+            }
+        }
+    }
+
+    /**
+     * Copy a row with its versions and dirty flag.
+     *
+     * @param src
+     *            the source row
+     * @param dst
+     *            the destination row
+     */
+    private void copyRow(final int src, final int dst) {
+        System.arraycopy(this.rows[src], 0, this.rows[dst], 0, this.width);
+        this.versions[dst] = this.versions[src];
+        this.baseVersions[dst] = this.baseVersions[src];
+        this.dirty.set(dst, this.dirty.get(src));
+    }
+
+    /**
+     * Gets the text of a row. The array is live, copy it before handing it to another thread.
+     *
+     * @param y
+     *            the row
+     * @return the chars
+     */
+    char[] getRow(final int y) {
+        return this.rows[y];
+    }
+
+    /**
+     * Gets the version of a row.
+     *
+     * @param y
+     *            the row
+     * @return the version, 0 outside of the cache
+     */
+    long getVersion(final int y) {
+        return y >= 0 && y < this.height ? this.versions[y] : 0;
+    }
+
+    /**
+     * Gets the version a dirty row had before its first write since the last {@link #clearDirty()}.
+     *
+     * @param y
+     *            the row
+     * @return the version, 0 outside of the cache
+     */
+    long getBaseVersion(final int y) {
+        return y >= 0 && y < this.height ? this.baseVersions[y] : 0;
+    }
+
+    /**
+     * Find the row currently holding a version.
+     *
+     * @param version
+     *            the version
+     * @return the row, -1 if the version is gone
+     */
+    int rowOf(final long version) {
+        for (int y = 0; y < this.height; y++) {
+            if (this.versions[y] == version) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the next dirty row.
+     *
+     * @param from
+     *            the row to start at
+     * @return the row, -1 if none
+     */
+    int nextDirty(final int from) {
+        return this.dirty.nextSetBit(from);
+    }
+
+    /**
+     * Checks for dirty rows.
+     *
+     * @return true, if any row is dirty
+     */
+    boolean hasDirty() {
+        return !this.dirty.isEmpty();
+    }
+
+    /**
+     * Clear the dirty flags.
+     */
+    void clearDirty() {
+        this.dirty.clear();
+    }
+
+    /**
+     * Gets the width.
+     *
+     * @return the width
+     */
+    int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Gets the height.
+     *
+     * @return the height
+     */
+    int getHeight() {
+        return this.height;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * SelectionMode
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+/**
+ * The selection modes of a {@link TermPanel}.
+ */
+public enum SelectionMode {
+
+    /** Linear selection from start to end, the default. */
+    STREAM,
+
+    /** Rectangular selection of a column range over a row range. */
+    BLOCK,
+
+    /** Word selection, usually by double-click. */
+    WORD,
+
+    /** Line selection, usually by triple-click. */
+    LINE;
+
+    /**
+     * Checks if the selection is a rectangle.
+     *
+     * @return true, if the selection is a rectangle
+     */
+    public boolean isBlock() {
+        return this == BLOCK;
+    }
+}
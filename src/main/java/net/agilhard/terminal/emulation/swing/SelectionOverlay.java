@@ -0,0 +1,228 @@
+/*
+ * SelectionOverlay
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+
+/**
+ * Cached geometry of the selection overlay.
+ *
+ * <p>
+ * A stream selection is kept as up to three rectangles, a block selection as one rectangle, in cell coordinates
+ * (rows are buffer rows, negative for the scroll buffer). They are only recomputed when the selection changes,
+ * painting just converts them to pixels.
+ * </p>
+ */
+final class SelectionOverlay {
+
+    /** The maximum number of rectangles. */
+    private static final int MAX_RECTS = 3;
+
+    /** The rectangles as x, row, width, height quadruples. */
+    private final int[] rects = new int[MAX_RECTS * 4];
+
+    /** The rect count. */
+    private int rectCount;
+
+    /** The first row covered by the overlay. */
+    private int topRow;
+
+    /** The last row covered by the overlay. */
+    private int bottomRow;
+
+    /** The valid flag. */
+    private boolean valid;
+
+    /** The selection start the geometry was computed for. */
+    private final Point cachedStart = new Point();
+
+    /** The selection end the geometry was computed for. */
+    private final Point cachedEnd = new Point();
+
+    /** The column count the geometry was computed for. */
+    private int cachedWidth = -1;
+
+    /** The block flag the geometry was computed for. */
+    private boolean cachedBlock;
+
+    /**
+     * Invalidate the cached geometry.
+     */
+    void invalidate() {
+        this.valid = false;
+    }
+
+    /**
+     * Update the geometry if the selection changed.
+     *
+     * @param start
+     *            the selection start
+     * @param end
+     *            the selection end
+     * @param width
+     *            the column count
+     * @param block
+     *            true for a rectangular selection
+     * @return true, if the overlay is not empty
+     */
+    boolean update(final Point start, final Point end, final int width, final boolean block) {
+        if (start == null || end == null) {
+            this.rectCount = 0;
+            this.valid = false;
+            return false;
+        }
+        if (this.valid && start.equals(this.cachedStart) && end.equals(this.cachedEnd) && width == this.cachedWidth
+            && block == this.cachedBlock) {
+            return this.rectCount > 0;
+        }
+        this.cachedStart.setLocation(start);
+        this.cachedEnd.setLocation(end);
+        this.cachedWidth = width;
+        this.cachedBlock = block;
+        this.valid = true;
+        this.rectCount = 0;
+
+        if (block) {
+            final int left = blockLeft(start, end);
+            final int top = Math.min(start.y, end.y);
+            this.add(left, top, blockRight(start, end) - left, Math.abs(end.y - start.y) + 1);
+        } else if (start.y == end.y) {
+            /* same line */
+            if (start.x != end.x) {
+                final int x0 = Math.min(start.x, end.x);
+                this.add(x0, start.y, Math.max(start.x, end.x) - x0, 1);
+            }
+        } else {
+            final Point top = start.y < end.y ? start : end;
+            final Point bottom = start.y > end.y ? start : end;
+            /* to end of first line */
+            this.add(top.x, top.y, width - top.x, 1);
+            if (bottom.y - top.y > 1) {
+                /* intermediate lines */
+                this.add(0, top.y + 1, width, bottom.y - top.y - 1);
+            }
+            /* from beginning of last line */
+            this.add(0, bottom.y, bottom.x, 1);
+        }
+        return this.rectCount > 0;
+    }
+
+    /**
+     * Gets the first column of a block selection. The end column is exclusive, the start column inclusive.
+     *
+     * @param start
+     *            the selection start
+     * @param end
+     *            the selection end
+     * @return the first column
+     */
+    static int blockLeft(final Point start, final Point end) {
+        return Math.max(0, Math.min(start.x, end.x - 1));
+    }
+
+    /**
+     * Gets the column after the last one of a block selection.
+     *
+     * @param start
+     *            the selection start
+     * @param end
+     *            the selection end
+     * @return the exclusive last column
+     */
+    static int blockRight(final Point start, final Point end) {
+        return Math.max(start.x + 1, end.x);
+    }
+
+    /**
+     * Adds a rectangle.
+     *
+     * @param x
+     *            the column
+     * @param row
+     *            the row
+     * @param w
+     *            the width in columns
+     * @param h
+     *            the height in rows
+     */
+    private void add(final int x, final int row, final int w, final int h) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        final int i = this.rectCount * 4;
+        this.rects[i] = x;
+        this.rects[i + 1] = row;
+        this.rects[i + 2] = w;
+        this.rects[i + 3] = h;
+        if (this.rectCount == 0 || row < this.topRow) {
+            this.topRow = row;
+        }
+        if (this.rectCount == 0 || row + h - 1 > this.bottomRow) {
+            this.bottomRow = row + h - 1;
+        }
+        this.rectCount++;
+    }
+
+    /**
+     * Paint the overlay. The caller sets up color and XOR mode.
+     *
+     * @param g
+     *            the graphics
+     * @param charWidth
+     *            the char width
+     * @param charHeight
+     *            the char height
+     * @param origin
+     *            the client scroll origin
+     */
+    void paint(final Graphics2D g, final int charWidth, final int charHeight, final int origin) {
+        for (int i = 0; i < this.rectCount * 4; i += 4) {
+            g.fillRect(this.rects[i] * charWidth, (this.rects[i + 1] - origin) * charHeight,
+                this.rects[i + 2] * charWidth, this.rects[i + 3] * charHeight);
+        }
+    }
+
+    /**
+     * Gets the rect count.
+     *
+     * @return the rect count
+     */
+    int getRectCount() {
+        return this.rectCount;
+    }
+
+    /**
+     * Gets the top row.
+     *
+     * @return the top row
+     */
+    int getTopRow() {
+        return this.topRow;
+    }
+
+    /**
+     * Gets the bottom row.
+     *
+     * @return the bottom row
+     */
+    int getBottomRow() {
+        return this.bottomRow;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * ShapedSelectionListener
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Point;
+
+import net.agilhard.terminal.emulation.SelectionListener;
+
+/**
+ * A {@link SelectionListener} that is also told the shape of the selection.
+ *
+ * <p>
+ * {@link TermPanel} calls {@link #selectionChanged(Point, Point, SelectionMode)} instead of
+ * {@link #selectionChanged(Point, Point)} on listeners implementing this interface.
+ * </p>
+ */
+public interface ShapedSelectionListener extends SelectionListener {
+
+    /**
+     * Selection changed.
+     *
+     * @param selectionStart
+     *            the selection start, null if there is no selection
+     * @param selectionEnd
+     *            the selection end, null if there is no selection
+     * @param mode
+     *            the selection mode
+     */
+    void selectionChanged(Point selectionStart, Point selectionEnd, SelectionMode mode);
+}
@@ -0,0 +1,166 @@
+/*
+ * StylePalette
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Color;
+import java.awt.Font;
+
+import net.agilhard.terminal.emulation.Style;
+
+/**
+ * Interned palette of pre-resolved render descriptors.
+ *
+ * <p>
+ * Maps each {@link Style} by identity to an {@link Entry} holding the colors, the font and the decorations needed to
+ * paint a run. The table has a fixed size; a lookup that hits does not allocate, a miss replaces the slot.
+ * </p>
+ */
+final class StylePalette {
+
+    /** The default capacity, must be a power of two. */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /** The entries. */
+    private final Entry[] entries;
+
+    /** The mask. */
+    private final int mask;
+
+    /** The normal font. */
+    private Font normalFont;
+
+    /** The bold font. */
+    private Font boldFont;
+
+    /** The next entry id. */
+    private int nextId;
+
+    /**
+     * The Class Entry.
+     */
+    static final class Entry {
+
+        /** The style. */
+        final Style style;
+
+        /** The id, unique for the lifetime of the palette. */
+        final int id;
+
+        /** The foreground. */
+        final Color foreground;
+
+        /** The background. */
+        final Color background;
+
+        /** The foreground for run. */
+        final Color foregroundForRun;
+
+        /** The background for run. */
+        final Color backgroundForRun;
+
+        /** The font. */
+        final Font font;
+
+        /** The bold. */
+        final boolean bold;
+
+        /** The underline. */
+        final boolean underline;
+
+        /**
+         * Instantiates a new entry.
+         *
+         * @param style
+         *            the style
+         * @param id
+         *            the id
+         * @param normalFont
+         *            the normal font
+         * @param boldFont
+         *            the bold font
+         */
+        Entry(final Style style, final int id, final Font normalFont, final Font boldFont) {
+            this.style = style;
+            this.id = id;
+            this.foreground = style.getForeground();
+            this.background = style.getBackground();
+            this.foregroundForRun = style.getForegroundForRun();
+            this.backgroundForRun = style.getBackgroundForRun();
+            this.bold = style.hasOption(Style.Option.BOLD);
+            this.underline = style.hasOption(Style.Option.UNDERSCORE);
+            this.font = this.bold ? boldFont : normalFont;
+        }
+    }
+
+    /**
+     * Instantiates a new style palette.
+     */
+    StylePalette() {
+        this.entries = new Entry[DEFAULT_CAPACITY];
+        this.mask = DEFAULT_CAPACITY - 1;
+    }
+
+    /**
+     * Sets the fonts. Drops all cached entries.
+     *
+     * @param normal
+     *            the normal font
+     * @param bold
+     *            the bold font
+     */
+    void setFonts(final Font normal, final Font bold) {
+        this.normalFont = normal;
+        this.boldFont = bold;
+        this.clear();
+    }
+
+    /**
+     * Gets the entry for a style.
+     *
+     * @param style
+     *            the style
+     * @return the entry
+     */
+    Entry get(final Style style) {
+        final int h = System.identityHashCode(style);
+        final int i = h & this.mask;
+        Entry e = this.entries[i];
+        if (e != null && e.style == style) {
+            return e;
+        }
+        /* second probe before evicting */
+        final int j = (h >>> 8 ^ i) & this.mask;
+        final Entry f = this.entries[j];
+        if (f != null && f.style == style) {
+            return f;
+        }
+        e = new Entry(style, this.nextId++, this.normalFont, this.boldFont);
+        this.entries[this.entries[i] != null && f == null ? j : i] = e;
+        return e;
+    }
+
+    /**
+     * Clear.
+     */
+    void clear() {
+        for (int i = 0; i < this.entries.length; i++) {
+            this.entries[i] = null;
+        }
+    }
+}
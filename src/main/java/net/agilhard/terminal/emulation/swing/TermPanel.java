@@ -21,14 +21,18 @@
 
 package net.agilhard.terminal.emulation.swing;
 
+import java.awt.Color;
 import java.awt.Component;
+import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Event;
 import java.awt.Font;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.HeadlessException;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
 import java.awt.datatransfer.Clipboard;
@@ -41,19 +45,41 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import javax.accessibility.AccessibleContext;
+import javax.accessibility.AccessibleRole;
+import javax.accessibility.AccessibleState;
+import javax.accessibility.AccessibleStateSet;
+import javax.accessibility.AccessibleText;
 import javax.swing.BoundedRangeModel;
 import javax.swing.DefaultBoundedRangeModel;
 import javax.swing.JComponent;
+import javax.swing.JOptionPane;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingWorker;
 import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -85,15 +111,87 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     /** The Constant serialVersionUID. */
     private static final long serialVersionUID = -1048763516632093014L;
 
+    /** The last panel id handed out. */
+    private static final AtomicInteger PANEL_IDS = new AtomicInteger();
+
+    /** The panel id, identifying the panel in flight recordings. */
+    private final int panelId = PANEL_IDS.incrementAndGet();
+
+    /** The lines moved to the scroll buffer since the scroll model was last updated. */
+    private int linesToHistory;
+
+    /** The number of history lines when the off-screen image was last brought up to date. */
+    private int imageHistoryLines;
+
+    /** Live rows changed while they were not in view. */
+    private boolean liveDirty;
+
+    /** The damaged cells of the current frame. */
+    private int frameCells;
+
+    /** The scrollArea calls since the last frame, guarded by the back buffer lock. */
+    private int scrollCalls;
+
+    /** The lines scrolled since the last frame, guarded by the back buffer lock. */
+    private int scrollLines;
+
+    /** The time of the first scrollArea call since the last frame. */
+    private long scrollBurstStart;
+
     /** The Constant FPS. */
     private static final double FPS = 20;
 
+    /** The name of the bound property fired when the panel enters or leaves hibernation. */
+    public static final String HIBERNATING_PROPERTY = "hibernating";
+
+    /** The delay in milliseconds between the panel being hidden and it hibernating. */
+    private static final int HIBERNATE_DELAY = 2000;
+
+    /** The maximum number of lines moved to the scroll buffer while hibernating that are scanned for links on wake. */
+    private static final int HISTORY_RESCAN = 1000;
+
+    /** The maximum number of scroll buffer lines summarized when the first overview strip is attached. */
+    private static final int SUMMARY_BACKFILL = 10000;
+
+    /** The default number of characters above which a paste asks for confirmation. */
+    private static final int DEFAULT_PASTE_CONFIRM_THRESHOLD = 64 * 1024;
+
+    /** The default number of lines shown in the confirmation of a large paste. */
+    private static final int DEFAULT_PASTE_PREVIEW_LINES = 10;
+
+    /** The rows scrolled per wheel notch. */
+    private static final int WHEEL_ROWS = 3;
+
+    /** The number of rows beyond the viewport kept rasterized in the direction of travel. */
+    private static final int STRIP_AHEAD = 8;
+
+    /** The number of strips kept for smooth scrolling. */
+    private static final int STRIP_CAPACITY = 2 * STRIP_AHEAD + 4;
+
+    /** The number of rows rasterized ahead per frame. */
+    private static final int STRIP_PREFETCH_PER_FRAME = 4;
+
+    /** The delay between auto scroll steps while dragging a selection outside of the panel. */
+    private static final int AUTO_SCROLL_DELAY = 50;
+
+    /** The smallest font size zooming goes to. */
+    private static final float MIN_FONT_SIZE = 4;
+
+    /** The default non alphanumeric characters that are part of a word for word selection. */
+    private static final String DEFAULT_WORD_CHARS = "-_.~/:@%+#";
+
     /** The img. */
     private BufferedImage img;
 
-    /** The gfx. */
+    /** The gfx, scaled so that drawing uses logical pixels. */
     private Graphics2D gfx;
 
+    /** The device scale, of the font metrics and the images. */
+    private double scale = 1;
+
+    /** The scale img was allocated for, differs from scale only while checkDeviceScale rebuilds it. */
+    private double imageScale = 1;
+
     /** The term component. */
     private final Component termComponent = this;
 
@@ -133,6 +231,15 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     /** The selection in progress. */
     private boolean selectionInProgress;
 
+    /** The selection mode. */
+    private SelectionMode selectionMode = SelectionMode.STREAM;
+
+    /** The non alphanumeric characters that are part of a word. */
+    private String wordChars = DEFAULT_WORD_CHARS;
+
+    /** The grid used for block and word selection. */
+    private final CharGridConsumer selectionGrid = new CharGridConsumer();
+
     /** The clip board. */
     private Clipboard systemClipBoard;
 
@@ -169,6 +276,213 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     /** Selection Listeners. */
     private final List<SelectionListener> selectionListeners = new ArrayList<>();
 
+    /** The palette of pre-resolved styles. */
+    private final StylePalette palette = new StylePalette();
+
+    /** The renderer keeping text on the cell grid. */
+    private CellTextRenderer textRenderer = new CellTextRenderer();
+
+    /** The font size an asynchronous zoom is heading for. */
+    private float zoomTarget;
+
+    /** The worker preparing the zoom target, null if no zoom is in progress. */
+    private SwingWorker<FontSetup, Void> zoomWorker;
+
+    /** The scale of the interim preview while zooming, 1 when not zooming. */
+    private double zoomPreview = 1;
+
+    /** The selection overlay. */
+    private final SelectionOverlay selectionOverlay = new SelectionOverlay();
+
+    /** The auto scroll timer. */
+    private final Timer autoScrollTimer;
+
+    /** The rasterized rows around the viewport. */
+    private final RowStripCache stripCache = new RowStripCache(STRIP_CAPACITY);
+
+    /** The requested top of the view in pixels, relative to the first back buffer row; negative when scrolled back. */
+    private volatile double viewTop;
+
+    /** The direction of the last smooth scroll, -1 up, 1 down. */
+    private int scrollDirection;
+
+    /** The smooth scrolling flag. */
+    private boolean smoothScrolling = true;
+
+    /** The graphics of the strip being rasterized. */
+    private Graphics2D stripGraphics;
+
+    /** Draws runs into the strip being rasterized. */
+    private final StyledRunConsumer stripConsumer = new StyledRunConsumer() {
+
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public void consumeRun(final int x, final int y, final Style style, final char[] buf, final int start,
+            final int len) {
+            TermPanel.this.paintRun(TermPanel.this.stripGraphics, 0, x, y, TermPanel.this.palette.get(style), buf,
+                start, len);
+        }
+    };
+
+    /** The keystroke tracer. */
+    private final KeystrokeTracer keystrokeTracer = new KeystrokeTracer();
+
+    /** The paste streamer. */
+    private final PasteStreamer pasteStreamer = new PasteStreamer(this);
+
+    /** The bracketed paste mode, set by the emulator. */
+    private volatile boolean bracketedPaste;
+
+    /** The paste rate limit in bytes per second, 0 for none. */
+    private int pasteRateLimit;
+
+    /** The number of characters above which a paste asks for confirmation, 0 to never ask. */
+    private int pasteConfirmThreshold = DEFAULT_PASTE_CONFIRM_THRESHOLD;
+
+    /** The number of lines shown in the confirmation of a large paste. */
+    private int pastePreviewLines = DEFAULT_PASTE_PREVIEW_LINES;
+
+    /** The redraw timer. */
+    private final Timer redrawTimer;
+
+    /** The timer hibernating the panel once it has been hidden for a while. */
+    private final Timer hibernateTimer;
+
+    /** The hibernating flag, set while the off-screen image is released. */
+    private volatile boolean hibernating;
+
+    /** The number of history lines when the panel went to hibernate. */
+    private int hibernatedHistoryLines;
+
+    /** The hibernation enabled flag. */
+    private boolean hibernationEnabled = true;
+
+    /** The next frame redraws the whole viewport instead of scrolling and rasterizing damage. */
+    private boolean fullRedrawPending;
+
+    /** The auto scroll direction, -1 up, 1 down, 0 off. */
+    private int autoScrollDirection;
+
+    /** The last drag point. */
+    private final Point lastDragPoint = new Point();
+
+    /** The generation of the off-screen frame, incremented whenever img changes. */
+    private volatile long frameGeneration;
+
+    /** The copy of img handed out by getFrameRaster. */
+    private final FrameSnapshot snapshot = new FrameSnapshot();
+
+    /** The thumbnail. */
+    private final FrameThumbnail thumbnail = new FrameThumbnail();
+
+    /** The frame sinks. */
+    private final List<FrameSink> frameSinks = new ArrayList<>();
+
+    /** The views sharing the session of the panel. */
+    private final List<TermView> views = new ArrayList<>();
+
+    /** The frame sinks need a key frame, set on resize. */
+    private boolean frameSinksNeedKeyframe;
+
+    /** The damage of the current frame goes to the frame sinks. */
+    private boolean damageToSinks;
+
+    /** The damage of the current frame is rasterized, false when a full repaint follows anyway. */
+    private boolean damageToImage = true;
+
+    /** The shadow of the cells drawn into the image. */
+    private final RowShadow shadow = new RowShadow();
+
+    /** The damaged runs are compared against the shadow. */
+    private volatile boolean damageShadow = true;
+
+    /** The flood governor. */
+    private final FloodGovernor floodGovernor = new FloodGovernor();
+
+    /** Forwards damaged runs to the frame sinks and the text cache before rendering them. */
+    private final StyledRunConsumer damageConsumer = new StyledRunConsumer() {
+
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public void consumeRun(final int x, final int y, final Style style, final char[] buf, final int start,
+            final int len) {
+            TermPanel.this.frameCells += len;
+            if (TermPanel.this.damageToSinks) {
+                for (final FrameSink sink : TermPanel.this.frameSinks) {
+                    sink.consumeRun(x, y, style, buf, start, len);
+                }
+            }
+            if (TermPanel.this.damageToText) {
+                TermPanel.this.textCache.consumeRun(x, y, style, buf, start, len);
+            }
+            if (TermPanel.this.damageToImage) {
+                TermPanel.this.drawChangedCells(x, y, style, buf, start, len);
+            }
+        }
+    };
+
+    /** The text of the back buffer rows, maintained from damage. */
+    private final RowTextCache textCache = new RowTextCache();
+
+    /** The damage of the current frame goes to the text cache. */
+    private boolean damageToText;
+
+    /** The text cache must be filled from the whole back buffer, e.g. after it was not maintained. */
+    private boolean textCacheRefill;
+
+    /** The accessible text, created with the accessible context. */
+    private AccessibleTermText accessibleText;
+
+    /** The link detector. */
+    private final LinkDetector linkDetector = new LinkDetector(this.textCache);
+
+    /** The link detection flag. */
+    private volatile boolean linkDetection = true;
+
+    /** The number of lines moved to the scroll buffer so far. */
+    private volatile int historyLines;
+
+    /** The grid capturing lines moved to the scroll buffer for link detection, used under the back buffer lock. */
+    private final CharGridConsumer historyGrid = new CharGridConsumer();
+
+    /** The summaries of the lines moved to the scroll buffer for the overview strips. */
+    private final LineSummaries lineSummaries = new LineSummaries();
+
+    /** The overview summaries flag. */
+    private volatile boolean overviewSummaries = true;
+
+    /** Lines are summarized, overview summaries are enabled and an overview strip is attached. */
+    private boolean summarizing;
+
+    /** The lines moved off the screen go to the history grid, used by scrollArea only. */
+    private boolean historyToGrid;
+
+    /** The lines moved off the screen go to the line summaries, used by scrollArea only. */
+    private boolean historyToSummaries;
+
+    /** The overview strips. */
+    private final List<OverviewStrip> overviews = new ArrayList<>();
+
+    /** Forwards lines moved off the screen to the scroll buffer, the history grid and the line summaries. */
+    private final StyledRunConsumer historyConsumer = new StyledRunConsumer() {
+
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public void consumeRun(final int x, final int y, final Style style, final char[] buf, final int start,
+            final int len) {
+            TermPanel.this.scrollBuffer.consumeRun(x, y, style, buf, start, len);
+            if (TermPanel.this.historyToGrid) {
+                TermPanel.this.historyGrid.consumeRun(x, y, style, buf, start, len);
+            }
+            if (TermPanel.this.historyToSummaries) {
+                TermPanel.this.lineSummaries.consumeRun(x, y, style, buf, start, len);
+            }
+        }
+    };
+
+    /** The link listeners. */
+    private final List<LinkListener> linkListeners = new ArrayList<>();
+
     /**
      * Instantiates a new term panel.
      *
@@ -185,11 +499,16 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
         this.styleState = styleState;
 
         this.brm.setRangeProperties(0, this.termSize.height, -scrollBuffer.getLineCount(), this.termSize.height, false);
+        this.textCache.resize(this.termSize.width, this.termSize.height);
+        this.shadow.resize(this.termSize.width, this.termSize.height);
+        this.linkDetector.clear();
 
         this.normalFont = Font.decode("Monospaced");
         this.boldFont = this.normalFont.deriveFont(Font.BOLD);
 
+        this.scale = this.deviceScale();
         this.establishFontMetrics();
+        CellTextRenderer.loadFallbacksInBackground();
 
         this.setUpImages();
         this.setUpClipboard();
@@ -207,16 +526,23 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
             @SuppressWarnings("synthetic-access")
             @Override
             public void mouseDragged(final MouseEvent e) {
-                final Point charCoords = TermPanel.this.panelToCharCoords(e.getPoint());
+                TermPanel.this.dragSelection(e.getPoint(), e.isAltDown());
+            }
 
-                if (!TermPanel.this.selectionInProgress) {
-                    TermPanel.this.selectionStart = new Point(charCoords);
-                    TermPanel.this.selectionInProgress = true;
-                }
-                TermPanel.this.repaint();
-                TermPanel.this.selectionEnd = charCoords;
-                TermPanel.this.selectionEnd.x =
-                    Math.min(TermPanel.this.selectionEnd.x + 1, TermPanel.this.termSize.width);
+            @SuppressWarnings("synthetic-access")
+            @Override
+            public void mouseMoved(final MouseEvent e) {
+                final boolean overLink = TermPanel.this.getLinkAt(e.getPoint()) != null;
+                TermPanel.this.setCursor(overLink ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR) : null);
+            }
+        });
+
+        this.autoScrollTimer = new Timer(AUTO_SCROLL_DELAY, new ActionListener() {
+
+            @SuppressWarnings({ "synthetic-access", "unused" })
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                TermPanel.this.autoScrollStep();
             }
         });
 
@@ -226,24 +552,31 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
             @Override
             public void mouseReleased(final MouseEvent e) {
                 TermPanel.this.selectionInProgress = false;
+                TermPanel.this.setAutoScroll(0);
                 if (TermPanel.this.selectionStart != null && TermPanel.this.selectionEnd != null) {
                     TermPanel.this.copySelection(TermPanel.this.selectionStart, TermPanel.this.selectionEnd);
                     TermPanel.this.fireSelectionChanged();
                 }
-                TermPanel.this.repaint();
             }
 
             @SuppressWarnings("synthetic-access")
             @Override
             public void mouseClicked(final MouseEvent e) {
                 TermPanel.this.requestFocusInWindow();
-                TermPanel.this.selectionStart = null;
-                TermPanel.this.selectionEnd = null;
+                if (e.getButton() == MouseEvent.BUTTON1 && e.getClickCount() == 1 && e.isControlDown()
+                    && TermPanel.this.activateLink(e.getPoint())) {
+                    return;
+                }
+                if (e.getButton() == MouseEvent.BUTTON1 && e.getClickCount() >= 2) {
+                    TermPanel.this.selectWordOrLine(TermPanel.this.panelToCharCoords(e.getPoint()),
+                        e.getClickCount() == 2 ? SelectionMode.WORD : SelectionMode.LINE);
+                    return;
+                }
+                TermPanel.this.clearSelection();
                 TermPanel.this.fireSelectionChanged();
                 if (e.getButton() == MouseEvent.BUTTON3) {
                     TermPanel.this.pasteSelection();
                 }
-                TermPanel.this.repaint();
             }
         });
 
@@ -256,16 +589,42 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
             }
         });
 
+        this.addPropertyChangeListener("graphicsConfiguration", new PropertyChangeListener() {
+
+            @SuppressWarnings({ "synthetic-access", "unused" })
+            @Override
+            public void propertyChange(final PropertyChangeEvent evt) {
+                TermPanel.this.checkDeviceScale();
+            }
+        });
+
         this.brm.addChangeListener(new ChangeListener() {
 
             @SuppressWarnings({ "synthetic-access", "unused" })
             @Override
             public void stateChanged(final ChangeEvent e) {
-                TermPanel.this.newClientScrollOrigin = TermPanel.this.brm.getValue();
+                final int value = TermPanel.this.brm.getValue();
+                TermPanel.this.newClientScrollOrigin = value;
+                final int rowHeight = TermPanel.this.charSize.height;
+                if (rowHeight > 0 && (int) Math.floor(TermPanel.this.viewTop / rowHeight) != value) {
+                    TermPanel.this.viewTop = (double) value * rowHeight;
+                }
+            }
+        });
+
+        this.addMouseWheelListener(new MouseWheelListener() {
+
+            @SuppressWarnings("synthetic-access")
+            @Override
+            public void mouseWheelMoved(final MouseWheelEvent e) {
+                final double rows = WHEEL_ROWS * e.getPreciseWheelRotation();
+                TermPanel.this.scrollByPixels(TermPanel.this.smoothScrolling ? rows * TermPanel.this.charSize.height
+                    : Math.round(rows) * TermPanel.this.charSize.height);
+                e.consume();
             }
         });
 
-        final Timer redrawTimer = new Timer((int) (1000 / FPS), new ActionListener() {
+        this.redrawTimer = new Timer((int) (1000 / FPS), new ActionListener() {
 
             @SuppressWarnings("unused")
             @Override
@@ -273,8 +632,34 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
                 TermPanel.this.redrawFromDamage();
             }
         });
+
+        this.hibernateTimer = new Timer(HIBERNATE_DELAY, new ActionListener() {
+
+            @SuppressWarnings({ "synthetic-access", "unused" })
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                TermPanel.this.hibernate();
+            }
+        });
+        this.hibernateTimer.setRepeats(false);
+
+        this.addHierarchyListener(new HierarchyListener() {
+
+            @SuppressWarnings("synthetic-access")
+            @Override
+            public void hierarchyChanged(final HierarchyEvent e) {
+                if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) == 0) {
+                    return;
+                }
+                if (TermPanel.this.isShowing()) {
+                    TermPanel.this.wakeUp();
+                } else if (TermPanel.this.hibernationEnabled) {
+                    TermPanel.this.hibernateTimer.restart();
+                }
+            }
+        });
         this.setDoubleBuffered(true);
-        redrawTimer.start();
+        this.redrawTimer.start();
         this.repaint();
 
     }
@@ -287,6 +672,8 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     }
 
     public void setFontSize(float val) {
+	this.zoomTarget = val;
+	this.zoomPreview = 1;
 	this.normalFont = new Font("monospaced", Font.PLAIN, (int) val);
 	this.boldFont= new Font("monospaced", Font.BOLD, (int) val);
 	this.adjustForFontSize();
@@ -305,149 +692,1081 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     }
 
     public void increaseFontSize(float amount) {
-	this.normalFont = new Font("monospaced", Font.PLAIN, (int) ( this.normalFont.getSize2D() + amount));
-	this.boldFont = new Font("monospaced", Font.BOLD, (int) ( this.normalFont.getSize2D() + amount));
-
-	this.adjustForFontSize();
+	this.zoomTo(this.getZoomBase() + amount);
     }
 
     public void decreaseFontSize(float amount) {
-	this.normalFont = new Font("monospaced", Font.PLAIN, (int) ( this.normalFont.getSize2D() - amount));
-	this.boldFont = new Font("monospaced", Font.BOLD, (int) ( this.normalFont.getSize2D() - amount));
-
-	this.adjustForFontSize();
+	this.zoomTo(this.getZoomBase() - amount);
     }
 
     /**
-     * Panel to char coords.
+     * Gets the size further zoom steps start from: the pending target while zooming, the font size otherwise.
      *
-     * @param p
-     *            the p
-     * @return the point
+     * @return the zoom base
      */
-    private Point panelToCharCoords(final Point p) {
-        return new Point(p.x / this.charSize.width, p.y / this.charSize.height + this.clientScrollOrigin);
+    private float getZoomBase() {
+        return this.zoomWorker != null ? this.zoomTarget : this.normalFont.getSize2D();
     }
 
     /**
-     * Sets the up clipboard.
-     */
-    void setUpClipboard() {
-        this.systemSelection = Toolkit.getDefaultToolkit().getSystemSelection();
-        this.systemClipBoard = Toolkit.getDefaultToolkit().getSystemClipboard();
-    }
-
-    /**
-     * Copy selection.
+     * Zoom to a font size asynchronously. Metrics and glyph caches for the target are prepared off the event
+     * dispatch thread while a scaled preview of the current frame is shown; repeated calls while a zoom is in
+     * progress only move the target. The new fonts are swapped in with a single full redraw.
      *
-     * @param csSelectionStart
-     *            the cs_selection start
-     * @param csSelectionEnd
-     *            the cs_selection end
-     * @param cb
-     *            the Clipboard
+     * @param size
+     *            the font size
      */
-    private void copyClipboard(final Point csSelectionStart, final Point csSelectionEnd, final Clipboard cb) {
-
-        if (csSelectionStart == null || csSelectionEnd == null) {
+    public void zoomTo(final float size) {
+        final float target = Math.max(MIN_FONT_SIZE, (int) size);
+        if (this.zoomWorker == null && target == this.normalFont.getSize2D()) {
             return;
         }
-
-        Point top;
-        Point bottom;
-
-        if (csSelectionStart.y == csSelectionEnd.y) {
-            /* same line */
-            top = csSelectionStart.x < csSelectionEnd.x ? csSelectionStart : csSelectionEnd;
-            bottom = csSelectionStart.x >= csSelectionEnd.x ? csSelectionStart : csSelectionEnd;
-        } else {
-            top = csSelectionStart.y < csSelectionEnd.y ? csSelectionStart : csSelectionEnd;
-            bottom = csSelectionStart.y > csSelectionEnd.y ? csSelectionStart : csSelectionEnd;
+        this.zoomTarget = target;
+        this.zoomPreview = target / this.normalFont.getSize2D();
+        this.repaint();
+        if (this.zoomWorker == null) {
+            this.startZoomWorker();
         }
+    }
 
-        final StringBuffer selection = new StringBuffer();
-        if (top.y < 0) {
-            final Point scrollEnd = bottom.y >= 0 ? new Point(this.termSize.width, -1) : bottom;
-            this.scrollBuffer.pumpRuns(top.y, scrollEnd.y - top.y, new SelectionRunConsumer(selection, top, scrollEnd));
-
-        }
+    /**
+     * Start the worker preparing the current zoom target.
+     */
+    private void startZoomWorker() {
+        final int size = (int) this.zoomTarget;
+        final double workerScale = this.scale;
+        final int workerLineSpace = this.lineSpace;
+        final boolean workerAntialiasing = this.antialiasing;
+        this.zoomWorker = new SwingWorker<FontSetup, Void>() {
 
-        if (bottom.y >= 0) {
-            final Point backBegin = top.y < 0 ? new Point(0, 0) : top;
-            this.backBuffer.pumpRuns(0, backBegin.y, this.termSize.width, bottom.y - backBegin.y + 1,
-                new SelectionRunConsumer(selection, backBegin, bottom));
-        }
+            /** The renderer prepared for the target. */
+            private final CellTextRenderer renderer = new CellTextRenderer();
 
-        if (selection.length() == 0) {
-            return;
-        }
+            @Override
+            protected FontSetup doInBackground() {
+                final FontSetup setup = FontSetup.monospaced(size, workerScale, workerLineSpace);
+                this.renderer.reset(setup.charWidth, setup.charHeight, setup.descent);
+                this.renderer.warmUp(setup, workerAntialiasing);
+                return setup;
+            }
 
-        try {
-            cb.setContents(new StringSelection(selection.toString()), this);
-        }
-        catch (final IllegalStateException e) {
-            this.log.error("Could not set clipboard:", e);
-        }
+            @SuppressWarnings("synthetic-access")
+            @Override
+            protected void done() {
+                TermPanel.this.zoomWorker = null;
+                try {
+                    final FontSetup setup = this.get();
+                    if ((int) TermPanel.this.zoomTarget != setup.normalFont.getSize()
+                        || setup.scale != TermPanel.this.scale) {
+                        /* the target moved on in the meantime */
+                        this.renderer.dispose();
+                        TermPanel.this.startZoomWorker();
+                    } else {
+                        TermPanel.this.applyZoom(setup, this.renderer);
+                    }
+                }
+                catch (final InterruptedException e) {
+                    this.renderer.dispose();
+                    Thread.currentThread().interrupt();
+                }
+                catch (final ExecutionException e) {
+                    this.renderer.dispose();
+                    TermPanel.this.log.error("Could not prepare font zoom:", e);
+                    TermPanel.this.zoomPreview = 1;
+                    TermPanel.this.repaint();
+                }
+            }
+        };
+        this.zoomWorker.execute();
     }
 
     /**
-     * Copy selection.
+     * Swap in prepared fonts, metrics and caches and redraw once.
      *
-     * @param csSelectionStart
-     *            the cs_selection start
-     * @param csSelectionEnd
-     *            the cs_selection end
+     * @param setup
+     *            the font setup
+     * @param renderer
+     *            the prepared renderer
      */
-    private void copySelection(final Point csSelectionStart, final Point csSelectionEnd) {
-        this.copyClipboard(csSelectionStart, csSelectionEnd,
-            this.systemSelection != null ? this.systemSelection : this.systemClipBoard);
+    private void applyZoom(final FontSetup setup, final CellTextRenderer renderer) {
+        renderer.setBoxDrawing(this.textRenderer.isBoxDrawing());
+        this.textRenderer.dispose();
+        this.textRenderer = renderer;
+        this.applyFontSetup(setup, false);
+        this.zoomPreview = 1;
+        this.setSize(this.doResize(this.termSize, null));
+        this.backBuffer.lock();
+        try {
+            this.redrawViewport();
+        } finally {
+            this.backBuffer.unlock();
+        }
+        this.repaint();
     }
 
     /**
-     * Copy clipboard.
+     * Panel to char coords.
      *
-     * @param csSelectionStart
-     *            the cs_selection start
-     * @param csSelectionEnd
-     *            the cs_selection end
+     * @param p
+     *            the p
+     * @return the point
      */
-    private void copyClipboard(final Point csSelectionStart, final Point csSelectionEnd) {
-        this.copyClipboard(csSelectionStart, csSelectionEnd, this.systemClipBoard);
+    Point panelToCharCoords(final Point p) {
+        return new Point(p.x / this.charSize.width, (int) Math.floor((p.y + this.viewTop) / this.charSize.height));
     }
 
     /**
-     * Copy clipboard.
+     * Gets the bounds of a cell in panel coordinates.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row, negative in the history
+     * @return the bounds
      */
-    public void copyClipboard() {
-        this.copyClipboard(this.selectionStart, this.selectionEnd);
+    Rectangle getCellBounds(final int x, final int y) {
+        return new Rectangle(x * this.charSize.width,
+            (int) Math.round(y * this.charSize.height - this.viewTop), this.charSize.width, this.charSize.height);
     }
 
     /**
-     * Paste selection.
+     * Gets the selected text.
+     *
+     * @return the selected text, null if nothing is selected
      */
-    public void pasteSelection() {
-        if (this.systemSelection == null) {
-            this.pasteClipboard();
+    String getSelectedText() {
+        if (this.selectionStart == null || this.selectionEnd == null) {
+            return null;
         }
+        final StringBuffer selection = new StringBuffer();
+        this.backBuffer.lock();
         try {
-            final String selection = (String) this.systemSelection.getData(DataFlavor.stringFlavor);
-            this.emulator.sendBytes(selection.getBytes());
-        }
-        catch (final UnsupportedFlavorException e) {
-            this.log.debug("unsupported flavor in paste", e);
+            if (this.selectionMode.isBlock()) {
+                this.copyBlock(this.selectionStart, this.selectionEnd, selection);
+            } else {
+                this.copyStream(this.selectionStart, this.selectionEnd, selection);
+            }
+        } finally {
+            this.backBuffer.unlock();
         }
-        catch (final IOException e) {
-            this.log.debug("I/O error in paste", e);
+        return selection.toString();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.JComponent#getAccessibleContext()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public AccessibleContext getAccessibleContext() {
+        if (this.accessibleContext == null) {
+            final AccessibleTermPanel context = new AccessibleTermPanel();
+            this.accessibleText = new AccessibleTermText(this, this.textCache, context);
+            /* the text cache is only maintained for link detection so far */
+            this.textCacheRefill = true;
+            this.accessibleContext = context;
         }
+        return this.accessibleContext;
     }
 
     /**
-     * Paste selection.
+     * Gets the number of batched announcements of new output made to assistive technology.
+     *
+     * @return the announcements, 0 if no accessible context was requested
      */
-    public void pasteClipboard() {
+    public long getAccessibleAnnouncements() {
+        return this.accessibleText != null ? this.accessibleText.getAnnouncements() : 0;
+    }
+
+    /**
+     * The accessible context of the panel, a multi line text of the screen rows.
+     */
+    protected class AccessibleTermPanel extends AccessibleJComponent {
+
+        /** The Constant serialVersionUID. */
+        private static final long serialVersionUID = 1L;
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.swing.JComponent.AccessibleJComponent#getAccessibleRole()
+         */
+        /** {@inheritDoc} */
+        @Override
+        public AccessibleRole getAccessibleRole() {
+            return AccessibleRole.TEXT;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.swing.JComponent.AccessibleJComponent#getAccessibleStateSet()
+         */
+        /** {@inheritDoc} */
+        @Override
+        public AccessibleStateSet getAccessibleStateSet() {
+            final AccessibleStateSet states = super.getAccessibleStateSet();
+            states.add(AccessibleState.MULTI_LINE);
+            return states;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.accessibility.AccessibleContext#getAccessibleText()
+         */
+        /** {@inheritDoc} */
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public AccessibleText getAccessibleText() {
+            return TermPanel.this.accessibleText;
+        }
+    }
+
+    /**
+     * Scroll the view by pixels. Whole rows move the scroll model; the remainder offsets the off-screen image when
+     * painting, with the rows it uncovers drawn from rasterized strips.
+     *
+     * @param pixels
+     *            the pixels, negative to scroll back into the history
+     */
+    public void scrollByPixels(final double pixels) {
+        final int rowHeight = this.charSize.height;
+        final double min = -(double) this.scrollBuffer.getLineCount() * rowHeight;
+        final double top = Math.max(min, Math.min(0, this.viewTop + pixels));
+        if (top == this.viewTop) {
+            return;
+        }
+        this.scrollDirection = pixels < 0 ? -1 : 1;
+        this.brm.setValue((int) Math.floor(top / rowHeight));
+        this.viewTop = top;
+        if (this.img != null) {
+            this.backBuffer.lock();
+            try {
+                this.prefetchStrips(STRIP_PREFETCH_PER_FRAME);
+            } finally {
+                this.backBuffer.unlock();
+            }
+        }
+        this.repaint();
+    }
+
+    /**
+     * Rasterize the strips of rows the view shows outside of the off-screen image, then up to a limit of rows ahead in
+     * the direction of travel. The caller holds the back buffer lock.
+     *
+     * @param ahead
+     *            the maximum number of rows ahead to rasterize
+     */
+    private void prefetchStrips(final int ahead) {
+        final int rowHeight = this.charSize.height;
+        final int height = this.termSize.height;
+        final int target = (int) Math.floor(this.viewTop / rowHeight);
+        final int last = (int) Math.ceil(this.viewTop / rowHeight) + height - 1;
+        for (int row = target; row <= last; row++) {
+            if (row < this.clientScrollOrigin || row >= this.clientScrollOrigin + height) {
+                this.ensureStrip(row);
+            }
+        }
+        int left = ahead;
+        for (int k = 1; k <= STRIP_AHEAD && left > 0; k++) {
+            final int row = this.scrollDirection < 0 ? target - k : last + k;
+            if (this.ensureStrip(row)) {
+                left--;
+            }
+        }
+    }
+
+    /**
+     * Rasterize the strip of a row unless it is cached or out of range. The caller holds the back buffer lock.
+     *
+     * @param row
+     *            the row
+     * @return true, if a strip was rasterized
+     */
+    private boolean ensureStrip(final int row) {
+        if (row < -this.scrollBuffer.getLineCount() || row >= this.termSize.height
+            || this.stripCache.contains(this.historyLines + row)) {
+            return false;
+        }
+        final BufferedImage strip = new BufferedImage((int) Math.ceil(this.getPixelWidth() * this.scale),
+            (int) Math.ceil(this.charSize.height * this.scale), BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = strip.createGraphics();
+        g.scale(this.scale, this.scale);
+        if (this.gfx != null) {
+            g.setRenderingHints(this.gfx.getRenderingHints());
+        }
+        g.setColor(this.palette.get(this.styleState.getCurrent()).background);
+        g.fillRect(0, 0, this.getPixelWidth(), this.charSize.height);
+        this.stripGraphics = g;
+        try {
+            this.pumpRows(row, 1, this.stripConsumer);
+        } finally {
+            this.stripGraphics = null;
+            g.dispose();
+        }
+        this.stripCache.put(this.historyLines + row, strip);
+        return true;
+    }
+
+    /**
+     * Draw the cached strips of the rows uncovered by offsetting the off-screen image.
+     *
+     * @param g
+     *            the graphics
+     * @param offset
+     *            the offset of the view from the image in pixels
+     * @param s
+     *            the scale from pixels to the units of the graphics
+     */
+    private void drawStrips(final Graphics2D g, final double offset, final double s) {
+        final int rowHeight = this.charSize.height;
+        final int height = this.termSize.height;
+        final int lines = this.historyLines;
+        for (int k = -1; (k + 1) * rowHeight - offset > 0; k--) {
+            this.drawStrip(g, this.stripCache.get(lines + this.clientScrollOrigin + k), k * rowHeight - offset, s);
+        }
+        for (int k = height; k * rowHeight - offset < this.getPixelHeight(); k++) {
+            this.drawStrip(g, this.stripCache.get(lines + this.clientScrollOrigin + k), k * rowHeight - offset, s);
+        }
+    }
+
+    /**
+     * Draw a strip.
+     *
+     * @param g
+     *            the graphics
+     * @param strip
+     *            the strip, null to skip
+     * @param y
+     *            the y in pixels
+     * @param s
+     *            the scale from pixels to the units of the graphics
+     */
+    private void drawStrip(final Graphics2D g, final BufferedImage strip, final double y, final double s) {
+        if (strip != null) {
+            g.drawImage(strip, 0, (int) Math.round(y * s), this.termComponent);
+        }
+    }
+
+    /**
+     * Checks if smooth scrolling is enabled.
+     *
+     * @return true, if enabled
+     */
+    public boolean isSmoothScrolling() {
+        return this.smoothScrolling;
+    }
+
+    /**
+     * Enables or disables smooth scrolling of the mouse wheel. When disabled the wheel scrolls whole rows.
+     *
+     * @param enabled
+     *            true to enable
+     */
+    public void setSmoothScrolling(final boolean enabled) {
+        this.smoothScrolling = enabled;
+        if (!enabled) {
+            this.scrollByPixels(Math.round(this.viewTop / this.charSize.height) * this.charSize.height
+                - this.viewTop);
+        }
+    }
+
+    /**
+     * Gets the number of smooth scrolling strips found in the cache when needed.
+     *
+     * @return the hits
+     */
+    public long getScrollStripHits() {
+        return this.stripCache.getHits();
+    }
+
+    /**
+     * Gets the number of smooth scrolling strips missing from the cache when needed; those rows paint blank for a
+     * frame.
+     *
+     * @return the misses
+     */
+    public long getScrollStripMisses() {
+        return this.stripCache.getMisses();
+    }
+
+    /**
+     * Attach a view. A hibernating panel wakes up. Called by the view.
+     *
+     * @param view
+     *            the view
+     */
+    void addView(final TermView view) {
+        this.wakeUp();
+        if (!this.views.contains(view)) {
+            this.views.add(view);
+            this.updateStripCapacity();
+        }
+    }
+
+    /**
+     * Detach a view. Called by the view.
+     *
+     * @param view
+     *            the view
+     */
+    void removeView(final TermView view) {
+        if (this.views.remove(view)) {
+            this.updateStripCapacity();
+        }
+    }
+
+    /**
+     * Size the strip cache for smooth scrolling plus the rows of all views.
+     */
+    void updateStripCapacity() {
+        int capacity = STRIP_CAPACITY;
+        for (final TermView view : this.views) {
+            capacity += view.getRows() + 1;
+        }
+        this.stripCache.setCapacity(capacity);
+    }
+
+    /**
+     * Attach an overview strip. Called by the overview strip.
+     *
+     * @param overview
+     *            the overview strip
+     */
+    void addOverview(final OverviewStrip overview) {
+        if (!this.overviews.contains(overview)) {
+            this.overviews.add(overview);
+            this.updateSummarizing();
+        }
+    }
+
+    /**
+     * Detach an overview strip. Called by the overview strip.
+     *
+     * @param overview
+     *            the overview strip
+     */
+    void removeOverview(final OverviewStrip overview) {
+        if (this.overviews.remove(overview)) {
+            this.updateSummarizing();
+        }
+    }
+
+    /**
+     * Start summarizing lines if enabled and an overview strip is attached, stop otherwise. Starting summarizes the
+     * last {@link #SUMMARY_BACKFILL} lines of the scroll buffer, stopping drops the summaries.
+     */
+    private void updateSummarizing() {
+        this.backBuffer.lock();
+        try {
+            final boolean on = this.overviewSummaries && !this.overviews.isEmpty();
+            if (on == this.summarizing) {
+                return;
+            }
+            this.summarizing = on;
+            this.lineSummaries.clear();
+            if (on) {
+                this.backfillSummaries();
+            }
+        } finally {
+            this.backBuffer.unlock();
+        }
+    }
+
+    /**
+     * Summarize the last {@link #SUMMARY_BACKFILL} lines of the scroll buffer, in chunks of
+     * {@link #HISTORY_RESCAN} lines. The caller holds the back buffer lock.
+     */
+    private void backfillSummaries() {
+        final int oldest = this.getOldestLine();
+        for (int first = Math.max(oldest, this.historyLines - SUMMARY_BACKFILL); first < this.historyLines;) {
+            final int rows = Math.min(HISTORY_RESCAN, this.historyLines - first);
+            final int y = first - this.historyLines;
+            this.lineSummaries.begin(first, y, rows, this.termSize.width);
+            this.scrollBuffer.pumpRuns(y, rows, this.lineSummaries);
+            this.lineSummaries.end(rows, oldest);
+            first += rows;
+        }
+    }
+
+    /**
+     * Checks if lines moving to the scroll buffer are summarized for the overview strips while one is attached.
+     *
+     * @return true, if enabled
+     */
+    public boolean isOverviewSummariesEnabled() {
+        return this.overviewSummaries;
+    }
+
+    /**
+     * Enables or disables summarizing lines moving to the scroll buffer for the overview strips, enabled by default.
+     * Lines are only summarized while an overview strip is attached. Disabling drops the summaries taken so far.
+     *
+     * @param enabled
+     *            true to enable
+     */
+    public void setOverviewSummariesEnabled(final boolean enabled) {
+        this.overviewSummaries = enabled;
+        this.updateSummarizing();
+        for (final OverviewStrip overview : this.overviews) {
+            overview.repaint();
+        }
+    }
+
+    /**
+     * Sets the words that mark a line as error in the overview strips, matched case insensitively as whole words.
+     * Applies to lines moving to the scroll buffer from now on.
+     *
+     * @param words
+     *            the words
+     */
+    public void setOverviewErrorWords(final String... words) {
+        this.lineSummaries.setErrorWords(words);
+    }
+
+    /**
+     * Downsample the line summaries for an overview strip.
+     *
+     * @param buckets
+     *            the buckets
+     * @param n
+     *            the number of buckets
+     * @param fromLine
+     *            the absolute line at the top of the first bucket
+     * @param toLine
+     *            the absolute line at the bottom of the last bucket, exclusive
+     * @return false, if nothing was filled as the emulator holds the back buffer
+     */
+    boolean downsampleHistory(final int[] buckets, final int n, final int fromLine, final int toLine) {
+        if (!this.backBuffer.tryLock()) {
+            return false;
+        }
+        try {
+            this.lineSummaries.downsample(buckets, n, fromLine, toLine);
+        } finally {
+            this.backBuffer.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Gets the default foreground color.
+     *
+     * @return the default foreground
+     */
+    Color getDefaultForeground() {
+        return this.palette.get(this.styleState.getCurrent()).foreground;
+    }
+
+    /**
+     * Gets the default background color.
+     *
+     * @return the default background
+     */
+    Color getDefaultBackground() {
+        return this.palette.get(this.styleState.getCurrent()).background;
+    }
+
+    /**
+     * Gets the height of a row in pixels.
+     *
+     * @return the line height
+     */
+    int getLineHeight() {
+        return this.charSize.height;
+    }
+
+    /**
+     * Gets the number of lines moved to the scroll buffer, the absolute line of the first live row.
+     *
+     * @return the history lines
+     */
+    int getHistoryLines() {
+        return this.historyLines;
+    }
+
+    /**
+     * Gets the absolute line of the oldest line still in the scroll buffer.
+     *
+     * @return the oldest line
+     */
+    int getOldestLine() {
+        return this.historyLines - this.scrollBuffer.getLineCount();
+    }
+
+    /**
+     * Paint lines for a view: lines the off-screen image shows are blitted from it, all others from shared strips
+     * rasterized on demand.
+     *
+     * @param g
+     *            the graphics of the view
+     * @param first
+     *            the absolute line to paint at the top
+     * @param count
+     *            the number of lines
+     * @param block
+     *            true to wait for the back buffer, false to give up if the emulator holds it
+     * @return false, if nothing was painted as the emulator holds the back buffer or the panel has no image
+     */
+    boolean paintLines(final Graphics2D g, final int first, final int count, final boolean block) {
+        if (this.img == null) {
+            return false;
+        }
+        if (block) {
+            this.backBuffer.lock();
+        } else if (!this.backBuffer.tryLock()) {
+            return false;
+        }
+        final AffineTransform t = g.getTransform();
+        try {
+            final int rowHeight = this.charSize.height;
+            g.setColor(this.palette.get(this.styleState.getCurrent()).background);
+            g.fillRect(0, 0, this.getPixelWidth(), count * rowHeight);
+
+            /* img and the strips are at device resolution, blit them without any scaling */
+            g.setTransform(new AffineTransform(t.getScaleX() / this.scale, 0, 0, t.getScaleY() / this.scale,
+                t.getTranslateX(), t.getTranslateY()));
+            final int lines = this.historyLines;
+            final int imageTop = this.imageHistoryLines + this.clientScrollOrigin;
+            final int width = this.img.getWidth();
+            for (int k = 0; k < count; k++) {
+                final int line = first + k;
+                final int r = line - imageTop;
+                if (r >= 0 && r < this.termSize.height && !(this.liveDirty && line >= this.imageHistoryLines)) {
+                    final int sy = (int) Math.round(r * rowHeight * this.scale);
+                    final int dy = (int) Math.round(k * rowHeight * this.scale);
+                    final int h = (int) Math.round((r + 1) * rowHeight * this.scale) - sy;
+                    g.drawImage(this.img, 0, dy, width, dy + h, 0, sy, width, sy + h, this.termComponent);
+                } else {
+                    this.ensureStrip(line - lines);
+                    this.drawStrip(g, this.stripCache.peek(line), k * rowHeight, this.scale);
+                }
+            }
+        } finally {
+            g.setTransform(t);
+            this.backBuffer.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Drag selection.
+     *
+     * @param p
+     *            the mouse position in panel coordinates
+     * @param block
+     *            true to start a block selection
+     */
+    private void dragSelection(final Point p, final boolean block) {
+        this.lastDragPoint.setLocation(p);
+        this.setAutoScroll(p.y < 0 ? -1 : p.y >= this.getPixelHeight() ? 1 : 0);
+
+        final Point charCoords = this.panelToCharCoords(p);
+        charCoords.y = Math.max(this.clientScrollOrigin,
+            Math.min(charCoords.y, this.clientScrollOrigin + this.termSize.height - 1));
+
+        if (!this.selectionInProgress) {
+            this.clearSelection();
+            this.selectionMode = block ? SelectionMode.BLOCK : SelectionMode.STREAM;
+            this.selectionStart = new Point(charCoords);
+            this.selectionInProgress = true;
+        }
+        charCoords.x = Math.max(0, Math.min(charCoords.x + 1, this.termSize.width));
+        this.updateSelectionEnd(charCoords);
+    }
+
+    /**
+     * Update the selection end, repainting only the rows that changed.
+     *
+     * @param newEnd
+     *            the new selection end
+     */
+    private void updateSelectionEnd(final Point newEnd) {
+        final Point oldEnd = this.selectionEnd;
+        if (newEnd.equals(oldEnd)) {
+            return;
+        }
+        this.selectionEnd = newEnd;
+        if (oldEnd == null || this.selectionMode.isBlock()) {
+            /* a block changes in every row up to the start */
+            final int from = oldEnd == null ? newEnd.y : Math.min(oldEnd.y, newEnd.y);
+            final int to = oldEnd == null ? newEnd.y : Math.max(oldEnd.y, newEnd.y);
+            this.repaintRows(Math.min(this.selectionStart.y, from), Math.max(this.selectionStart.y, to));
+        } else {
+            this.repaintRows(Math.min(oldEnd.y, newEnd.y), Math.max(oldEnd.y, newEnd.y));
+        }
+    }
+
+    /**
+     * Select the word or the line at a cell and copy it to the selection clipboard.
+     *
+     * @param p
+     *            the cell
+     * @param mode
+     *            {@link SelectionMode#WORD} or {@link SelectionMode#LINE}
+     */
+    private void selectWordOrLine(final Point p, final SelectionMode mode) {
+        if (p.y < -this.scrollBuffer.getLineCount() || p.y >= this.termSize.height || p.x >= this.termSize.width) {
+            return;
+        }
+        this.clearSelection();
+
+        int left = 0;
+        int right = this.termSize.width;
+        if (mode == SelectionMode.WORD) {
+            this.selectionGrid.reset(0, p.y, this.termSize.width, 1);
+            this.backBuffer.lock();
+            try {
+                this.pumpRows(p.y, 1, this.selectionGrid);
+            } finally {
+                this.backBuffer.unlock();
+            }
+            left = p.x;
+            right = p.x + 1;
+            if (this.isWordChar(this.selectionGrid.charAt(p.x, p.y))) {
+                while (left > 0 && this.isWordChar(this.selectionGrid.charAt(left - 1, p.y))) {
+                    left--;
+                }
+                while (right < this.termSize.width && this.isWordChar(this.selectionGrid.charAt(right, p.y))) {
+                    right++;
+                }
+            }
+        }
+        this.selectionMode = mode;
+        this.selectionStart = new Point(left, p.y);
+        this.selectionEnd = new Point(right, p.y);
+        this.repaintRows(p.y, p.y);
+        this.copySelection(this.selectionStart, this.selectionEnd);
+        this.fireSelectionChanged();
+    }
+
+    /**
+     * Checks if a char is part of a word.
+     *
+     * @param c
+     *            the char
+     * @return true, if the char is part of a word
+     */
+    private boolean isWordChar(final char c) {
+        return Character.isLetterOrDigit(c) || this.wordChars.indexOf(c) >= 0;
+    }
+
+    /**
+     * Pump whole rows from the scroll buffer (negative rows) and the back buffer.
+     *
+     * @param top
+     *            the first row
+     * @param count
+     *            the row count
+     * @param consumer
+     *            the consumer
+     */
+    private void pumpRows(final int top, final int count, final StyledRunConsumer consumer) {
+        this.pumpRows(0, this.termSize.width, top, count, consumer);
+    }
+
+    /**
+     * Pump a column range of rows from the scroll buffer (negative rows) and the back buffer. The scroll buffer
+     * always pumps whole lines, the consumer has to clip.
+     *
+     * @param x
+     *            the first column
+     * @param w
+     *            the column count
+     * @param top
+     *            the first row
+     * @param count
+     *            the row count
+     * @param consumer
+     *            the consumer
+     */
+    private void pumpRows(final int x, final int w, final int top, final int count, final StyledRunConsumer consumer) {
+        final int bottom = top + count - 1;
+        if (top < 0) {
+            this.scrollBuffer.pumpRuns(top, Math.min(bottom, -1) - top + 1, consumer);
+        }
+        if (bottom >= 0) {
+            final int backTop = Math.max(top, 0);
+            this.backBuffer.pumpRuns(x, backTop, w, bottom - backTop + 1, consumer);
+        }
+    }
+
+    /**
+     * Clear the selection, repainting the rows it covered.
+     */
+    private void clearSelection() {
+        if (this.selectionOverlay.update(this.selectionStart, this.selectionEnd, this.termSize.width,
+            this.selectionMode.isBlock())) {
+            this.repaintRows(this.selectionOverlay.getTopRow(), this.selectionOverlay.getBottomRow());
+        }
+        this.selectionStart = null;
+        this.selectionEnd = null;
+        this.selectionOverlay.invalidate();
+    }
+
+    /**
+     * Repaint a band of buffer rows.
+     *
+     * @param top
+     *            the top row
+     * @param bottom
+     *            the bottom row
+     */
+    private void repaintRows(final int top, final int bottom) {
+        final int y = (int) Math.floor((double) top * this.charSize.height - this.viewTop);
+        this.repaint(0, y, this.getPixelWidth(), (bottom - top + 1) * this.charSize.height + 1);
+    }
+
+    /**
+     * Sets the auto scroll direction.
+     *
+     * @param direction
+     *            -1 to scroll up, 1 to scroll down, 0 to stop
+     */
+    private void setAutoScroll(final int direction) {
+        this.autoScrollDirection = direction;
+        if (direction == 0) {
+            this.autoScrollTimer.stop();
+        } else if (!this.autoScrollTimer.isRunning()) {
+            this.autoScrollTimer.start();
+        }
+    }
+
+    /**
+     * Auto scroll one row and extend the selection to the newly exposed row.
+     */
+    private void autoScrollStep() {
+        if (this.autoScrollDirection == 0 || !this.selectionInProgress) {
+            this.setAutoScroll(0);
+            return;
+        }
+        final int oldValue = this.brm.getValue();
+        this.brm.setValue(oldValue + this.autoScrollDirection);
+        final int value = this.brm.getValue();
+        if (value == oldValue) {
+            return;
+        }
+        final int row = this.autoScrollDirection < 0 ? value : value + this.termSize.height - 1;
+        final int col = Math.max(0, Math.min(this.lastDragPoint.x / this.charSize.width + 1, this.termSize.width));
+        this.updateSelectionEnd(new Point(col, row));
+    }
+
+    /**
+     * Sets the up clipboard. Without a display both clipboards stay null and copy and paste do nothing.
+     */
+    void setUpClipboard() {
+        try {
+            this.systemSelection = Toolkit.getDefaultToolkit().getSystemSelection();
+            this.systemClipBoard = Toolkit.getDefaultToolkit().getSystemClipboard();
+        }
+        catch (final HeadlessException e) {
+            this.log.debug("No clipboard without a display", e);
+            this.systemSelection = null;
+            this.systemClipBoard = null;
+        }
+    }
+
+    /**
+     * Copy selection.
+     *
+     * @param csSelectionStart
+     *            the cs_selection start
+     * @param csSelectionEnd
+     *            the cs_selection end
+     * @param cb
+     *            the Clipboard
+     */
+    private void copyClipboard(final Point csSelectionStart, final Point csSelectionEnd, final Clipboard cb) {
+
+        if (csSelectionStart == null || csSelectionEnd == null || cb == null) {
+            return;
+        }
+
+        final RenderEvents.Clipboard event = new RenderEvents.Clipboard();
+        event.begin();
+        final StringBuffer selection = new StringBuffer();
+        this.backBuffer.lock();
+        try {
+            if (this.selectionMode.isBlock()) {
+                this.copyBlock(csSelectionStart, csSelectionEnd, selection);
+            } else {
+                this.copyStream(csSelectionStart, csSelectionEnd, selection);
+            }
+        } finally {
+            this.backBuffer.unlock();
+        }
+
+        if (selection.length() == 0) {
+            return;
+        }
+
+        try {
+            cb.setContents(new StringSelection(selection.toString()), this);
+        }
+        catch (final IllegalStateException e) {
+            this.log.error("Could not set clipboard:", e);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.panelId = this.panelId;
+            event.panelName = this.getName();
+            event.operation = "copy";
+            event.size = selection.length();
+            event.commit();
+        }
+    }
+
+    /**
+     * Copy a block selection, pumping only the selected column range.
+     *
+     * @param csSelectionStart
+     *            the cs_selection start
+     * @param csSelectionEnd
+     *            the cs_selection end
+     * @param selection
+     *            the target
+     */
+    private void copyBlock(final Point csSelectionStart, final Point csSelectionEnd, final StringBuffer selection) {
+        final int left = SelectionOverlay.blockLeft(csSelectionStart, csSelectionEnd);
+        final int right = Math.min(SelectionOverlay.blockRight(csSelectionStart, csSelectionEnd), this.termSize.width);
+        final int top = Math.max(Math.min(csSelectionStart.y, csSelectionEnd.y), -this.scrollBuffer.getLineCount());
+        final int bottom = Math.min(Math.max(csSelectionStart.y, csSelectionEnd.y), this.termSize.height - 1);
+        if (left >= right || top > bottom) {
+            return;
+        }
+        this.selectionGrid.reset(left, top, right - left, bottom - top + 1);
+        this.pumpRows(left, right - left, top, bottom - top + 1, this.selectionGrid);
+        for (int y = top; y <= bottom; y++) {
+            if (y > top) {
+                selection.append('\n');
+            }
+            this.selectionGrid.appendRow(selection, y);
+        }
+    }
+
+    /**
+     * Copy a stream selection.
+     *
+     * @param csSelectionStart
+     *            the cs_selection start
+     * @param csSelectionEnd
+     *            the cs_selection end
+     * @param selection
+     *            the target
+     */
+    private void copyStream(final Point csSelectionStart, final Point csSelectionEnd, final StringBuffer selection) {
+        Point top;
+        Point bottom;
+
+        if (csSelectionStart.y == csSelectionEnd.y) {
+            /* same line */
+            top = csSelectionStart.x < csSelectionEnd.x ? csSelectionStart : csSelectionEnd;
+            bottom = csSelectionStart.x >= csSelectionEnd.x ? csSelectionStart : csSelectionEnd;
+        } else {
+            top = csSelectionStart.y < csSelectionEnd.y ? csSelectionStart : csSelectionEnd;
+            bottom = csSelectionStart.y > csSelectionEnd.y ? csSelectionStart : csSelectionEnd;
+        }
+
+        if (top.y < 0) {
+            final Point scrollEnd = bottom.y >= 0 ? new Point(this.termSize.width, -1) : bottom;
+            this.scrollBuffer.pumpRuns(top.y, scrollEnd.y - top.y, new SelectionRunConsumer(selection, top, scrollEnd));
+
+        }
+
+        if (bottom.y >= 0) {
+            final Point backBegin = top.y < 0 ? new Point(0, 0) : top;
+            this.backBuffer.pumpRuns(0, backBegin.y, this.termSize.width, bottom.y - backBegin.y + 1,
+                new SelectionRunConsumer(selection, backBegin, bottom));
+        }
+    }
+
+    /**
+     * Copy selection.
+     *
+     * @param csSelectionStart
+     *            the cs_selection start
+     * @param csSelectionEnd
+     *            the cs_selection end
+     */
+    private void copySelection(final Point csSelectionStart, final Point csSelectionEnd) {
+        this.copyClipboard(csSelectionStart, csSelectionEnd,
+            this.systemSelection != null ? this.systemSelection : this.systemClipBoard);
+    }
+
+    /**
+     * Copy clipboard.
+     *
+     * @param csSelectionStart
+     *            the cs_selection start
+     * @param csSelectionEnd
+     *            the cs_selection end
+     */
+    private void copyClipboard(final Point csSelectionStart, final Point csSelectionEnd) {
+        this.copyClipboard(csSelectionStart, csSelectionEnd, this.systemClipBoard);
+    }
+
+    /**
+     * Copy clipboard.
+     */
+    public void copyClipboard() {
+        this.copyClipboard(this.selectionStart, this.selectionEnd);
+    }
+
+    /**
+     * Paste selection.
+     */
+    public void pasteSelection() {
+        this.paste(this.systemSelection != null ? this.systemSelection : this.systemClipBoard);
+    }
+
+    /**
+     * Paste clipboard.
+     */
+    public void pasteClipboard() {
+        this.paste(this.systemClipBoard);
+    }
+
+    /**
+     * Paste the text of a clipboard. The text is streamed to the emulator, bracketed if the application asked for it
+     * and at the configured rate. If it is longer than the confirmation threshold, only the part up to the threshold
+     * is read before asking and the preview shows its first lines. A paste started while another one is running is
+     * ignored.
+     *
+     * @param clipboard
+     *            the clipboard
+     */
+    private void paste(final Clipboard clipboard) {
+        if (this.emulator == null || this.pasteStreamer.isBusy() || clipboard == null) {
+            return;
+        }
         try {
-            final String selection = (String) this.systemClipBoard.getData(DataFlavor.stringFlavor);
-            this.emulator.sendBytes(selection.getBytes());
+            final Transferable contents = clipboard.getContents(this);
+            if (contents == null) {
+                return;
+            }
+            final DataFlavor flavor = DataFlavor.selectBestTextFlavor(contents.getTransferDataFlavors());
+            Reader reader = flavor != null ? flavor.getReaderForText(contents)
+                : new StringReader((String) contents.getTransferData(DataFlavor.stringFlavor));
+            String head = "";
+            if (this.pasteConfirmThreshold > 0) {
+                final char[] buf = new char[this.pasteConfirmThreshold + 1];
+                int n = 0;
+                int r = 0;
+                while (n < buf.length && (r = reader.read(buf, n, buf.length - n)) >= 0) {
+                    n += r;
+                }
+                head = new String(buf, 0, n);
+                if (r < 0) {
+                    reader.close();
+                    reader = null;
+                } else if (!this.confirmPaste(head)) {
+                    reader.close();
+                    return;
+                }
+            }
+            this.pasteStreamer.start(this.emulator, head, reader, this.bracketedPaste, this.pasteRateLimit);
         }
         catch (final UnsupportedFlavorException e) {
             this.log.debug("unsupported flavor in paste", e);
@@ -457,6 +1776,205 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
         }
     }
 
+    /**
+     * Ask whether to go on with a large paste.
+     *
+     * @param head
+     *            the head of the pasted text
+     * @return true, if confirmed
+     */
+    private boolean confirmPaste(final String head) {
+        int end = 0;
+        for (int line = 0; line < this.pastePreviewLines && end >= 0 && end < head.length(); line++) {
+            end = head.indexOf('\n', end);
+            end = end < 0 ? head.length() : end + 1;
+        }
+        final JTextArea preview = new JTextArea(head.substring(0, Math.max(0, end)), this.pastePreviewLines, 60);
+        preview.setEditable(false);
+        preview.setFont(this.normalFont);
+        final String message = "The clipboard holds more than " + this.pasteConfirmThreshold
+            + " characters. Paste it? It starts with:";
+        return JOptionPane.showConfirmDialog(this, new Object[] { message, new JScrollPane(preview) }, "Paste",
+            JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE) == JOptionPane.OK_OPTION;
+    }
+
+    /**
+     * Cancel a running paste.
+     */
+    public void cancelPaste() {
+        this.pasteStreamer.cancel();
+    }
+
+    /**
+     * Checks if a paste is running.
+     *
+     * @return true, if pasting
+     */
+    public boolean isPasting() {
+        return this.pasteStreamer.isBusy();
+    }
+
+    /**
+     * Checks if bracketed paste mode is set.
+     *
+     * @return true, if set
+     */
+    public boolean isBracketedPasteMode() {
+        return this.bracketedPaste;
+    }
+
+    /**
+     * Sets the bracketed paste mode. Called by the emulator when the application sets or resets DEC private mode
+     * 2004; while it is set pastes are wrapped in {@code ESC [ 200 ~} and {@code ESC [ 201 ~}.
+     *
+     * @param enabled
+     *            true to set the mode
+     */
+    public void setBracketedPasteMode(final boolean enabled) {
+        this.bracketedPaste = enabled;
+    }
+
+    /**
+     * Gets the panel id, which identifies the panel in flight recordings together with its name.
+     *
+     * @return the panel id
+     */
+    public int getPanelId() {
+        return this.panelId;
+    }
+
+    /**
+     * Sets the keystroke trace sink. While a sink is set every key event passed to the key handler is timestamped
+     * and correlated with the next cursor move, the next rendered frame and the paint showing it; the sink receives
+     * the breakdown on the event dispatch thread. Without a sink tracing costs a volatile read per hook.
+     *
+     * @param sink
+     *            the sink, null to disable tracing
+     */
+    public void setKeystrokeTraceSink(final KeystrokeTraceSink sink) {
+        this.keystrokeTracer.setSink(sink);
+    }
+
+    /**
+     * Gets the keystroke trace sink.
+     *
+     * @return the sink, null if tracing is disabled
+     */
+    public KeystrokeTraceSink getKeystrokeTraceSink() {
+        return this.keystrokeTracer.getSink();
+    }
+
+    /**
+     * Gets the number of keystrokes traced.
+     *
+     * @return the keystrokes traced
+     */
+    public long getKeystrokesTraced() {
+        return this.keystrokeTracer.getTraced();
+    }
+
+    /**
+     * Gets the number of keystrokes that expired without echo.
+     *
+     * @return the keystrokes dropped
+     */
+    public long getKeystrokesDropped() {
+        return this.keystrokeTracer.getDropped();
+    }
+
+    /**
+     * Gets the paste rate limit.
+     *
+     * @return the rate limit in bytes per second, 0 for none
+     */
+    public int getPasteRateLimit() {
+        return this.pasteRateLimit;
+    }
+
+    /**
+     * Sets the paste rate limit, for slow serial lines or remote links.
+     *
+     * @param bytesPerSecond
+     *            the rate limit in bytes per second, 0 for none
+     */
+    public void setPasteRateLimit(final int bytesPerSecond) {
+        this.pasteRateLimit = Math.max(0, bytesPerSecond);
+    }
+
+    /**
+     * Gets the paste confirmation threshold.
+     *
+     * @return the number of characters above which a paste asks for confirmation, 0 to never ask
+     */
+    public int getPasteConfirmThreshold() {
+        return this.pasteConfirmThreshold;
+    }
+
+    /**
+     * Sets the paste confirmation threshold.
+     *
+     * @param chars
+     *            the number of characters above which a paste asks for confirmation, 0 to never ask
+     */
+    public void setPasteConfirmThreshold(final int chars) {
+        this.pasteConfirmThreshold = Math.max(0, chars);
+    }
+
+    /**
+     * Gets the number of lines shown in the confirmation of a large paste.
+     *
+     * @return the preview lines
+     */
+    public int getPastePreviewLines() {
+        return this.pastePreviewLines;
+    }
+
+    /**
+     * Sets the number of lines shown in the confirmation of a large paste.
+     *
+     * @param lines
+     *            the preview lines
+     */
+    public void setPastePreviewLines(final int lines) {
+        this.pastePreviewLines = Math.max(1, lines);
+    }
+
+    /**
+     * Gets the number of pastes finished.
+     *
+     * @return the paste count
+     */
+    public long getPasteCount() {
+        return this.pasteStreamer.getPastes();
+    }
+
+    /**
+     * Gets the bytes sent by all pastes.
+     *
+     * @return the paste bytes
+     */
+    public long getPasteBytes() {
+        return this.pasteStreamer.getTotalBytes();
+    }
+
+    /**
+     * Gets the bytes sent by the last finished paste.
+     *
+     * @return the bytes
+     */
+    public long getLastPasteBytes() {
+        return this.pasteStreamer.getLastBytes();
+    }
+
+    /**
+     * Gets the duration of the last finished paste, from the first to the last chunk.
+     *
+     * @return the nanos
+     */
+    public long getLastPasteNanos() {
+        return this.pasteStreamer.getLastNanos();
+    }
+
     /*
      * Do not care
      */
@@ -475,19 +1993,228 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     }
 
     /**
-     * Sets the up images.
+     * Sets the up images at the current scale, which only {@link #checkDeviceScale()} changes.
      */
     private void setUpImages() {
+        if (this.hibernating) {
+            return;
+        }
+        final RenderEvents.ImageSetup event = new RenderEvents.ImageSetup();
+        event.begin();
         final BufferedImage oldImage = this.img;
-        this.img = new BufferedImage(this.getPixelWidth(), this.getPixelHeight(), BufferedImage.TYPE_INT_RGB);
+        final double oldScale = oldImage == null ? this.scale : this.imageScale;
+        this.imageScale = this.scale;
+        this.img = new BufferedImage((int) Math.ceil(this.getPixelWidth() * this.scale),
+            (int) Math.ceil(this.getPixelHeight() * this.scale), BufferedImage.TYPE_INT_RGB);
 
+        if (this.gfx != null) {
+            this.gfx.dispose();
+        }
         this.gfx = this.img.createGraphics();
+        this.gfx.scale(this.scale, this.scale);
         this.gfx.fillRect(0, 0, this.getPixelWidth(), this.getPixelHeight());
+        this.setAntiAliasing(this.antialiasing);
 
         if (oldImage != null) {
-            this.gfx.drawImage(oldImage, 0, this.img.getHeight() - oldImage.getHeight(), oldImage.getWidth(),
-                oldImage.getHeight(), this.termComponent);
+            final int oldWidth = (int) Math.round(oldImage.getWidth() / oldScale);
+            final int oldHeight = (int) Math.round(oldImage.getHeight() / oldScale);
+            this.gfx.drawImage(oldImage, 0, this.getPixelHeight() - oldHeight, oldWidth, oldHeight,
+                this.termComponent);
+        }
+        this.shadow.invalidate();
+        this.stripCache.clear();
+        this.markFrameAllDirty();
+        event.end();
+        if (event.shouldCommit()) {
+            event.panelId = this.panelId;
+            event.panelName = this.getName();
+            event.width = this.img.getWidth();
+            event.height = this.img.getHeight();
+            event.scale = this.scale;
+            event.commit();
+        }
+        this.frameGeneration++;
+        for (final TermView view : this.views) {
+            view.panelChanged();
+        }
+    }
+
+    /**
+     * Gets the scale of the device the panel is shown on.
+     *
+     * @return the device scale, 1 if not shown
+     */
+    private double deviceScale() {
+        final GraphicsConfiguration gc = this.getGraphicsConfiguration();
+        if (gc == null) {
+            return this.scale;
+        }
+        final double s = gc.getDefaultTransform().getScaleX();
+        return s > 0 ? s : 1;
+    }
+
+    /**
+     * Rebuild the font metrics and the off-screen image if the scale of the graphics configuration changed, e.g.
+     * after the window moved to another monitor. While hibernating only the metrics are rebuilt, the image follows
+     * on wake up.
+     */
+    private void checkDeviceScale() {
+        final double newScale = this.deviceScale();
+        if (newScale == this.scale) {
+            return;
+        }
+        this.backBuffer.lock();
+        try {
+            this.scale = newScale;
+            this.establishFontMetrics();
+            if (this.img != null) {
+                this.setUpImages();
+                this.redrawViewport();
+            }
+            this.setPreferredSize(new Dimension(this.getPixelWidth(), this.getPixelHeight()));
+        } finally {
+            this.backBuffer.unlock();
+        }
+        this.revalidate();
+        this.repaint();
+    }
+
+    /**
+     * Hibernate: stop the redraw timer and release the off-screen image, the thumbnail, the shadow and the glyph and
+     * style caches. The back buffer and the scroll buffer keep collecting output and damage. Panels with frame sinks
+     * or views keep rendering for them and never hibernate.
+     */
+    private void hibernate() {
+        if (this.hibernating || this.isShowing() || !this.hibernationEnabled || !this.frameSinks.isEmpty()
+            || !this.views.isEmpty()) {
+            return;
+        }
+        this.redrawTimer.stop();
+        this.backBuffer.lock();
+        try {
+            this.hibernating = true;
+            this.hibernatedHistoryLines = this.historyLines;
+            if (this.gfx != null) {
+                this.gfx.dispose();
+                this.gfx = null;
+            }
+            if (this.img != null) {
+                this.img.flush();
+                this.img = null;
+            }
+            this.snapshot.release();
+            this.thumbnail.release();
+            this.stripCache.clear();
+            this.shadow.resize(0, 0);
+            this.palette.clear();
+            this.textRenderer.reset(this.charSize.width, this.charSize.height, this.descent);
+        } finally {
+            this.backBuffer.unlock();
+        }
+        this.firePropertyChange(HIBERNATING_PROPERTY, false, true);
+    }
+
+    /**
+     * Leave hibernation: rebuild the off-screen image and redraw it from the back buffer and the scroll buffer at
+     * once, or on the next redraw tick if the emulator holds the back buffer. Pending scrolls and damage still reach
+     * the frame sinks and the link detection.
+     */
+    private void wakeUp() {
+        this.hibernateTimer.stop();
+        if (!this.hibernating) {
+            return;
+        }
+        this.backBuffer.lock();
+        try {
+            this.hibernating = false;
+            this.setUpImages();
+            this.shadow.resize(this.termSize.width, this.termSize.height);
+            this.fullRedrawPending = true;
+            /* the output while hibernating says nothing about the rate from now on */
+            this.floodGovernor.reset();
+            this.rescanHistory(this.hibernatedHistoryLines);
+        } finally {
+            this.backBuffer.unlock();
+        }
+        this.redrawTimer.start();
+        this.redrawFromDamage();
+        this.firePropertyChange(HIBERNATING_PROPERTY, true, false);
+    }
+
+    /**
+     * Queue the lines moved to the scroll buffer since an absolute line for link detection, at most the last
+     * {@link #HISTORY_RESCAN} of them. The caller holds the back buffer lock.
+     *
+     * @param fromLine
+     *            the absolute line
+     */
+    private void rescanHistory(final int fromLine) {
+        if (!this.linkDetection) {
+            return;
         }
+        final int first = Math.max(Math.max(fromLine, this.historyLines - HISTORY_RESCAN), this.getOldestLine());
+        final int rows = this.historyLines - first;
+        if (rows <= 0) {
+            return;
+        }
+        final int y = first - this.historyLines;
+        this.historyGrid.reset(0, y, this.termSize.width, rows);
+        this.scrollBuffer.pumpRuns(y, rows, this.historyGrid);
+        for (int i = 0; i < rows; i++) {
+            this.linkDetector.submitHistory(first + i, this.historyGrid.getCells(), this.historyGrid.getOffset(y + i),
+                this.historyGrid.getWidth());
+        }
+    }
+
+    /**
+     * Checks if the panel is hibernating. Changes are announced as the bound property {@link #HIBERNATING_PROPERTY}.
+     *
+     * @return true, if hibernating
+     */
+    public boolean isHibernating() {
+        return this.hibernating;
+    }
+
+    /**
+     * Checks if hibernation is enabled.
+     *
+     * @return true, if enabled
+     */
+    public boolean isHibernationEnabled() {
+        return this.hibernationEnabled;
+    }
+
+    /**
+     * Enables or disables hibernating the panel while it is not showing. Enabled by default; disabling wakes a
+     * hibernating panel.
+     *
+     * @param enabled
+     *            true to enable
+     */
+    public void setHibernationEnabled(final boolean enabled) {
+        this.hibernationEnabled = enabled;
+        if (!enabled) {
+            this.wakeUp();
+        } else if (!this.isShowing()) {
+            this.hibernateTimer.restart();
+        }
+    }
+
+    /**
+     * Redraw all visible rows from the scroll buffer and the back buffer. The caller holds the back buffer lock.
+     */
+    void redrawViewport() {
+        if (this.gfx == null) {
+            return;
+        }
+        this.imageHistoryLines = this.historyLines;
+        this.liveDirty = false;
+        this.gfx.setColor(this.palette.get(this.styleState.getCurrent()).background);
+        this.gfx.fillRect(0, 0, this.getPixelWidth(), this.getPixelHeight());
+        this.shadow.invalidate();
+        this.pumpRows(this.clientScrollOrigin, this.termSize.height, this);
+        this.markFrameAllDirty();
+        this.frameGeneration++;
     }
 
     /**
@@ -537,10 +2264,18 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     @Override
     public Dimension doResize(final Dimension newSize, final RequestOrigin origin) {
         //if (!newSize.equals(this.termSize)) {
+            final RenderEvents.Resize event = new RenderEvents.Resize();
+            event.begin();
+            final Dimension oldSize = this.termSize;
             this.backBuffer.lock();
             try {
                 this.backBuffer.doResize(newSize, origin);
                 this.termSize = (Dimension) newSize.clone();
+                this.frameSinksNeedKeyframe = true;
+                this.textCache.resize(this.termSize.width, this.termSize.height);
+                this.textCacheRefill = true;
+                this.shadow.resize(this.termSize.width, this.termSize.height);
+                this.linkDetector.clear();
                 // resize images..
                 this.setUpImages();
 
@@ -556,6 +2291,18 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
             } finally {
                 this.backBuffer.unlock();
             }
+            event.end();
+            if (event.shouldCommit()) {
+                event.panelId = this.panelId;
+                event.panelName = this.getName();
+                if (oldSize != null) {
+                    event.oldColumns = oldSize.width;
+                    event.oldRows = oldSize.height;
+                }
+                event.columns = newSize.width;
+                event.rows = newSize.height;
+                event.commit();
+            }
         //}
         return new Dimension(this.getPixelWidth(), this.getPixelHeight());
     }
@@ -574,18 +2321,43 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
      * Establish font metrics.
      */
     private void establishFontMetrics() {
-        final BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
-        final Graphics2D graphics = image.createGraphics();
-        graphics.setFont(this.normalFont);
-
-        final FontMetrics fo = graphics.getFontMetrics();
-        this.descent = fo.getDescent();
-        this.charSize.width = fo.charWidth('@');
-        this.charSize.height = fo.getHeight() + this.lineSpace * 2;
-        this.descent += this.lineSpace;
+        this.applyFontSetup(FontSetup.measure(this.normalFont, this.boldFont, this.scale, this.lineSpace), true);
+    }
 
-        image.flush();
-        graphics.dispose();
+    /**
+     * Apply fonts and metrics.
+     *
+     * @param setup
+     *            the font setup
+     * @param resetRenderer
+     *            true to reset the text renderer, false if it was prepared for the setup
+     */
+    private void applyFontSetup(final FontSetup setup, final boolean resetRenderer) {
+        final RenderEvents.FontChange event = new RenderEvents.FontChange();
+        event.begin();
+        this.normalFont = setup.normalFont;
+        this.boldFont = setup.boldFont;
+        this.charSize.width = setup.charWidth;
+        this.charSize.height = setup.charHeight;
+        this.descent = setup.descent;
+
+        this.palette.setFonts(this.normalFont, this.boldFont);
+        this.stripCache.clear();
+        this.viewTop = (double) this.brm.getValue() * this.charSize.height;
+        if (resetRenderer) {
+            this.textRenderer.reset(this.charSize.width, this.charSize.height, this.descent);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.panelId = this.panelId;
+            event.panelName = this.getName();
+            event.font = this.normalFont.getFontName();
+            event.size = this.normalFont.getSize2D();
+            event.cellWidth = this.charSize.width;
+            event.cellHeight = this.charSize.height;
+            event.scale = setup.scale;
+            event.commit();
+        }
     }
 
     /*
@@ -598,12 +2370,40 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     public void paintComponent(final Graphics g) {
         final Graphics2D g2d = (Graphics2D) g;
         super.paintComponent(g);
-        if (this.img != null) {
-            g2d.drawImage(this.img, 0, 0, this.termComponent);
+        if (this.img != null && this.zoomPreview != 1) {
+            /* interim frame while a zoom is prepared */
+            g2d.drawImage(this.img, 0, 0, (int) (this.getPixelWidth() * this.zoomPreview),
+                (int) (this.getPixelHeight() * this.zoomPreview), this.termComponent);
+        } else if (this.img != null) {
+            /* only the device counts, a host may paint the panel scaled, e.g. into a thumbnail */
+            this.checkDeviceScale();
+            final AffineTransform t = g2d.getTransform();
+            /* offset of a smooth scroll the image has not caught up with */
+            final double offset = this.viewTop - (double) this.clientScrollOrigin * this.charSize.height;
+            if (this.scale == 1 && t.getScaleX() == 1) {
+                g2d.drawImage(this.img, 0, (int) Math.round(-offset), this.termComponent);
+                if (offset != 0) {
+                    this.drawStrips(g2d, offset, 1);
+                }
+            } else {
+                /* img is at device resolution, blit it without any scaling */
+                g2d.setTransform(new AffineTransform(t.getScaleX() / this.scale, 0, 0, t.getScaleY() / this.scale,
+                    t.getTranslateX(), t.getTranslateY()));
+                g2d.drawImage(this.img, 0, (int) Math.round(-offset * this.scale), this.termComponent);
+                if (offset != 0) {
+                    this.drawStrips(g2d, offset, this.scale);
+                }
+                g2d.setTransform(t);
+            }
+            g2d.translate(0, -offset);
             if (this.shouldDrawCursor) {
                 this.drawCursor(g2d);
             }
             this.drawSelection(g2d);
+            g2d.setTransform(t);
+            if (this.keystrokeTracer.isEnabled()) {
+                this.keystrokeTracer.painted(System.nanoTime());
+            }
         }
     }
 
@@ -616,6 +2416,7 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     @Override
     public void processKeyEvent(final KeyEvent e) {
         final int id = e.getID();
+        final boolean tracing = this.keystrokeTracer.isEnabled();
         if (id == KeyEvent.KEY_PRESSED) {
             final int mod = e.getModifiers();
 
@@ -641,13 +2442,29 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
             } else if (((mod & Event.CTRL_MASK) > 0) && ((mod & Event.SHIFT_MASK) == 0) && (c == '-')) {
 		this.decreaseFontSize(1.0f);
             } else if (this.keyHandler != null) {
+                if (tracing) {
+                    this.keystrokeTracer.keyPressed(e.getKeyCode(), e.getWhen(), System.nanoTime());
+                }
                 this.keyHandler.keyPressed(e);
+                if (tracing) {
+                    this.keystrokeTracer.keySent(System.nanoTime());
+                }
+                if (!isModifierKey(e.getKeyCode())) {
+                    this.brm.setValue(0);
+                }
             }
             // }else if (id == KeyEvent.KEY_RELEASED) {
             /* keyReleased(e); */
         } else if (id == KeyEvent.KEY_TYPED) {
             if (this.keyHandler != null) {
                 this.keyHandler.keyTyped(e);
+                if (tracing) {
+                    this.keystrokeTracer.keySent(System.nanoTime());
+                }
+                if (!e.isControlDown() || !e.isShiftDown()) {
+                    // ctrl-shift is reserved for the panel's own shortcuts such as copy
+                    this.brm.setValue(0);
+                }
             }
         }
         e.consume();
@@ -703,9 +2520,9 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     public void drawCursor(final Graphics2D g) {
         final int y = this.cursor.y - 1 - this.clientScrollOrigin;
         if (y >= 0 && y < this.termSize.height) {
-            final Style current = this.styleState.getCurrent();
-            g.setColor(current.getForeground());
-            g.setXORMode(current.getBackground());
+            final StylePalette.Entry current = this.palette.get(this.styleState.getCurrent());
+            g.setColor(current.foreground);
+            g.setXORMode(current.background);
             g.fillRect(this.cursor.x * this.charSize.width, y * this.charSize.height, this.charSize.width,
                 this.charSize.height);
         }
@@ -718,45 +2535,14 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
      *            the g
      */
     public void drawSelection(final Graphics2D g) {
-        /* which is the top one */
-        Point top;
-        Point bottom;
-        final Style current = this.styleState.getCurrent();
-        g.setColor(current.getForeground());
-        g.setXORMode(current.getBackground());
-        if (this.selectionStart == null || this.selectionEnd == null) {
+        if (!this.selectionOverlay.update(this.selectionStart, this.selectionEnd, this.termSize.width,
+            this.selectionMode.isBlock())) {
             return;
         }
-
-        if (this.selectionStart.y == this.selectionEnd.y) {
-            /* same line */
-            if (this.selectionStart.x == this.selectionEnd.x) {
-                return;
-            }
-            top = this.selectionStart.x < this.selectionEnd.x ? this.selectionStart : this.selectionEnd;
-            bottom = this.selectionStart.x >= this.selectionEnd.x ? this.selectionStart : this.selectionEnd;
-
-            g.fillRect(top.x * this.charSize.width, (top.y - this.clientScrollOrigin) * this.charSize.height,
-                (bottom.x - top.x) * this.charSize.width, this.charSize.height);
-
-        } else {
-            top = this.selectionStart.y < this.selectionEnd.y ? this.selectionStart : this.selectionEnd;
-            bottom = this.selectionStart.y > this.selectionEnd.y ? this.selectionStart : this.selectionEnd;
-            /* to end of first line */
-            g.fillRect(top.x * this.charSize.width, (top.y - this.clientScrollOrigin) * this.charSize.height,
-                (this.termSize.width - top.x) * this.charSize.width, this.charSize.height);
-
-            if (bottom.y - top.y > 1) {
-                /* intermediate lines */
-                g.fillRect(0, (top.y + 1 - this.clientScrollOrigin) * this.charSize.height,
-                    this.termSize.width * this.charSize.width, (bottom.y - top.y - 1) * this.charSize.height);
-            }
-
-            /* from beginning of last line */
-
-            g.fillRect(0, (bottom.y - this.clientScrollOrigin) * this.charSize.height, bottom.x * this.charSize.width,
-                this.charSize.height);
-        }
+        final StylePalette.Entry current = this.palette.get(this.styleState.getCurrent());
+        g.setColor(current.foreground);
+        g.setXORMode(current.background);
+        this.selectionOverlay.paint(g, this.charSize.width, this.charSize.height, this.clientScrollOrigin);
     }
 
     /*
@@ -769,64 +2555,229 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     @Override
     public void consumeRun(final int x, final int y, final Style style, final char[] buf, final int start,
         final int len) {
-        this.gfx.setColor(style.getBackgroundForRun());
-        this.gfx.fillRect(x * this.charSize.width, (y - this.clientScrollOrigin) * this.charSize.height,
-            len * this.charSize.width, this.charSize.height);
-
-        this.gfx.setFont(style.hasOption(Style.Option.BOLD) ? this.boldFont : this.normalFont);
-        this.gfx.setColor(style.getForegroundForRun());
+        final StylePalette.Entry entry = this.palette.get(style);
+        final int top = (y - this.clientScrollOrigin) * this.charSize.height;
+        this.shadow.record(x, y - this.clientScrollOrigin, entry.id, buf, start, len);
+        this.markFrameDirty(top, top + this.charSize.height - 1);
+        this.paintRun(this.gfx, top, x, y, entry, buf, start, len);
+    }
 
-        final int baseLine = (y + 1 - this.clientScrollOrigin) * this.charSize.height - this.descent;
-        this.gfx.drawChars(buf, start, len, x * this.charSize.width, baseLine);
-        if (style.hasOption(Style.Option.UNDERSCORE)) {
-            this.gfx.drawLine(x * this.charSize.width, baseLine + 1, (x + len) * this.charSize.width, baseLine + 1);
+    /**
+     * Paint a run.
+     *
+     * @param g
+     *            the graphics
+     * @param top
+     *            the top of the row in pixels
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param entry
+     *            the palette entry of the style
+     * @param buf
+     *            the buf
+     * @param start
+     *            the start
+     * @param len
+     *            the len
+     */
+    private void paintRun(final Graphics2D g, final int top, final int x, final int y,
+        final StylePalette.Entry entry, final char[] buf, final int start, final int len) {
+        g.setColor(entry.backgroundForRun);
+        g.fillRect(x * this.charSize.width, top, len * this.charSize.width, this.charSize.height);
+
+        g.setFont(entry.font);
+        g.setColor(entry.foregroundForRun);
+
+        final int baseLine = top + this.charSize.height - this.descent;
+        this.textRenderer.drawRun(g, entry.font, entry.bold, buf, start, len, x * this.charSize.width, baseLine);
+        if (entry.underline) {
+            g.drawLine(x * this.charSize.width, baseLine + 1, (x + len) * this.charSize.width, baseLine + 1);
+        } else if (this.linkDetection) {
+            for (final LinkMatch link : this.linkDetector.getMatches(y, this.historyLines)) {
+                final int from = Math.max(x, link.getStartColumn());
+                final int to = Math.min(x + len, link.getEndColumn());
+                if (from < to) {
+                    g.drawLine(from * this.charSize.width, baseLine + 1, to * this.charSize.width - 1, baseLine + 1);
+                }
+            }
         }
     }
 
     /**
-     * Client scroll origin changed.
+     * Draw the cells of a damaged run that differ from what was last drawn. Each changed span grows to whole glyphs:
+     * padding cells and combining marks pull in the cell they belong to.
      *
-     * @param oldOrigin
-     *            the old origin
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param style
+     *            the style
+     * @param buf
+     *            the buf
+     * @param start
+     *            the start
+     * @param len
+     *            the len
      */
-    private void clientScrollOriginChanged(final int oldOrigin) {
-        final int dy = this.clientScrollOrigin - oldOrigin;
-
-        final int dyPix = dy * this.charSize.height;
-
-        this.gfx.copyArea(0, Math.max(0, dyPix), this.getPixelWidth(), this.getPixelHeight() - Math.abs(dyPix), 0,
-            -dyPix);
+    private void drawChangedCells(final int x, final int y, final Style style, final char[] buf, final int start,
+        final int len) {
+        if (!this.damageShadow) {
+            this.consumeRun(x, y, style, buf, start, len);
+            return;
+        }
+        final int row = y - this.clientScrollOrigin;
+        final int id = this.palette.get(style).id;
+        int drawn = 0;
+        int i = this.shadow.skipSame(x, row, id, buf, start, len, 0);
+        while (i < len) {
+            int from = i;
+            int to = this.shadow.skipChanged(x, row, id, buf, start, len, i);
+            while (from > 0 && isAttached(buf[start + from])) {
+                from--;
+            }
+            while (to < len && isAttached(buf[start + to])) {
+                to++;
+            }
+            this.consumeRun(x + from, y, style, buf, start + from, to - from);
+            drawn += to - from;
+            i = to < len ? this.shadow.skipSame(x, row, id, buf, start, len, to) : len;
+        }
+        this.shadow.count(len, drawn);
+    }
 
-        if (dy < 0) {
-            // Scrolling up; Copied down
-            // New area at the top to be filled in - can only be from scroll
-            // buffer
-            //
+    /**
+     * Checks if a cell belongs to the glyph of the cell before it.
+     *
+     * @param c
+     *            the character of the cell
+     * @return true, if attached
+     */
+    private static boolean isAttached(final char c) {
+        return c == 0 || Character.isLowSurrogate(c) || c >= 0x300 && CellTextRenderer.isCombining(c);
+    }
 
-            this.scrollBuffer.pumpRuns(this.clientScrollOrigin, -dy, this);
-        } else {
-            // Scrolling down; Copied up
-            // New area at the bottom to be filled - can be from both
+    /**
+     * Queue damaged rows for link detection and redraw the visible rows whose links changed. The caller holds the
+     * back buffer lock.
+     *
+     * @return true, if rows were redrawn
+     */
+    private boolean updateLinks() {
+        this.linkDetector.submitDirtyRows();
+        final List<Integer> rows = this.linkDetector.applyResults(this.historyLines);
+        boolean redrawn = false;
+        for (final Integer row : rows) {
+            final int y = row.intValue();
+            if (y >= this.clientScrollOrigin && y < this.clientScrollOrigin + this.termSize.height
+                && y >= -this.scrollBuffer.getLineCount()) {
+                this.shadow.invalidateRow(y - this.clientScrollOrigin);
+                this.pumpRows(y, 1, this);
+                redrawn = true;
+            }
+        }
+        return redrawn;
+    }
 
-            final int oldEnd = oldOrigin + this.termSize.height;
+    /**
+     * Gets the link at a point.
+     *
+     * @param p
+     *            the point in panel coordinates
+     * @return the link, null if none or link detection is disabled
+     */
+    public LinkMatch getLinkAt(final Point p) {
+        if (!this.linkDetection) {
+            return null;
+        }
+        final Point cell = this.panelToCharCoords(p);
+        return this.linkDetector.findAt(cell.x, cell.y, this.historyLines);
+    }
 
-            // Either its the whole amount above the back buffer + some more
-            // Or its the whole amount we moved
-            // Or we are already out of the scroll buffer
-            final int portionInScroll = oldEnd < 0 ? Math.min(-oldEnd, dy) : 0;
+    /**
+     * Activate the link at a point.
+     *
+     * @param p
+     *            the point in panel coordinates
+     * @return true, if there was a link
+     */
+    private boolean activateLink(final Point p) {
+        final LinkMatch link = this.getLinkAt(p);
+        if (link == null) {
+            return false;
+        }
+        final int row = this.panelToCharCoords(p).y;
+        for (final LinkListener listener : this.linkListeners) {
+            listener.linkActivated(link, row);
+        }
+        return true;
+    }
 
-            final int portionInBackBuffer = dy - portionInScroll;
+    /**
+     * Shift the image content by a number of rows and fill the exposed rows.
+     *
+     * @param dy
+     *            the rows, negative moves the content down
+     */
+    private void shiftImage(final int dy) {
+        final int dyPix = dy * this.charSize.height;
 
-            if (portionInScroll > 0) {
-                this.scrollBuffer.pumpRuns(oldEnd, portionInScroll, this);
+        this.gfx.copyArea(0, Math.max(0, dyPix), this.getPixelWidth(), this.getPixelHeight() - Math.abs(dyPix), 0,
+            -dyPix);
+        this.shadow.scroll(Math.max(0, dy), this.termSize.height - Math.abs(dy), -dy);
+
+        // Scrolling up the new rows are at the top, scrolling down at the bottom; take them from the
+        // smooth scrolling strips if rasterized already, else from the scroll buffer or the back buffer
+        final int rows = Math.min(Math.abs(dy), this.termSize.height);
+        final int first = dy < 0 ? this.clientScrollOrigin : this.clientScrollOrigin + this.termSize.height - rows;
+        for (int row = first; row < first + rows; row++) {
+            final BufferedImage strip = this.stripCache.get(this.historyLines + row);
+            if (strip != null) {
+                final int top = (row - this.clientScrollOrigin) * this.charSize.height;
+                this.gfx.drawImage(strip, 0, top, this.getPixelWidth(), this.charSize.height, this.termComponent);
+                this.shadow.invalidateRow(row - this.clientScrollOrigin);
+            } else {
+                this.redrawRow(row);
             }
+        }
 
-            if (portionInBackBuffer > 0) {
-                this.backBuffer.pumpRuns(0, oldEnd + portionInScroll, this.termSize.width, portionInBackBuffer, this);
-            }
+    }
 
-        }
+    /**
+     * Redraw a visible row from the scroll buffer or the back buffer. The caller holds the back buffer lock.
+     *
+     * @param row
+     *            the row
+     */
+    private void redrawRow(final int row) {
+        final int top = (row - this.clientScrollOrigin) * this.charSize.height;
+        this.gfx.setColor(this.palette.get(this.styleState.getCurrent()).background);
+        this.gfx.fillRect(0, top, this.getPixelWidth(), this.charSize.height);
+        this.shadow.invalidateRow(row - this.clientScrollOrigin);
+        this.pumpRows(row, 1, this);
+    }
 
+    /**
+     * Redraw the visible rows that may differ from the image while scrolled back: lines that moved into the history
+     * since the image was last brought up to date, and the visible live rows if they changed. The caller holds the
+     * back buffer lock.
+     *
+     * @param lines
+     *            the current number of history lines
+     * @param live
+     *            the live rows changed
+     * @return true, if rows were redrawn
+     */
+    private boolean redrawChangedRows(final int lines, final boolean live) {
+        final int movedFrom = this.imageHistoryLines - lines;
+        final int first = Math.max(this.clientScrollOrigin, live ? movedFrom : Math.min(movedFrom, 0));
+        final int last = Math.min(this.clientScrollOrigin + this.termSize.height, live ? this.termSize.height : 0);
+        for (int row = first; row < last; row++) {
+            this.redrawRow(row);
+        }
+        return first < last;
     }
 
     /** The no damage. */
@@ -843,39 +2794,188 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
      */
     public void redrawFromDamage() {
 
-        final int newOrigin = this.newClientScrollOrigin;
+        if (this.hibernating || !this.floodGovernor.shouldRender()) {
+            return;
+        }
         if (!this.backBuffer.tryLock()) {
-            if (this.framesSkipped >= 5) {
+            final RenderEvents.LockContention contention = new RenderEvents.LockContention();
+            contention.begin();
+            final boolean block = this.framesSkipped >= 5;
+            if (block) {
                 this.backBuffer.lock();
-            } else {
+            }
+            contention.end();
+            if (contention.shouldCommit()) {
+                contention.panelId = this.panelId;
+                contention.panelName = this.getName();
+                contention.framesSkipped = this.framesSkipped;
+                contention.blocked = block;
+                contention.commit();
+            }
+            if (!block) {
                 this.framesSkipped++;
                 return;
             }
         }
+        final RenderEvents.Frame frameEvent = new RenderEvents.Frame();
+        frameEvent.begin();
         try {
+            this.updateScrollModel();
+            final int newOrigin = this.newClientScrollOrigin;
+            final int lines = this.historyLines;
+            final int previousLines = this.imageHistoryLines;
             this.framesSkipped = 0;
+            this.frameCells = 0;
+            if (frameEvent.isEnabled()) {
+                frameEvent.scrolledLines = this.pendingScrolls.getLines();
+            }
+            if (this.scrollCalls > 0) {
+                final RenderEvents.ScrollBurst burst = new RenderEvents.ScrollBurst();
+                if (burst.shouldCommit()) {
+                    burst.panelId = this.panelId;
+                    burst.panelName = this.getName();
+                    burst.calls = this.scrollCalls;
+                    burst.lines = this.scrollLines;
+                    burst.historyLines = this.historyLines;
+                    burst.burstNanos = System.nanoTime() - this.scrollBurstStart;
+                    burst.commit();
+                }
+                this.scrollCalls = 0;
+                this.scrollLines = 0;
+            }
+            this.floodGovernor.sample(this.termSize.height, System.nanoTime());
 
-            final boolean serverScroll =
-                this.pendingScrolls.enact(this.gfx, this.getPixelWidth(), this.charSize.height);
+            boolean keyframe = this.frameSinksNeedKeyframe;
+            for (final FrameSink sink : this.frameSinks) {
+                keyframe |= sink.needsKeyframe();
+            }
+            /* frames without any change are not sent */
+            final boolean sinks = !this.frameSinks.isEmpty() && (keyframe || !this.pendingScrolls.isEmpty()
+                || this.backBuffer.hasDamage() || this.cursorChanged);
+            if (sinks) {
+                for (final FrameSink sink : this.frameSinks) {
+                    sink.beginFrame(this.termSize.width, this.termSize.height, keyframe);
+                }
+                if (keyframe) {
+                    this.pumpKeyframe();
+                } else {
+                    this.pendingScrolls.replay(this.frameSinks);
+                }
+            }
+            this.damageToText = this.linkDetection || this.accessibleText != null;
+            final boolean refilled = this.damageToText && this.textCacheRefill;
+            if (refilled) {
+                this.textCacheRefill = false;
+                this.backBuffer.pumpRuns(0, 0, this.termSize.width, this.termSize.height, this.textCache);
+            } else if (this.damageToText) {
+                this.pendingScrolls.replay(this.textCache);
+            }
 
-            final boolean clientScroll = this.clientScrollOrigin != newOrigin;
-            if (clientScroll) {
-                final int oldOrigin = this.clientScrollOrigin;
-                this.clientScrollOrigin = newOrigin;
-                this.clientScrollOriginChanged(oldOrigin);
+            final boolean collapse = this.fullRedrawPending
+                || this.floodGovernor.shouldCollapse(this.pendingScrolls.getLines(), this.termSize.height);
+            /* scrolled back the image shows history, leave the live rows off-screen alone */
+            final boolean viewportOnly = !collapse && (this.clientScrollOrigin < 0 || newOrigin < 0);
+            final boolean serverScroll;
+            if (collapse || viewportOnly) {
+                serverScroll = this.pendingScrolls.discard();
+            } else {
+                this.pendingScrolls.replay(this.shadow);
+                serverScroll = this.pendingScrolls.enact(this.gfx, this.getPixelWidth(), this.charSize.height);
             }
 
             final boolean hasDamage = this.backBuffer.hasDamage();
+            if (serverScroll || hasDamage) {
+                this.stripCache.dropFrom(lines);
+            }
+
+            final int oldOrigin = this.clientScrollOrigin;
+            /* rows the image content moves by; scrolled back that includes the lines pushed into the history */
+            final int shift = viewportOnly ? lines + newOrigin - this.imageHistoryLines - oldOrigin
+                : newOrigin - oldOrigin;
+            final boolean clientScroll = shift != 0 || oldOrigin != newOrigin;
+            this.clientScrollOrigin = newOrigin;
+            if (shift != 0 && !collapse) {
+                this.shiftImage(shift);
+            }
+
             if (hasDamage) {
                 this.noDamage = 0;
 
-                this.backBuffer.pumpRunsFromDamage(this);
+                this.damageToSinks = sinks && !keyframe;
+                this.damageToImage = !collapse && !viewportOnly;
+                if (this.damageToSinks || this.damageToImage || this.damageToText) {
+                    this.backBuffer.pumpRunsFromDamage(this.damageConsumer);
+                }
+                this.damageToImage = true;
                 this.backBuffer.resetDamage();
             } else {
                 this.noDamage++;
             }
 
-            if (serverScroll || clientScroll || hasDamage || this.cursorChanged) {
+            boolean viewportRedrawn = false;
+            if (viewportOnly) {
+                final boolean dirty = this.liveDirty || serverScroll || hasDamage;
+                viewportRedrawn = this.redrawChangedRows(lines, dirty);
+                this.liveDirty = dirty && newOrigin < 0;
+            } else {
+                this.liveDirty = false;
+            }
+            this.imageHistoryLines = lines;
+            if (collapse) {
+                this.redrawViewport();
+                this.fullRedrawPending = false;
+            }
+
+            final boolean linksChanged = this.linkDetection && this.updateLinks();
+            if (this.accessibleText != null && (serverScroll || hasDamage || refilled || this.cursorChanged)) {
+                this.accessibleText.update(this.cursor);
+            }
+
+            if (this.viewTop < 0 && this.scrollDirection != 0) {
+                this.prefetchStrips(STRIP_PREFETCH_PER_FRAME);
+            }
+
+            if (sinks) {
+                for (final FrameSink sink : this.frameSinks) {
+                    if (this.cursorChanged || keyframe) {
+                        sink.cursorMoved(this.cursor.x, this.cursor.y);
+                    }
+                    sink.endFrame();
+                }
+            }
+
+            if (serverScroll || clientScroll) {
+                this.markFrameAllDirty();
+            }
+            if (serverScroll || clientScroll || hasDamage || viewportRedrawn || linksChanged) {
+                this.frameGeneration++;
+            }
+            if (lines != previousLines || clientScroll) {
+                for (final OverviewStrip overview : this.overviews) {
+                    overview.historyChanged();
+                }
+            }
+            if (serverScroll || hasDamage || collapse) {
+                /* lines before those shown live at the last frame never change */
+                for (final TermView view : this.views) {
+                    view.linesChanged(Math.min(previousLines, lines));
+                }
+            }
+            if (serverScroll || clientScroll || hasDamage || viewportRedrawn || linksChanged || this.cursorChanged) {
+                if (this.keystrokeTracer.isEnabled()) {
+                    this.keystrokeTracer.frameRendered(System.nanoTime());
+                }
+                frameEvent.end();
+                if (frameEvent.shouldCommit()) {
+                    frameEvent.panelId = this.panelId;
+                    frameEvent.panelName = this.getName();
+                    frameEvent.columns = this.termSize.width;
+                    frameEvent.rows = this.termSize.height;
+                    frameEvent.damagedCells = this.frameCells;
+                    frameEvent.collapsed = collapse;
+                    frameEvent.flooding = this.floodGovernor.isFlooding();
+                    frameEvent.commit();
+                }
                 this.repaint();
                 this.cursorChanged = false;
             }
@@ -892,22 +2992,99 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
     /** {@inheritDoc} */
     @Override
     public void scrollArea(final int y, final int h, final int dy) {
+        if (this.scrollCalls++ == 0) {
+            this.scrollBurstStart = System.nanoTime();
+        }
+        this.scrollLines += Math.abs(dy);
         if (dy < 0) {
             // Moving lines off the top of the screen
             // TODO: Something to do with application keypad mode
             // TODO: Something to do with the scroll margins
-            this.backBuffer.pumpRuns(0, y - 1, this.termSize.width, -dy, this.scrollBuffer);
+            /* nothing drains the link detection queue while hibernating, the lines are rescanned on wake */
+            this.historyToGrid = this.linkDetection && !this.hibernating;
+            this.historyToSummaries = this.summarizing;
+            if (this.historyToGrid || this.historyToSummaries) {
+                if (this.historyToGrid) {
+                    this.historyGrid.reset(0, y - 1, this.termSize.width, -dy);
+                }
+                if (this.historyToSummaries) {
+                    this.lineSummaries.begin(this.historyLines, y - 1, -dy, this.termSize.width);
+                }
+                this.backBuffer.pumpRuns(0, y - 1, this.termSize.width, -dy, this.historyConsumer);
+                if (this.historyToGrid) {
+                    for (int i = 0; i < -dy; i++) {
+                        this.linkDetector.submitHistory(this.historyLines + i, this.historyGrid.getCells(),
+                            this.historyGrid.getOffset(y - 1 + i), this.historyGrid.getWidth());
+                    }
+                }
+            } else {
+                this.backBuffer.pumpRuns(0, y - 1, this.termSize.width, -dy, this.scrollBuffer);
+            }
+            this.historyLines += -dy;
+            if (this.historyToSummaries) {
+                this.lineSummaries.end(-dy, this.historyLines - this.scrollBuffer.getLineCount());
+            }
+            this.floodGovernor.addScrolledLines(-dy);
 
-            this.brm.setRangeProperties(0, this.termSize.height, -this.scrollBuffer.getLineCount(),
-                this.termSize.height, false);
+            // the scroll model is updated by the next frame, on the event dispatch thread
+            this.linesToHistory += -dy;
         }
         this.selectionStart = null;
         this.selectionEnd = null;
         this.pendingScrolls.add(y, h, dy);
     }
 
+    /**
+     * Checks if a key code is a modifier or lock key, which sends no input by itself.
+     *
+     * @param keyCode
+     *            the key code
+     * @return true, if a modifier key
+     */
+    private static boolean isModifierKey(final int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.VK_SHIFT:
+            case KeyEvent.VK_CONTROL:
+            case KeyEvent.VK_ALT:
+            case KeyEvent.VK_ALT_GRAPH:
+            case KeyEvent.VK_META:
+            case KeyEvent.VK_WINDOWS:
+            case KeyEvent.VK_CONTEXT_MENU:
+            case KeyEvent.VK_CAPS_LOCK:
+            case KeyEvent.VK_NUM_LOCK:
+            case KeyEvent.VK_SCROLL_LOCK:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Take over the lines moved to the scroll buffer into the scroll model. A view scrolled into the history stays
+     * on the lines it shows, else it stays at the bottom. Runs on the event dispatch thread with the back buffer
+     * locked, so scrolls by the user are never lost.
+     */
+    private void updateScrollModel() {
+        final int moved = this.linesToHistory;
+        if (moved == 0) {
+            return;
+        }
+        this.linesToHistory = 0;
+        final int value = this.brm.getValue();
+        final int lineCount = this.scrollBuffer.getLineCount();
+        this.brm.setRangeProperties(value < 0 ? Math.max(value - moved, -lineCount) : 0, this.termSize.height,
+            -lineCount, this.termSize.height, false);
+    }
+
     /**
      * The Class PendingScrolls.
+     *
+     * <p>
+     * Consecutive scrolls of the same area in the same direction are merged into one copy. The merged copy moves
+     * fewer rows than the area: every scroll up also moves the top row of the area into the row above it, and merging
+     * must not let the rows above the area move on into the rows above those. Rows the merged copy leaves out are
+     * the ones the scrolls uncovered, the back buffer reports them as damage.
+     * </p>
      */
     static class PendingScrolls {
 
@@ -917,8 +3094,17 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
         /** The hs. */
         private int[] hs = new int[10];
 
-        /** The dys. */
-        private int[] dys = new int[10];
+        /** The dys. */
+        private int[] dys = new int[10];
+
+        /** The first row of the area as scrolled by the emulator, per merged scroll. */
+        private int[] areaYs = new int[10];
+
+        /** The row count of the area as scrolled by the emulator, per merged scroll. */
+        private int[] areaHs = new int[10];
+
+        /** The distance of the first of the merged scrolls. */
+        private int[] firstDys = new int[10];
 
         /** The scroll count. */
         private int scrollCount = -1;
@@ -935,6 +3121,9 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
                 this.ys = Util.copyOf(this.ys, curLen * 2);
                 this.hs = Util.copyOf(this.hs, curLen * 2);
                 this.dys = Util.copyOf(this.dys, curLen * 2);
+                this.areaYs = Util.copyOf(this.areaYs, curLen * 2);
+                this.areaHs = Util.copyOf(this.areaHs, curLen * 2);
+                this.firstDys = Util.copyOf(this.firstDys, curLen * 2);
             }
         }
 
@@ -952,14 +3141,97 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
             if (dy == 0) {
                 return;
             }
-            if (this.scrollCount >= 0 && y == this.ys[this.scrollCount] && h == this.hs[this.scrollCount]) {
-                this.dys[this.scrollCount] += dy;
+            final int i = this.scrollCount;
+            if (i >= 0 && y == this.areaYs[i] && h == this.areaHs[i] && dy < 0 == this.dys[i] < 0) {
+                this.dys[i] += dy;
+                final int extra = this.dys[i] - this.firstDys[i];
+                if (dy < 0) {
+                    /* only the rows still in the area after the first scroll move on */
+                    this.ys[i] = y - extra;
+                    this.hs[i] = Math.max(0, h + extra);
+                } else {
+                    this.hs[i] = Math.max(0, h - extra);
+                }
             } else {
                 this.scrollCount++;
                 this.ensureArrays(this.scrollCount);
                 this.ys[this.scrollCount] = y;
                 this.hs[this.scrollCount] = h;
                 this.dys[this.scrollCount] = dy;
+                this.areaYs[this.scrollCount] = y;
+                this.areaHs[this.scrollCount] = h;
+                this.firstDys[this.scrollCount] = dy;
+            }
+        }
+
+        /**
+         * Gets the number of lines scrolled by the pending scrolls.
+         *
+         * @return the lines
+         */
+        int getLines() {
+            int lines = 0;
+            for (int i = 0; i <= this.scrollCount; i++) {
+                lines += Math.abs(this.dys[i]);
+            }
+            return lines;
+        }
+
+        /**
+         * Checks if no scrolls are pending.
+         *
+         * @return true, if empty
+         */
+        boolean isEmpty() {
+            return this.scrollCount < 0;
+        }
+
+        /**
+         * Drop the pending scrolls without copying pixels, for when the whole image is redrawn anyway.
+         *
+         * @return true, if there were pending scrolls
+         */
+        boolean discard() {
+            final boolean had = this.scrollCount >= 0;
+            this.scrollCount = -1;
+            return had;
+        }
+
+        /**
+         * Replay the pending scrolls to frame sinks.
+         *
+         * @param sinks
+         *            the sinks
+         */
+        void replay(final List<FrameSink> sinks) {
+            for (int i = 0; i <= this.scrollCount; i++) {
+                for (final FrameSink sink : sinks) {
+                    sink.scroll(this.ys[i], this.hs[i], this.dys[i]);
+                }
+            }
+        }
+
+        /**
+         * Replay the pending scrolls to the shadow, mirroring {@link #enact(Graphics2D, int, int)}.
+         *
+         * @param shadow
+         *            the shadow
+         */
+        void replay(final RowShadow shadow) {
+            for (int i = 0; i <= this.scrollCount; i++) {
+                shadow.scroll(this.ys[i], this.hs[i], this.dys[i]);
+            }
+        }
+
+        /**
+         * Replay the pending scrolls to the text cache.
+         *
+         * @param cache
+         *            the cache
+         */
+        void replay(final RowTextCache cache) {
+            for (int i = 0; i <= this.scrollCount; i++) {
+                cache.scroll(this.ys[i], this.hs[i], this.dys[i]);
             }
         }
 
@@ -1000,6 +3272,9 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
         this.cursor.x = x;
         this.cursor.y = y;
         this.cursorChanged = true;
+        if (this.keystrokeTracer.isEnabled()) {
+            this.keystrokeTracer.cursorMoved(System.nanoTime());
+        }
     }
 
     /*
@@ -1040,6 +3315,26 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
         this.gfx.setRenderingHints(hints);
     }
 
+    /**
+     * Sets whether box drawing (U+2500..U+257F) and block elements (U+2580..U+259F) are drawn procedurally as
+     * cell sized geometry instead of font glyphs. Enabled by default.
+     *
+     * @param enabled
+     *            true to draw procedurally
+     */
+    public void setProceduralBoxDrawing(final boolean enabled) {
+        this.textRenderer.setBoxDrawing(enabled);
+    }
+
+    /**
+     * Checks if box drawing and block elements are drawn procedurally.
+     *
+     * @return true, if drawn procedurally
+     */
+    public boolean isProceduralBoxDrawing() {
+        return this.textRenderer.isBoxDrawing();
+    }
+
     /**
      * Gets the bounded range model.
      *
@@ -1089,7 +3384,12 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
             return;
         }
         for (final SelectionListener listener : this.selectionListeners) {
-            listener.selectionChanged(this.selectionStart, this.selectionEnd);
+            if (listener instanceof ShapedSelectionListener) {
+                ((ShapedSelectionListener) listener).selectionChanged(this.selectionStart, this.selectionEnd,
+                    this.selectionMode);
+            } else {
+                listener.selectionChanged(this.selectionStart, this.selectionEnd);
+            }
         }
     }
 
@@ -1165,6 +3465,409 @@ public class TermPanel extends JComponent implements TerminalDisplay, ClipboardO
         return this.selectionEnd;
     }
 
+    /**
+     * Sets the selection and notifies the selection listeners.
+     *
+     * @param start
+     *            the start in buffer coordinates, null to clear the selection
+     * @param end
+     *            the end in buffer coordinates
+     * @param mode
+     *            the selection mode
+     */
+    public void setSelection(final Point start, final Point end, final SelectionMode mode) {
+        this.clearSelection();
+        if (start != null && end != null) {
+            this.selectionMode = mode;
+            this.selectionStart = new Point(start);
+            this.selectionEnd = new Point(end);
+            this.repaintRows(Math.min(start.y, end.y), Math.max(start.y, end.y));
+        }
+        this.fireSelectionChanged();
+    }
+
+    /**
+     * Gets the style state.
+     *
+     * @return the style state
+     */
+    public StyleState getStyleState() {
+        return this.styleState;
+    }
+
+    /**
+     * Gets the generation of the off-screen frame. It changes whenever the frame content changes, so hosts polling
+     * snapshots can skip unchanged frames.
+     *
+     * @return the frame generation
+     */
+    public long getFrameGeneration() {
+        return this.frameGeneration;
+    }
+
+    /**
+     * Gets a copy of the pixels of the off-screen frame at device resolution, without cursor and selection. Only rows
+     * damaged since the previous call are copied again and an unchanged frame returns the same raster. Must be called
+     * on the event dispatch thread.
+     *
+     * <p>
+     * The raster is shared: all callers get the same instance, later calls update it in place and a new one is only
+     * returned after a resize. It is a {@link java.awt.image.WritableRaster} in fact but must not be modified; copy
+     * it, e.g. with {@link Raster#createCompatibleWritableRaster()} and {@code setRect}, to keep or change a frame.
+     * </p>
+     *
+     * @return the frame raster, null while the panel hibernates or before it has an off-screen image
+     */
+    public Raster getFrameRaster() {
+        if (this.img == null) {
+            return null;
+        }
+        return this.snapshot.get(this.img, this.frameGeneration);
+    }
+
+    /**
+     * Mark a band of rows of the off-screen frame dirty for the thumbnail and the frame raster.
+     *
+     * @param top
+     *            the first row in panel pixels
+     * @param bottom
+     *            the last row in panel pixels
+     */
+    private void markFrameDirty(final int top, final int bottom) {
+        final int deviceTop = (int) Math.floor(top * this.scale);
+        final int deviceBottom = (int) Math.ceil((bottom + 1) * this.scale) - 1;
+        this.thumbnail.markDirty(deviceTop, deviceBottom);
+        this.snapshot.markDirty(deviceTop, deviceBottom);
+    }
+
+    /**
+     * Mark the whole off-screen frame dirty for the thumbnail and the frame raster.
+     */
+    private void markFrameAllDirty() {
+        this.thumbnail.markAllDirty();
+        this.snapshot.markAllDirty();
+    }
+
+    /**
+     * Gets a downscaled thumbnail of the off-screen frame. Only rows damaged since the previous call are scaled
+     * again and an unchanged frame returns the same image. Must be called on the event dispatch thread, the
+     * returned image is reused by later calls.
+     *
+     * @param width
+     *            the thumbnail width
+     * @param height
+     *            the thumbnail height
+     * @return the thumbnail
+     */
+    public BufferedImage getThumbnail(final int width, final int height) {
+        if (this.img == null) {
+            return null;
+        }
+        return this.thumbnail.get(this.img, this.frameGeneration, Math.max(1, width), Math.max(1, height));
+    }
+
+    /**
+     * Gets the text of the visible grid, one line per row without trailing blanks.
+     *
+     * @return the visible text
+     */
+    public String getVisibleText() {
+        final CharGridConsumer grid = new CharGridConsumer();
+        final StringBuffer text = new StringBuffer(this.termSize.height * (this.termSize.width + 1));
+        this.backBuffer.lock();
+        try {
+            final int top = this.clientScrollOrigin;
+            grid.reset(0, top, this.termSize.width, this.termSize.height);
+            this.pumpRows(top, this.termSize.height, grid);
+            for (int y = top; y < top + this.termSize.height; y++) {
+                if (y > top) {
+                    text.append('\n');
+                }
+                grid.appendRow(text, y);
+            }
+        } finally {
+            this.backBuffer.unlock();
+        }
+        return text.toString();
+    }
+
+    /**
+     * Adds a frame sink. The sink receives a key frame of the current back buffer right away and the damage of
+     * every following frame. A hibernating panel wakes up. Must be called on the event dispatch thread.
+     *
+     * @param sink
+     *            the sink
+     */
+    public void addFrameSink(final FrameSink sink) {
+        this.wakeUp();
+        this.backBuffer.lock();
+        try {
+            sink.beginFrame(this.termSize.width, this.termSize.height, true);
+            this.backBuffer.pumpRuns(0, 0, this.termSize.width, this.termSize.height, sink);
+            sink.cursorMoved(this.cursor.x, this.cursor.y);
+            sink.endFrame();
+            if (this.frameSinks.isEmpty()) {
+                this.frameSinksNeedKeyframe = false;
+            }
+            this.frameSinks.add(sink);
+        } finally {
+            this.backBuffer.unlock();
+        }
+    }
+
+    /**
+     * Removes a frame sink.
+     *
+     * @param sink
+     *            the sink
+     */
+    public void removeFrameSink(final FrameSink sink) {
+        this.backBuffer.lock();
+        try {
+            this.frameSinks.remove(sink);
+        } finally {
+            this.backBuffer.unlock();
+        }
+    }
+
+    /**
+     * Pump the whole back buffer to the frame sinks as a key frame.
+     */
+    private void pumpKeyframe() {
+        this.frameSinksNeedKeyframe = false;
+        for (final FrameSink sink : this.frameSinks) {
+            this.backBuffer.pumpRuns(0, 0, this.termSize.width, this.termSize.height, sink);
+        }
+    }
+
+    /**
+     * Checks if link detection is enabled.
+     *
+     * @return true, if enabled
+     */
+    public boolean isLinkDetectionEnabled() {
+        return this.linkDetection;
+    }
+
+    /**
+     * Enables or disables link detection. Enabled by default with patterns for urls ({@code "url"}), file:line
+     * references ({@code "file"}) and ticket ids ({@code "ticket"}).
+     *
+     * @param enabled
+     *            true to enable
+     */
+    public void setLinkDetectionEnabled(final boolean enabled) {
+        this.linkDetection = enabled;
+    }
+
+    /**
+     * Adds a link pattern. Patterns added earlier win on overlapping matches.
+     *
+     * @param kind
+     *            the kind reported by {@link LinkMatch#getKind()}
+     * @param pattern
+     *            the pattern, matched against single rows
+     */
+    public void addLinkPattern(final String kind, final Pattern pattern) {
+        this.linkDetector.addPattern(kind, pattern);
+    }
+
+    /**
+     * Removes all link patterns, including the default ones.
+     */
+    public void clearLinkPatterns() {
+        this.linkDetector.clearPatterns();
+    }
+
+    /**
+     * Adds a link listener, notified on ctrl-click on a link.
+     *
+     * @param listener
+     *            the listener
+     */
+    public void addLinkListener(final LinkListener listener) {
+        this.linkListeners.add(listener);
+    }
+
+    /**
+     * Removes a link listener.
+     *
+     * @param listener
+     *            the listener
+     */
+    public void removeLinkListener(final LinkListener listener) {
+        this.linkListeners.remove(listener);
+    }
+
+    /**
+     * Gets the nanoseconds the link detection spent on its last batch, about one frame of damaged rows.
+     *
+     * @return the nanos
+     */
+    public long getLastLinkDetectionNanos() {
+        return this.linkDetector.getLastBatchNanos();
+    }
+
+    /**
+     * Gets the nanoseconds the link detection spent in total.
+     *
+     * @return the nanos
+     */
+    public long getTotalLinkDetectionNanos() {
+        return this.linkDetector.getTotalNanos();
+    }
+
+    /**
+     * Gets the number of rows the link detection scanned in total.
+     *
+     * @return the rows
+     */
+    public long getLinkDetectionRowsScanned() {
+        return this.linkDetector.getRowsScanned();
+    }
+
+    /**
+     * Gets the selection mode.
+     *
+     * @return the selectionMode
+     */
+    public SelectionMode getSelectionMode() {
+        return this.selectionMode;
+    }
+
+    /**
+     * Gets the non alphanumeric characters that are part of a word for word selection.
+     *
+     * @return the wordChars
+     */
+    public String getWordChars() {
+        return this.wordChars;
+    }
+
+    /**
+     * Sets the non alphanumeric characters that are part of a word for word selection.
+     *
+     * @param wordChars
+     *            the wordChars to set, null for the default
+     */
+    public void setWordChars(final String wordChars) {
+        this.wordChars = wordChars != null ? wordChars : DEFAULT_WORD_CHARS;
+    }
+
+    /**
+     * Checks if damaged runs are compared against the cells last drawn.
+     *
+     * @return true, if enabled
+     */
+    public boolean isDamageShadowEnabled() {
+        return this.damageShadow;
+    }
+
+    /**
+     * Enables or disables comparing damaged runs against the cells last drawn, so that only the cells that changed
+     * are rasterized. Enabled by default.
+     *
+     * @param enabled
+     *            true to enable
+     */
+    public void setDamageShadowEnabled(final boolean enabled) {
+        this.damageShadow = enabled;
+    }
+
+    /**
+     * Gets the number of damaged cells compared against the cells last drawn.
+     *
+     * @return the cells compared
+     */
+    public long getDamageCellsCompared() {
+        return this.shadow.getCellsCompared();
+    }
+
+    /**
+     * Gets the number of damaged cells not rasterized because they were unchanged.
+     *
+     * @return the cells skipped
+     */
+    public long getDamageCellsSkipped() {
+        return this.shadow.getCellsSkipped();
+    }
+
+    /**
+     * Gets the percentage of damaged cells not rasterized because they were unchanged.
+     *
+     * @return the percentage, 0 before any damage
+     */
+    public double getDamageSkippedPercent() {
+        final long compared = this.shadow.getCellsCompared();
+        return compared == 0 ? 0 : 100.0 * this.shadow.getCellsSkipped() / compared;
+    }
+
+    /**
+     * Checks if the flood governor is enabled.
+     *
+     * @return true, if enabled
+     */
+    public boolean isFloodGovernorEnabled() {
+        return this.floodGovernor.isEnabled();
+    }
+
+    /**
+     * Enables or disables the flood governor. While output scrolls faster than about {@value FloodGovernor#ENTER_RATE}
+     * screens per second the governor renders at a quarter of the frame rate and replaces frames that scrolled a full
+     * screen by a single repaint of the latest state. Enabled by default.
+     *
+     * @param enabled
+     *            true to enable
+     */
+    public void setFloodGovernorEnabled(final boolean enabled) {
+        this.floodGovernor.setEnabled(enabled);
+    }
+
+    /**
+     * Checks if the panel is in flood mode.
+     *
+     * @return true, if flooding
+     */
+    public boolean isFlooding() {
+        return this.floodGovernor.isFlooding();
+    }
+
+    /**
+     * Gets the smoothed output rate the flood governor measures.
+     *
+     * @return the rate in screens per second
+     */
+    public double getOutputRate() {
+        return this.floodGovernor.getRate();
+    }
+
+    /**
+     * Gets the number of times flood mode was entered.
+     *
+     * @return the flood episodes
+     */
+    public long getFloodEpisodes() {
+        return this.floodGovernor.getEpisodes();
+    }
+
+    /**
+     * Gets the number of redraw ticks dropped in flood mode.
+     *
+     * @return the frames dropped
+     */
+    public long getFloodFramesDropped() {
+        return this.floodGovernor.getFramesDropped();
+    }
+
+    /**
+     * Gets the number of frames collapsed into a full repaint in flood mode.
+     *
+     * @return the frames collapsed
+     */
+    public long getFloodFramesCollapsed() {
+        return this.floodGovernor.getFramesCollapsed();
+    }
+
     /**
      * Gets the no damage.
      *
@@ -0,0 +1,257 @@
+/*
+ * TermView
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+
+import javax.swing.JComponent;
+
+/**
+ * Additional read-only view of the session of a {@link TermPanel}.
+ *
+ * <p>
+ * A view has no off-screen image, timer or damage consumption of its own. The panel consumes the damage of its back
+ * buffer once per frame and tells its views which lines changed; a view then paints its lines from the off-screen
+ * image of the panel, or from the strips of rasterized rows the panel shares with its smooth scrolling. A view
+ * either follows the live output or stays on a line of the history, e.g. as a frozen history pane above the panel.
+ * </p>
+ *
+ * <p>
+ * Several panels must not share one back buffer, the damage reset by one would be lost for the others; use views
+ * instead. A view attaches to its panel when it is added to a shown component hierarchy and detaches when removed.
+ * Only used on the event dispatch thread.
+ * </p>
+ */
+public class TermView extends JComponent {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
+    /** The rows scrolled per mouse wheel notch. */
+    private static final int WHEEL_ROWS = 3;
+
+    /** The delay to paint again after the emulator held the back buffer in milliseconds. */
+    private static final int RETRY_DELAY = 20;
+
+    /** The paints given up in a row after which a paint waits for the back buffer, like the panel's frames. */
+    private static final int MAX_SKIPPED = 3;
+
+    /** The panel. */
+    private final TermPanel panel;
+
+    /** The default number of rows. */
+    private final int defaultRows;
+
+    /** The absolute line shown at the top while not following. */
+    private int topLine;
+
+    /** Following the live output. */
+    private boolean following = true;
+
+    /** The paints given up in a row as the emulator held the back buffer. */
+    private int skipped;
+
+    /**
+     * Instantiates a new term view.
+     *
+     * @param panel
+     *            the panel whose session to show
+     * @param rows
+     *            the preferred number of rows
+     */
+    public TermView(final TermPanel panel, final int rows) {
+        this.panel = panel;
+        this.defaultRows = rows;
+        this.setOpaque(true);
+        this.addMouseWheelListener(new MouseWheelListener() {
+
+            @Override
+            public void mouseWheelMoved(final MouseWheelEvent e) {
+                TermView.this.scrollRows((int) Math.round(WHEEL_ROWS * e.getPreciseWheelRotation()));
+                e.consume();
+            }
+        });
+        this.addComponentListener(new ComponentAdapter() {
+
+            @SuppressWarnings("synthetic-access")
+            @Override
+            public void componentResized(final ComponentEvent e) {
+                TermView.this.panel.updateStripCapacity();
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.JComponent#addNotify()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        this.panel.addView(this);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.JComponent#removeNotify()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public void removeNotify() {
+        this.panel.removeView(this);
+        super.removeNotify();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.JComponent#getPreferredSize()
+     */
+    /** {@inheritDoc} */
+    @Override
+    public Dimension getPreferredSize() {
+        if (this.isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        return new Dimension(this.panel.getPixelWidth(), this.defaultRows * this.panel.getLineHeight());
+    }
+
+    /**
+     * Gets the number of rows the view shows, the last one possibly partially.
+     *
+     * @return the rows
+     */
+    int getRows() {
+        final int lineHeight = this.panel.getLineHeight();
+        return lineHeight > 0 ? (this.getHeight() + lineHeight - 1) / lineHeight : 0;
+    }
+
+    /**
+     * Gets the absolute line shown at the top. Absolute lines count the lines moved to the scroll buffer, the live
+     * rows of the back buffer start at the number of history lines of the panel.
+     *
+     * @return the top line
+     */
+    public int getTopLine() {
+        if (this.following) {
+            return this.panel.getHistoryLines() + this.panel.getTermSize().height - this.getRows();
+        }
+        return Math.max(this.topLine, this.panel.getOldestLine());
+    }
+
+    /**
+     * Show the history from an absolute line on and stop following the live output.
+     *
+     * @param line
+     *            the absolute line to show at the top
+     */
+    public void setTopLine(final int line) {
+        final int bottom = this.panel.getHistoryLines() + this.panel.getTermSize().height - this.getRows();
+        this.topLine = Math.max(Math.min(line, bottom), this.panel.getOldestLine());
+        this.following = false;
+        this.repaint();
+    }
+
+    /**
+     * Scroll by a number of rows. Scrolling down to the live output follows it again.
+     *
+     * @param rows
+     *            the rows, negative scrolls back into the history
+     */
+    public void scrollRows(final int rows) {
+        final int bottom = this.panel.getHistoryLines() + this.panel.getTermSize().height - this.getRows();
+        final int line = this.getTopLine() + rows;
+        if (line >= bottom) {
+            this.setFollowing(true);
+        } else {
+            this.setTopLine(line);
+        }
+    }
+
+    /**
+     * Checks if the view follows the live output.
+     *
+     * @return true, if following
+     */
+    public boolean isFollowing() {
+        return this.following;
+    }
+
+    /**
+     * Sets whether the view follows the live output. A view that stops following stays on the lines it shows.
+     *
+     * @param following
+     *            true to follow
+     */
+    public void setFollowing(final boolean following) {
+        if (!following && this.following) {
+            this.topLine = this.getTopLine();
+        }
+        this.following = following;
+        this.repaint();
+    }
+
+    /**
+     * Called by the panel after a frame changed lines from an absolute line on.
+     *
+     * @param line
+     *            the first absolute line that may have changed
+     */
+    void linesChanged(final int line) {
+        if (this.following || this.getTopLine() + this.getRows() > line) {
+            this.repaint();
+        }
+    }
+
+    /**
+     * Called by the panel after its off-screen image was rebuilt, e.g. after a resize or a font change.
+     */
+    void panelChanged() {
+        this.revalidate();
+        this.repaint();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
+     */
+    /** {@inheritDoc} */
+    @Override
+    protected void paintComponent(final Graphics g) {
+        super.paintComponent(g);
+        final boolean block = this.skipped >= MAX_SKIPPED;
+        if (this.panel.paintLines((Graphics2D) g, this.getTopLine(), this.getRows(), block)) {
+            this.skipped = 0;
+        } else {
+            /* the emulator holds the back buffer or the panel has no image yet */
+            this.skipped++;
+            this.repaint(RETRY_DELAY);
+        }
+    }
+}
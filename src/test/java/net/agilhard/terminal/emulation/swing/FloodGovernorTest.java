@@ -0,0 +1,288 @@
+/*
+ * FloodGovernorTest
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the flood governor: its rate and mode changes on synthetic timestamps, and the flood and paging scenarios
+ * with the governor enabled.
+ *
+ * <p>
+ * The throughput comparison is timing dependent and opt-in: run with {@code -Drender.flood=true} to log the lines
+ * per second with the governor enabled and disabled.
+ * </p>
+ */
+public class FloodGovernorTest {
+
+    /** The lines of the throughput runs. */
+    private static final int FLOOD_LINES = 20000;
+
+    /** The runs per setting, the best one counts. */
+    private static final int FLOOD_RUNS = 5;
+
+    /** The screen height of the synthetic samples. */
+    private static final int HEIGHT = 24;
+
+    /** The time between two synthetic samples, a tenth of a second: one screen per sample is 10 screens/s. */
+    private static final long INTERVAL = 100000000L;
+
+    /** The samples after which the moving average has settled. */
+    private static final int SETTLE = 50;
+
+    /** The Logger. */
+    private final Logger log = LoggerFactory.getLogger(FloodGovernorTest.class);
+
+    /** The time of the next synthetic sample. */
+    private long now = INTERVAL;
+
+    /**
+     * A steady rate above {@link FloodGovernor#ENTER_RATE} enters flood mode once, one just below never does.
+     */
+    @Test
+    public void entersAboveEnterRate() {
+        final FloodGovernor below = new FloodGovernor();
+        /* 18 lines of 24 per tenth of a second are 7.5 screens/s */
+        this.feed(below, 18, SETTLE);
+        Assert.assertTrue(below.getRate() < FloodGovernor.ENTER_RATE);
+        Assert.assertFalse(below.isFlooding());
+        Assert.assertEquals(0, below.getEpisodes());
+
+        final FloodGovernor above = new FloodGovernor();
+        /* the first sample only starts the clock */
+        this.feed(above, HEIGHT, 1);
+        Assert.assertFalse(above.isFlooding());
+        Assert.assertEquals(0.0, above.getRate(), 0.0);
+        /* 10 screens/s, the average passes 8 after five samples */
+        this.feed(above, HEIGHT, 4);
+        Assert.assertFalse("entered before the average passed the rate", above.isFlooding());
+        this.feed(above, HEIGHT, 1);
+        Assert.assertTrue(above.getRate() > FloodGovernor.ENTER_RATE);
+        Assert.assertTrue(above.isFlooding());
+        this.feed(above, HEIGHT, SETTLE);
+        Assert.assertTrue(above.isFlooding());
+        Assert.assertEquals(1, above.getEpisodes());
+    }
+
+    /**
+     * Between {@link FloodGovernor#EXIT_RATE} and {@link FloodGovernor#ENTER_RATE} the mode is kept either way.
+     */
+    @Test
+    public void exitRateHysteresis() {
+        final FloodGovernor governor = new FloodGovernor();
+        this.feed(governor, HEIGHT, SETTLE);
+        Assert.assertTrue(governor.isFlooding());
+
+        /* 12 lines per tenth of a second are 5 screens/s: too slow to enter, too fast to leave */
+        this.feed(governor, 12, SETTLE);
+        Assert.assertTrue(governor.isFlooding());
+
+        /* 2.4 lines per tenth of a second are 1 screen/s */
+        this.feed(governor, 2, SETTLE);
+        Assert.assertTrue(governor.getRate() < FloodGovernor.EXIT_RATE);
+        Assert.assertFalse(governor.isFlooding());
+
+        this.feed(governor, 12, SETTLE);
+        Assert.assertFalse(governor.isFlooding());
+        Assert.assertEquals(1, governor.getEpisodes());
+
+        this.feed(governor, HEIGHT, SETTLE);
+        Assert.assertTrue(governor.isFlooding());
+        Assert.assertEquals(2, governor.getEpisodes());
+    }
+
+    /**
+     * In flood mode only every {@link FloodGovernor#FLOOD_INTERVAL}th tick renders, otherwise every tick does.
+     */
+    @Test
+    public void floodIntervalSkipsTicks() {
+        final FloodGovernor governor = new FloodGovernor();
+        for (int i = 0; i < 2 * FloodGovernor.FLOOD_INTERVAL; i++) {
+            Assert.assertTrue(governor.shouldRender());
+        }
+        Assert.assertEquals(0, governor.getFramesDropped());
+
+        this.feed(governor, HEIGHT, SETTLE);
+        Assert.assertTrue(governor.isFlooding());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 1; i < FloodGovernor.FLOOD_INTERVAL; i++) {
+                Assert.assertFalse("tick " + i + " of round " + round, governor.shouldRender());
+            }
+            Assert.assertTrue("last tick of round " + round, governor.shouldRender());
+        }
+        Assert.assertEquals(3 * (FloodGovernor.FLOOD_INTERVAL - 1), governor.getFramesDropped());
+
+        this.feed(governor, 0, SETTLE);
+        Assert.assertFalse(governor.isFlooding());
+        Assert.assertTrue(governor.shouldRender());
+    }
+
+    /**
+     * Frames collapse into a repaint only in flood mode and only with a screen or more of pending lines.
+     */
+    @Test
+    public void collapseOnlyFloodedScreens() {
+        final FloodGovernor governor = new FloodGovernor();
+        Assert.assertFalse(governor.shouldCollapse(10 * HEIGHT, HEIGHT));
+
+        this.feed(governor, HEIGHT, SETTLE);
+        Assert.assertTrue(governor.isFlooding());
+        Assert.assertFalse(governor.shouldCollapse(HEIGHT - 1, HEIGHT));
+        Assert.assertTrue(governor.shouldCollapse(HEIGHT, HEIGHT));
+        Assert.assertTrue(governor.shouldCollapse(10 * HEIGHT, HEIGHT));
+        Assert.assertEquals(2, governor.getFramesCollapsed());
+    }
+
+    /**
+     * A disabled governor and output without scrolling never flood, however fast the frames come.
+     */
+    @Test
+    public void disabledOrInPlaceNeverFloods() {
+        final FloodGovernor disabled = new FloodGovernor();
+        disabled.setEnabled(false);
+        this.feed(disabled, 10 * HEIGHT, SETTLE);
+        Assert.assertFalse(disabled.isFlooding());
+        Assert.assertTrue(disabled.shouldRender());
+
+        final FloodGovernor flooded = new FloodGovernor();
+        this.feed(flooded, HEIGHT, SETTLE);
+        flooded.setEnabled(false);
+        Assert.assertFalse(flooded.isFlooding());
+        flooded.setEnabled(true);
+
+        final FloodGovernor inPlace = new FloodGovernor();
+        for (int i = 0; i < SETTLE; i++) {
+            this.now += 1000000L;
+            inPlace.sample(HEIGHT, this.now);
+        }
+        Assert.assertFalse(inPlace.isFlooding());
+        Assert.assertEquals(0.0, inPlace.getRate(), 0.0);
+    }
+
+    /**
+     * Paging repaints the whole screen in place and must not be taken for a flood, while scrolling the same number
+     * of screens at the same frame rate must be.
+     *
+     * @throws Exception
+     *             if the scenario fails
+     */
+    @Test
+    public void pagingDoesNotFlood() throws Exception {
+        final int pages = 60;
+        final RenderHarness paging = run(RenderScenarios.paging(pages), true);
+        Assert.assertEquals(0, paging.getPanel().getFloodEpisodes());
+        Assert.assertFalse(paging.getPanel().isFlooding());
+
+        /* the scenarios use screens of HEIGHT rows */
+        final RenderHarness flood = run(RenderScenarios.flood(pages * HEIGHT), true);
+        Assert.assertTrue("scrolling as fast as paging was not taken for a flood",
+            flood.getPanel().getFloodEpisodes() > 0);
+    }
+
+    /**
+     * Measure the lines per second of a flood with the governor enabled and disabled.
+     *
+     * @throws Exception
+     *             if the scenario fails
+     */
+    @Test
+    public void floodThroughput() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("render.flood"));
+        final double off = this.linesPerSecond(false);
+        final double on = this.linesPerSecond(true);
+        this.log.info(String.format("flood of %d lines: %.0f lines/s governor off, %.0f lines/s governor on",
+            Integer.valueOf(FLOOD_LINES), Double.valueOf(off), Double.valueOf(on)));
+    }
+
+    /**
+     * Run the flood scenario and take the best rate.
+     *
+     * @param governor
+     *            the flood governor flag
+     * @return the lines per second
+     * @throws Exception
+     *             if the scenario fails
+     */
+    private double linesPerSecond(final boolean governor) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < FLOOD_RUNS; i++) {
+            final long start = System.nanoTime();
+            final RenderHarness harness = run(RenderScenarios.flood(FLOOD_LINES), governor);
+            best = Math.min(best, System.nanoTime() - start);
+            if (governor) {
+                Assert.assertTrue("no flood detected", harness.getPanel().getFloodEpisodes() > 0);
+            }
+        }
+        return FLOOD_LINES * 1e9 / best;
+    }
+
+    /**
+     * Feed synthetic samples a tenth of a second apart.
+     *
+     * @param governor
+     *            the governor
+     * @param lines
+     *            the lines scrolled before each sample
+     * @param samples
+     *            the samples
+     */
+    private void feed(final FloodGovernor governor, final int lines, final int samples) {
+        for (int i = 0; i < samples; i++) {
+            governor.addScrolledLines(lines);
+            governor.sample(HEIGHT, this.now);
+            this.now += INTERVAL;
+        }
+    }
+
+    /**
+     * Run a scenario on the event dispatch thread.
+     *
+     * @param scenario
+     *            the scenario
+     * @param governor
+     *            the flood governor flag
+     * @return the harness
+     * @throws InvocationTargetException
+     *             if the scenario threw
+     * @throws InterruptedException
+     *             if interrupted
+     */
+    private static RenderHarness run(final RenderScenario scenario, final boolean governor)
+        throws InvocationTargetException, InterruptedException {
+        final RenderHarness[] harness = new RenderHarness[1];
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                harness[0] = new RenderHarness();
+                harness[0].getPanel().setFloodGovernorEnabled(governor);
+                scenario.run(harness[0]);
+            }
+        });
+        return harness[0];
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * FrameCodecTest
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.agilhard.terminal.emulation.Style;
+import net.agilhard.terminal.emulation.StyledRunConsumer;
+
+/**
+ * Sends the frames of a panel through a {@link FrameEncoder} and a {@link FrameDecoder} and checks the decoded
+ * grid against the back buffer cell for cell after every frame.
+ */
+public class FrameCodecTest {
+
+    /** The frames written with a new style per cell, enough to run out of style ids. */
+    private static final int STYLE_FRAMES = 60;
+
+    /** The encoded frames not decoded yet. */
+    private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+    /** The encoder. */
+    private final FrameEncoder encoder = new FrameEncoder(this.stream);
+
+    /** The decoder. */
+    private final FrameDecoder decoder = new FrameDecoder();
+
+    /**
+     * A key frame followed by delta frames with scrolls, runs, cursor moves and more than
+     * {@link FrameEncoder#MAX_STYLES} styles.
+     *
+     * @throws Exception
+     *             if the round trip fails
+     */
+    @Test
+    public void roundTrip() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            @SuppressWarnings("synthetic-access")
+            @Override
+            public void run() {
+                try {
+                    FrameCodecTest.this.roundTrip(new RenderHarness());
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Run the round trip on the event dispatch thread.
+     *
+     * @param harness
+     *            the harness
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void roundTrip(final RenderHarness harness) throws IOException {
+        harness.fill(0);
+        harness.cursor(0, 0);
+        harness.frame();
+
+        /* the key frame */
+        harness.getPanel().addFrameSink(this.encoder);
+        this.check(harness, "key frame");
+
+        /* the whole screen scrolls up, new lines at the bottom */
+        harness.scroll(3, 21, -3);
+        harness.text(0, 21, "line a");
+        harness.text(0, 22, "line b");
+        harness.text(0, 23, "line c");
+        harness.frame();
+        this.check(harness, "scroll up");
+
+        /* a region scrolls down and gets new lines at its top */
+        harness.scroll(5, 10, 2);
+        harness.text(0, 5, "inserted 1");
+        harness.text(0, 6, "inserted 2");
+        harness.frame();
+        this.check(harness, "region scroll down");
+
+        /* two scrolls of the same region within one frame */
+        harness.scroll(8, 10, -1);
+        harness.scroll(8, 10, -1);
+        harness.text(4, 16, "filled");
+        harness.frame();
+        this.check(harness, "merged region scrolls");
+
+        /* only the cursor moves */
+        harness.cursor(12, 7);
+        harness.frame();
+        this.check(harness, "cursor move");
+        Assert.assertEquals(12, this.decoder.getCursorX());
+        Assert.assertEquals(7, this.decoder.getCursorY());
+
+        /* a new style for every cell until the encoder runs out of style ids and asks for a key frame */
+        final int columns = harness.getPanel().getTermSize().width;
+        final int rows = harness.getPanel().getTermSize().height;
+        int styles = 0;
+        boolean keyframeRequested = false;
+        for (int frame = 0; frame < STYLE_FRAMES; frame++) {
+            for (int x = 0; x < columns; x++) {
+                harness.style(newStyle(styles++));
+                harness.text(x, frame % rows, String.valueOf((char) ('A' + (frame + x) % 26)));
+            }
+            harness.cursor(frame % columns, frame % rows);
+            harness.frame();
+            this.check(harness, "styles, frame " + frame);
+            keyframeRequested |= this.encoder.needsKeyframe();
+        }
+        Assert.assertTrue(styles > FrameEncoder.MAX_STYLES);
+        Assert.assertTrue("no key frame requested", keyframeRequested);
+        Assert.assertFalse("style ids not reset by a key frame", this.encoder.needsKeyframe());
+
+        Assert.assertFalse(this.encoder.isFailed());
+        Assert.assertEquals(this.encoder.getFramesWritten(), this.decoder.getFramesRead());
+    }
+
+    /**
+     * Decode the frames written so far and compare the decoder with the back buffer.
+     *
+     * @param harness
+     *            the harness
+     * @param step
+     *            the step, for messages
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void check(final RenderHarness harness, final String step) throws IOException {
+        final InputStream in = new ByteArrayInputStream(this.stream.toByteArray());
+        this.stream.reset();
+        while (this.decoder.readFrame(in)) {
+            /* apply every frame */
+        }
+
+        final Dimension size = harness.getPanel().getTermSize();
+        Assert.assertEquals(step + ": columns", size.width, this.decoder.getColumns());
+        Assert.assertEquals(step + ": rows", size.height, this.decoder.getRows());
+
+        final char[][] chars = new char[size.height][size.width];
+        final Style[][] styles = new Style[size.height][size.width];
+        harness.pumpScreen(new StyledRunConsumer() {
+
+            @Override
+            public void consumeRun(final int x, final int y, final Style style, final char[] buf, final int start,
+                final int len) {
+                for (int i = 0; i < len; i++) {
+                    chars[y][x + i] = buf[start + i];
+                    styles[y][x + i] = style;
+                }
+            }
+        });
+
+        for (int y = 0; y < size.height; y++) {
+            for (int x = 0; x < size.width; x++) {
+                final String cell = step + ": cell " + x + "," + y;
+                final Style style = styles[y][x];
+                if (style == null) {
+                    Assert.assertEquals(cell, -1, this.decoder.getForeground(x, y));
+                    continue;
+                }
+                Assert.assertEquals(cell, chars[y][x], this.decoder.getChar(x, y));
+                Assert.assertEquals(cell + " foreground", style.getForegroundForRun().getRGB() & 0xffffff,
+                    this.decoder.getForeground(x, y));
+                Assert.assertEquals(cell + " background", style.getBackgroundForRun().getRGB() & 0xffffff,
+                    this.decoder.getBackground(x, y));
+                Assert.assertEquals(cell + " flags", flags(style), this.decoder.getFlags(x, y));
+            }
+        }
+    }
+
+    /**
+     * Make a style of its own for a number.
+     *
+     * @param n
+     *            the number
+     * @return the style
+     */
+    private static Style newStyle(final int n) {
+        final EnumSet<Style.Option> options = EnumSet.noneOf(Style.Option.class);
+        if (n % 3 == 0) {
+            options.add(Style.Option.BOLD);
+        }
+        if (n % 5 == 0) {
+            options.add(Style.Option.UNDERSCORE);
+        }
+        return new Style(new Color(n * 0x9e3779 & 0xffffff), new Color(~n * 0x7f4a7c & 0xffffff), options);
+    }
+
+    /**
+     * The flags the encoder sends for a style.
+     *
+     * @param style
+     *            the style
+     * @return the flags
+     */
+    private static int flags(final Style style) {
+        int flags = 0;
+        if (style.hasOption(Style.Option.BOLD)) {
+            flags |= FrameEncoder.FLAG_BOLD;
+        }
+        if (style.hasOption(Style.Option.UNDERSCORE)) {
+            flags |= FrameEncoder.FLAG_UNDERLINE;
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * FrameComparator
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Compares rendered frames against golden images with a tolerance.
+ *
+ * <p>
+ * A pixel differs when any color channel differs by more than the channel tolerance, which absorbs antialiasing
+ * noise. Frames match when at most the given fraction of pixels differ and the sizes are equal.
+ * </p>
+ */
+final class FrameComparator {
+
+    /** The differing pixel color of diff images. */
+    private static final int DIFF_COLOR = 0xff0000;
+
+    /** The channel tolerance. */
+    private final int channelTolerance;
+
+    /** The maximum fraction of differing pixels. */
+    private final double maxMismatch;
+
+    /**
+     * The Class Result.
+     */
+    public static final class Result {
+
+        /** The differing pixels. */
+        private final int mismatched;
+
+        /** The pixels compared. */
+        private final int total;
+
+        /** The largest channel difference. */
+        private final int maxDelta;
+
+        /** The match flag. */
+        private final boolean matches;
+
+        /** The diff image, differing pixels in red over the dimmed actual frame. */
+        private final BufferedImage diff;
+
+        /**
+         * Instantiates a new result.
+         *
+         * @param mismatched
+         *            the differing pixels
+         * @param total
+         *            the pixels compared
+         * @param maxDelta
+         *            the largest channel difference
+         * @param matches
+         *            the match flag
+         * @param diff
+         *            the diff image
+         */
+        Result(final int mismatched, final int total, final int maxDelta, final boolean matches,
+            final BufferedImage diff) {
+            this.mismatched = mismatched;
+            this.total = total;
+            this.maxDelta = maxDelta;
+            this.matches = matches;
+            this.diff = diff;
+        }
+
+        /**
+         * Checks if the frames match.
+         *
+         * @return true, if they match
+         */
+        public boolean matches() {
+            return this.matches;
+        }
+
+        /**
+         * Gets the differing pixels.
+         *
+         * @return the mismatched
+         */
+        public int getMismatched() {
+            return this.mismatched;
+        }
+
+        /**
+         * Gets the pixels compared.
+         *
+         * @return the total
+         */
+        public int getTotal() {
+            return this.total;
+        }
+
+        /**
+         * Gets the largest channel difference.
+         *
+         * @return the max delta
+         */
+        public int getMaxDelta() {
+            return this.maxDelta;
+        }
+
+        /**
+         * Gets the diff image.
+         *
+         * @return the diff, null if the sizes differ
+         */
+        public BufferedImage getDiff() {
+            return this.diff;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Object#toString()
+         */
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return this.mismatched + " of " + this.total + " pixels differ, max delta " + this.maxDelta;
+        }
+    }
+
+    /**
+     * Instantiates a new frame comparator.
+     *
+     * @param channelTolerance
+     *            the largest channel difference of equal pixels
+     * @param maxMismatch
+     *            the largest fraction of differing pixels of matching frames
+     */
+    public FrameComparator(final int channelTolerance, final double maxMismatch) {
+        this.channelTolerance = channelTolerance;
+        this.maxMismatch = maxMismatch;
+    }
+
+    /**
+     * Compare a frame against a golden image.
+     *
+     * @param expected
+     *            the golden image
+     * @param actual
+     *            the frame
+     * @return the result
+     */
+    public Result compare(final BufferedImage expected, final BufferedImage actual) {
+        final int w = actual.getWidth();
+        final int h = actual.getHeight();
+        if (expected.getWidth() != w || expected.getHeight() != h) {
+            return new Result(w * h, w * h, 255, false, null);
+        }
+        final BufferedImage diff = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        int mismatched = 0;
+        int maxDelta = 0;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                final int a = expected.getRGB(x, y);
+                final int b = actual.getRGB(x, y);
+                int delta = 0;
+                for (int shift = 0; shift < 24; shift += 8) {
+                    delta = Math.max(delta, Math.abs((a >> shift & 0xff) - (b >> shift & 0xff)));
+                }
+                maxDelta = Math.max(maxDelta, delta);
+                if (delta > this.channelTolerance) {
+                    mismatched++;
+                    diff.setRGB(x, y, DIFF_COLOR);
+                } else {
+                    diff.setRGB(x, y, b >> 2 & 0x3f3f3f);
+                }
+            }
+        }
+        return new Result(mismatched, w * h, maxDelta, mismatched <= this.maxMismatch * w * h, diff);
+    }
+}
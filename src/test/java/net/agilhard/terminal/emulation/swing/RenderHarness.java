@@ -0,0 +1,253 @@
+/*
+ * RenderHarness
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+
+import net.agilhard.terminal.emulation.BackBuffer;
+import net.agilhard.terminal.emulation.RequestOrigin;
+import net.agilhard.terminal.emulation.ScrollBuffer;
+import net.agilhard.terminal.emulation.Style;
+import net.agilhard.terminal.emulation.StyleState;
+import net.agilhard.terminal.emulation.StyledRunConsumer;
+
+/**
+ * Drives a {@link TermPanel} headlessly the way an emulator does: text is written to a real {@link BackBuffer},
+ * scrolls go to the panel and then to the back buffer, and frames pump the damage. Paths that read the buffers
+ * again, such as client scrolling, collapsed frames and resizes, therefore draw real content.
+ *
+ * <p>
+ * Rows are zero based here and converted to the one based rows of the emulation. Everything that makes frames
+ * depend on timing is switched off: the flood governor, link detection and hibernation, unless a scenario turns it
+ * on again. All methods must be called on the event dispatch thread.
+ * </p>
+ */
+final class RenderHarness {
+
+    /** The initial columns. */
+    private static final int COLUMNS = 80;
+
+    /** The initial rows. */
+    private static final int ROWS = 24;
+
+    /** The style state. */
+    private final StyleState styleState;
+
+    /** The back buffer. */
+    private final BackBuffer backBuffer;
+
+    /** The panel. */
+    private final TermPanel panel;
+
+    /**
+     * Instantiates a new render harness on fresh buffers.
+     */
+    RenderHarness() {
+        this.styleState = new StyleState();
+        this.backBuffer = new BackBuffer(COLUMNS, ROWS, this.styleState);
+        this.panel = new TermPanel(this.backBuffer, new ScrollBuffer(), this.styleState);
+        this.panel.setFloodGovernorEnabled(false);
+        this.panel.setLinkDetectionEnabled(false);
+        this.panel.setHibernationEnabled(false);
+    }
+
+    /**
+     * Gets the panel.
+     *
+     * @return the panel
+     */
+    TermPanel getPanel() {
+        return this.panel;
+    }
+
+    /**
+     * Resize the terminal.
+     *
+     * @param columns
+     *            the columns
+     * @param rows
+     *            the rows
+     */
+    void resize(final int columns, final int rows) {
+        this.panel.doResize(new Dimension(columns, rows), RequestOrigin.User);
+    }
+
+    /**
+     * Set the style of the text written from now on.
+     *
+     * @param style
+     *            the style
+     */
+    void style(final Style style) {
+        this.styleState.setCurrent(style);
+    }
+
+    /**
+     * Write text to the back buffer.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @param text
+     *            the text
+     */
+    void text(final int x, final int y, final String text) {
+        this.backBuffer.lock();
+        try {
+            this.backBuffer.writeString(x, y + 1, text);
+        } finally {
+            this.backBuffer.unlock();
+        }
+    }
+
+    /**
+     * Fill the screen with numbered lines.
+     *
+     * @param seed
+     *            the number of the first line
+     */
+    void fill(final int seed) {
+        final Dimension size = this.panel.getTermSize();
+        for (int y = 0; y < size.height; y++) {
+            final StringBuilder line = new StringBuilder();
+            line.append("line ").append(seed + y).append(' ');
+            for (int x = line.length(); x < size.width; x++) {
+                line.append((char) ('!' + (seed + x * 7 + y * 13) % 94));
+            }
+            this.text(0, y, line.substring(0, size.width));
+        }
+    }
+
+    /**
+     * Scroll an area as the emulator does: the panel first moves lines leaving the top to the scroll buffer, then
+     * the back buffer scrolls.
+     *
+     * @param y
+     *            the first row of the moved area, zero based like copyArea; scrolling up by n drops the n rows above
+     * @param h
+     *            the row count of the moved area
+     * @param dy
+     *            the distance, negative to scroll up
+     */
+    void scroll(final int y, final int h, final int dy) {
+        this.backBuffer.lock();
+        try {
+            this.panel.scrollArea(y, h, dy);
+            this.backBuffer.scrollArea(y, h, dy);
+        } finally {
+            this.backBuffer.unlock();
+        }
+    }
+
+    /**
+     * Move the cursor.
+     *
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     */
+    void cursor(final int x, final int y) {
+        this.panel.setCursor(x, y);
+    }
+
+    /**
+     * Scroll the view, as the scroll bar does.
+     *
+     * @param origin
+     *            the first visible row, negative in the history
+     */
+    void clientScroll(final int origin) {
+        this.panel.getBoundedRangeModel().setValue(origin);
+    }
+
+    /**
+     * Select.
+     *
+     * @param x0
+     *            the start column
+     * @param y0
+     *            the start row
+     * @param x1
+     *            the end column
+     * @param y1
+     *            the end row
+     * @param mode
+     *            the selection mode
+     */
+    void select(final int x0, final int y0, final int x1, final int y1, final SelectionMode mode) {
+        this.panel.setSelection(new Point(x0, y0), new Point(x1, y1), mode);
+    }
+
+    /**
+     * Pump the whole screen of the back buffer, the reference for what frame sinks must have received.
+     *
+     * @param consumer
+     *            the consumer
+     */
+    void pumpScreen(final StyledRunConsumer consumer) {
+        final Dimension size = this.panel.getTermSize();
+        this.backBuffer.lock();
+        try {
+            this.backBuffer.pumpRuns(0, 0, size.width, size.height, consumer);
+        } finally {
+            this.backBuffer.unlock();
+        }
+    }
+
+    /**
+     * Render a frame from the pending scrolls and damage.
+     */
+    void frame() {
+        this.panel.redrawFromDamage();
+    }
+
+    /**
+     * Repaint the whole viewport from the buffers, the reference the incremental frames are checked against.
+     */
+    void repaintAll() {
+        this.backBuffer.lock();
+        try {
+            this.panel.redrawViewport();
+        } finally {
+            this.backBuffer.unlock();
+        }
+    }
+
+    /**
+     * Capture what the panel paints: the off-screen image with cursor and selection.
+     *
+     * @return the image
+     */
+    BufferedImage capture() {
+        final BufferedImage image = new BufferedImage(Math.max(1, this.panel.getPixelWidth()),
+            Math.max(1, this.panel.getPixelHeight()), BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = image.createGraphics();
+        try {
+            this.panel.paintComponent(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * RenderRegressionSuite
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs render scenarios and checks the frames they render incrementally against a full repaint.
+ *
+ * <p>
+ * Every scenario runs on fresh panels and buffers, a few times to warm up and then a number of timed times on the
+ * event dispatch thread. The frame of the last run, built from scrolls and damage, is compared pixel for pixel
+ * against a repaint of the whole viewport from the same buffers in the same JVM, so the check does not depend on the
+ * fonts of the machine. On a mismatch both frames and a diff image are written to the artifact directory.
+ * </p>
+ *
+ * <p>
+ * With a golden directory the frame is also compared against {@code <name>.png} there. A missing golden frame fails
+ * the scenario unless recording. Golden frames depend on the fonts of the machine they were recorded on.
+ * </p>
+ *
+ * <p>
+ * Time budgets are opt-in and need a golden directory, wall clock times are too noisy for shared build machines:
+ * when checked, the median run time must stay within the budget in {@code <name>.budget}, written in recording mode
+ * as the median times some headroom.
+ * </p>
+ */
+final class RenderRegressionSuite {
+
+    /** The default channel tolerance. */
+    private static final int DEFAULT_CHANNEL_TOLERANCE = 16;
+
+    /** The default fraction of pixels allowed to differ. */
+    private static final double DEFAULT_MAX_MISMATCH = 0.001;
+
+    /** The fraction of pixels allowed to differ from the full repaint. */
+    private static final double ORACLE_MAX_MISMATCH = 0.0001;
+
+    /** The default budget headroom over the recorded median. */
+    private static final double DEFAULT_BUDGET_HEADROOM = 2.0;
+
+    /** The Logger. */
+    private final Logger log = LoggerFactory.getLogger(RenderRegressionSuite.class);
+
+    /** The directory frames and diffs of failed scenarios are written to. */
+    private final File artifactDir;
+
+    /** The golden directory, null to check against the full repaint only. */
+    private File goldenDir;
+
+    /**
+     * The comparator of the incremental frame and the full repaint, both rendered in the same JVM. It allows a few
+     * antialiased pixels where glyphs overhang the rows drawn before them, not a single wrong glyph.
+     */
+    private final FrameComparator oracle = new FrameComparator(DEFAULT_CHANNEL_TOLERANCE, ORACLE_MAX_MISMATCH);
+
+    /** The comparator of golden frames. */
+    private FrameComparator comparator = new FrameComparator(DEFAULT_CHANNEL_TOLERANCE, DEFAULT_MAX_MISMATCH);
+
+    /** The recording flag. */
+    private boolean recording;
+
+    /** The budget checking flag. */
+    private boolean checkingBudgets;
+
+    /** The warm-up runs. */
+    private int warmUpRuns = 3;
+
+    /** The timed runs. */
+    private int timedRuns = 10;
+
+    /** The budget headroom. */
+    private double budgetHeadroom = DEFAULT_BUDGET_HEADROOM;
+
+    /**
+     * The Class ScenarioResult.
+     */
+    public static final class ScenarioResult {
+
+        /** The name. */
+        private final String name;
+
+        /** The pixel comparison against the full repaint, null if failed before comparing. */
+        private final FrameComparator.Result pixels;
+
+        /** The median nanos. */
+        private final long medianNanos;
+
+        /** The budget nanos, 0 if none. */
+        private final long budgetNanos;
+
+        /** The passed flag. */
+        private final boolean passed;
+
+        /** The message. */
+        private final String message;
+
+        /**
+         * Instantiates a new scenario result.
+         *
+         * @param name
+         *            the name
+         * @param pixels
+         *            the pixel comparison
+         * @param medianNanos
+         *            the median nanos
+         * @param budgetNanos
+         *            the budget nanos
+         * @param passed
+         *            the passed flag
+         * @param message
+         *            the message
+         */
+        ScenarioResult(final String name, final FrameComparator.Result pixels, final long medianNanos,
+            final long budgetNanos, final boolean passed, final String message) {
+            this.name = name;
+            this.pixels = pixels;
+            this.medianNanos = medianNanos;
+            this.budgetNanos = budgetNanos;
+            this.passed = passed;
+            this.message = message;
+        }
+
+        /**
+         * Gets the name.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Gets the pixel comparison against the full repaint.
+         *
+         * @return the pixels, null if failed before comparing
+         */
+        public FrameComparator.Result getPixels() {
+            return this.pixels;
+        }
+
+        /**
+         * Gets the median run time.
+         *
+         * @return the median nanos
+         */
+        public long getMedianNanos() {
+            return this.medianNanos;
+        }
+
+        /**
+         * Gets the time budget.
+         *
+         * @return the budget nanos, 0 if none
+         */
+        public long getBudgetNanos() {
+            return this.budgetNanos;
+        }
+
+        /**
+         * Checks if passed.
+         *
+         * @return true, if passed
+         */
+        public boolean isPassed() {
+            return this.passed;
+        }
+
+        /**
+         * Gets the message.
+         *
+         * @return the message
+         */
+        public String getMessage() {
+            return this.message;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Object#toString()
+         */
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return this.name + (this.passed ? " passed: " : " FAILED: ") + this.message;
+        }
+    }
+
+    /**
+     * Instantiates a new render regression suite.
+     *
+     * @param artifactDir
+     *            the directory frames and diffs of failed scenarios are written to
+     */
+    RenderRegressionSuite(final File artifactDir) {
+        this.artifactDir = artifactDir;
+    }
+
+    /**
+     * Sets the golden directory.
+     *
+     * @param goldenDir
+     *            the directory of the golden frames and budgets, null to check against the full repaint only
+     */
+    void setGoldenDir(final File goldenDir) {
+        this.goldenDir = goldenDir;
+    }
+
+    /**
+     * Sets the comparator of golden frames.
+     *
+     * @param comparator
+     *            the new comparator
+     */
+    void setComparator(final FrameComparator comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Sets the recording flag.
+     *
+     * @param recording
+     *            true to record golden frames and budgets instead of checking them
+     */
+    void setRecording(final boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Sets the budget checking flag.
+     *
+     * @param checkingBudgets
+     *            true to fail scenarios running over their time budget
+     */
+    void setCheckingBudgets(final boolean checkingBudgets) {
+        this.checkingBudgets = checkingBudgets;
+    }
+
+    /**
+     * Sets the number of runs.
+     *
+     * @param warmUp
+     *            the untimed warm-up runs
+     * @param timed
+     *            the timed runs, at least one
+     */
+    void setRuns(final int warmUp, final int timed) {
+        this.warmUpRuns = Math.max(0, warmUp);
+        this.timedRuns = Math.max(1, timed);
+    }
+
+    /**
+     * Sets the budget headroom.
+     *
+     * @param headroom
+     *            the factor over the median run time recorded as budget
+     */
+    void setBudgetHeadroom(final double headroom) {
+        this.budgetHeadroom = headroom;
+    }
+
+    /**
+     * Run scenarios.
+     *
+     * @param scenarios
+     *            the scenarios
+     * @return the results
+     * @throws IOException
+     *             if golden files cannot be read or written
+     */
+    List<ScenarioResult> run(final List<RenderScenario> scenarios) throws IOException {
+        final List<ScenarioResult> results = new ArrayList<>();
+        for (final RenderScenario scenario : scenarios) {
+            final ScenarioResult result = this.run(scenario);
+            this.log.info("{}", result);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Checks if all passed.
+     *
+     * @param results
+     *            the results
+     * @return true, if all passed
+     */
+    static boolean allPassed(final List<ScenarioResult> results) {
+        for (final ScenarioResult result : results) {
+            if (!result.isPassed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Run a scenario.
+     *
+     * @param scenario
+     *            the scenario
+     * @return the result
+     * @throws IOException
+     *             if golden files cannot be read or written
+     */
+    private ScenarioResult run(final RenderScenario scenario) throws IOException {
+        final String name = scenario.getName();
+        final long[] nanos = new long[this.timedRuns];
+        /* the incremental frame and the full repaint */
+        final BufferedImage[] frame = new BufferedImage[2];
+        try {
+            for (int i = 0; i < this.warmUpRuns + this.timedRuns; i++) {
+                final int run = i - this.warmUpRuns;
+                final boolean last = i == this.warmUpRuns + this.timedRuns - 1;
+                SwingUtilities.invokeAndWait(new Runnable() {
+
+                    @SuppressWarnings("synthetic-access")
+                    @Override
+                    public void run() {
+                        final RenderHarness harness = new RenderHarness();
+                        final long start = System.nanoTime();
+                        scenario.run(harness);
+                        final long elapsed = System.nanoTime() - start;
+                        if (run >= 0) {
+                            nanos[run] = elapsed;
+                        }
+                        if (last) {
+                            frame[0] = harness.capture();
+                            harness.repaintAll();
+                            frame[1] = harness.capture();
+                        }
+                    }
+                });
+            }
+        }
+        catch (final InvocationTargetException e) {
+            this.log.debug("scenario " + name + " failed", e.getCause());
+            return new ScenarioResult(name, null, 0, 0, false, "scenario threw " + e.getCause());
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ScenarioResult(name, null, 0, 0, false, "interrupted");
+        }
+        Arrays.sort(nanos);
+        final long median = nanos[nanos.length / 2];
+
+        final FrameComparator.Result pixels = this.oracle.compare(frame[1], frame[0]);
+        if (!pixels.matches()) {
+            this.writeArtifacts(name, frame[1], frame[0], pixels);
+            return new ScenarioResult(name, pixels, median, 0, false, "incremental frame differs from full repaint, "
+                + pixels);
+        }
+        if (this.goldenDir == null) {
+            return new ScenarioResult(name, pixels, median, 0, true, pixels + ", median " + median + " ns");
+        }
+
+        final File golden = new File(this.goldenDir, name + ".png");
+        final File budgetFile = new File(this.goldenDir, name + ".budget");
+        if (this.recording) {
+            this.goldenDir.mkdirs();
+            ImageIO.write(frame[0], "png", golden);
+            final long budget = (long) (median * this.budgetHeadroom);
+            Files.write(budgetFile.toPath(), Long.toString(budget).getBytes(StandardCharsets.US_ASCII));
+            return new ScenarioResult(name, pixels, median, budget, true, "recorded, budget " + budget + " ns");
+        }
+        if (!golden.isFile()) {
+            return new ScenarioResult(name, pixels, median, 0, false, "no golden frame " + golden);
+        }
+        final FrameComparator.Result goldenPixels = this.comparator.compare(ImageIO.read(golden), frame[0]);
+        long budget = 0;
+        if (budgetFile.isFile()) {
+            budget = Long.parseLong(new String(Files.readAllBytes(budgetFile.toPath()), StandardCharsets.US_ASCII)
+                .trim());
+        }
+        final boolean inBudget = !this.checkingBudgets || budget == 0 || median <= budget;
+        if (!goldenPixels.matches()) {
+            this.writeArtifacts(name, ImageIO.read(golden), frame[0], goldenPixels);
+        }
+        return new ScenarioResult(name, pixels, median, budget, goldenPixels.matches() && inBudget,
+            "golden " + goldenPixels + ", median " + median + " ns of budget "
+                + (budget == 0 ? "none" : budget + " ns") + (this.checkingBudgets ? "" : " (not checked)"));
+    }
+
+    /**
+     * Write the frames and the diff of a failed scenario to the artifact directory.
+     *
+     * @param name
+     *            the scenario name
+     * @param expected
+     *            the expected frame
+     * @param actual
+     *            the actual frame
+     * @param pixels
+     *            the comparison
+     * @throws IOException
+     *             if the files cannot be written
+     */
+    private void writeArtifacts(final String name, final BufferedImage expected, final BufferedImage actual,
+        final FrameComparator.Result pixels) throws IOException {
+        this.artifactDir.mkdirs();
+        ImageIO.write(expected, "png", new File(this.artifactDir, name + ".expected.png"));
+        ImageIO.write(actual, "png", new File(this.artifactDir, name + ".actual.png"));
+        if (pixels.getDiff() != null) {
+            ImageIO.write(pixels.getDiff(), "png", new File(this.artifactDir, name + ".diff.png"));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * RenderRegressionTest
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Renders the built-in scenarios and checks every frame built from scrolls and damage against a full repaint.
+ * Frames and diffs of failed scenarios are written to {@code target/render-regression}.
+ *
+ * <p>
+ * Run with {@code -Drender.golden=<dir>} to also check against the golden frames in a directory, with
+ * {@code -Drender.record=true} to record them and their time budgets there, and with {@code -Drender.budgets=true}
+ * to check the time budgets. Golden frames and budgets depend on the machine and are not checked by default.
+ * </p>
+ */
+public class RenderRegressionTest {
+
+    /** The artifact directory, relative to the module. */
+    private static final String ARTIFACT_DIR = "target/render-regression";
+
+    /**
+     * Render the default scenarios.
+     *
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    @Test
+    public void defaultScenarios() throws IOException {
+        final RenderRegressionSuite suite = new RenderRegressionSuite(new File(ARTIFACT_DIR));
+        final String golden = System.getProperty("render.golden");
+        suite.setGoldenDir(golden != null ? new File(golden) : null);
+        suite.setRecording(Boolean.getBoolean("render.record"));
+        suite.setCheckingBudgets(Boolean.getBoolean("render.budgets"));
+        final List<RenderRegressionSuite.ScenarioResult> results = suite.run(RenderScenarios.defaults());
+
+        final StringBuilder failures = new StringBuilder();
+        for (final RenderRegressionSuite.ScenarioResult result : results) {
+            if (!result.isPassed()) {
+                failures.append(result).append('\n');
+            }
+        }
+        Assert.assertTrue(failures.toString(), failures.length() == 0);
+    }
+}
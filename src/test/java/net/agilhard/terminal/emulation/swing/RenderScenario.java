@@ -0,0 +1,45 @@
+/*
+ * RenderScenario
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+/**
+ * A scripted sequence of display calls rendered by a {@link RenderRegressionSuite}.
+ *
+ * <p>
+ * A scenario must be deterministic: the suite runs it several times on fresh panels, times every run and compares
+ * the final frame against a golden image.
+ * </p>
+ */
+interface RenderScenario {
+
+    /**
+     * Gets the name, used for the golden image and budget file names.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Run the scenario. Called on the event dispatch thread.
+     *
+     * @param harness
+     *            the harness driving the panel
+     */
+    void run(RenderHarness harness);
+}
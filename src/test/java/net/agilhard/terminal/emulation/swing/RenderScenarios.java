@@ -0,0 +1,260 @@
+/*
+ * RenderScenarios
+ *
+ * Copyright (C) 2018 Bernd Eilers
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Library General Public License for more details.
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package net.agilhard.terminal.emulation.swing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The built-in render scenarios, one per optimized path of {@link TermPanel}.
+ */
+final class RenderScenarios {
+
+    /** The columns. */
+    private static final int COLUMNS = 80;
+
+    /** The rows. */
+    private static final int ROWS = 24;
+
+    /**
+     * Instantiates a new render scenarios.
+     */
+    private RenderScenarios() {
+        // static only
+    }
+
+    /**
+     * Gets the default scenarios.
+     *
+     * @return the scenarios
+     */
+    static List<RenderScenario> defaults() {
+        final List<RenderScenario> scenarios = new ArrayList<>();
+        scenarios.add(scrollRegion());
+        scenarios.add(clientScroll());
+        scenarios.add(resize());
+        scenarios.add(streamSelection());
+        scenarios.add(blockSelection());
+        return scenarios;
+    }
+
+    /**
+     * Scrolls within a region up and down between frames, exercising the pending scrolls.
+     *
+     * @return the scenario
+     */
+    static RenderScenario scrollRegion() {
+        return new RenderScenario() {
+
+            @Override
+            public String getName() {
+                return "scroll-region";
+            }
+
+            @Override
+            public void run(final RenderHarness h) {
+                h.resize(COLUMNS, ROWS);
+                h.fill(0);
+                h.frame();
+                /* rows 4 to 14: rows 5 to 14 move up, row 4 leaves, row 14 is new */
+                for (int i = 0; i < 20; i++) {
+                    h.scroll(5, 10, -1);
+                    h.text(0, 14, "region line " + i);
+                    if (i % 3 == 0) {
+                        h.frame();
+                    }
+                }
+                /* rows 5 to 14 move down into 7 to 16, rows 5 and 6 are new */
+                h.scroll(5, 10, 2);
+                h.text(0, 5, "inserted 1");
+                h.text(0, 6, "inserted 2");
+                h.cursor(10, 6);
+                h.frame();
+            }
+        };
+    }
+
+    /**
+     * Builds up history, then scrolls the view back and forth, exercising the image shifts and the rows they expose
+     * being redrawn from the scroll buffer.
+     *
+     * @return the scenario
+     */
+    static RenderScenario clientScroll() {
+        return new RenderScenario() {
+
+            @Override
+            public String getName() {
+                return "client-scroll";
+            }
+
+            @Override
+            public void run(final RenderHarness h) {
+                h.resize(COLUMNS, ROWS);
+                h.fill(0);
+                for (int i = 0; i < 60; i++) {
+                    h.scroll(1, ROWS, -1);
+                    h.text(0, ROWS - 1, "output " + i);
+                    if (i % 8 == 0) {
+                        h.frame();
+                    }
+                }
+                h.frame();
+                final int[] origins = { -10, -13, -40, -5, -6, 0, -20 };
+                for (final int origin : origins) {
+                    h.clientScroll(origin);
+                    h.frame();
+                }
+            }
+        };
+    }
+
+    /**
+     * Grows and shrinks the terminal, exercising setUpImages.
+     *
+     * @return the scenario
+     */
+    static RenderScenario resize() {
+        return new RenderScenario() {
+
+            @Override
+            public String getName() {
+                return "resize";
+            }
+
+            @Override
+            public void run(final RenderHarness h) {
+                h.resize(COLUMNS, ROWS);
+                h.fill(0);
+                h.frame();
+                h.resize(COLUMNS + 20, ROWS + 6);
+                h.fill(100);
+                h.frame();
+                h.resize(COLUMNS - 20, ROWS - 4);
+                h.text(0, 0, "after shrink");
+                h.frame();
+            }
+        };
+    }
+
+    /**
+     * Floods the terminal with lines, one frame per screen of output, exercising the flood governor. Not one of the
+     * default scenarios, its frames depend on timing once the governor is enabled.
+     *
+     * @param lines
+     *            the number of lines
+     * @return the scenario
+     */
+    static RenderScenario flood(final int lines) {
+        return new RenderScenario() {
+
+            @Override
+            public String getName() {
+                return "flood";
+            }
+
+            @Override
+            public void run(final RenderHarness h) {
+                h.resize(COLUMNS, ROWS);
+                h.fill(0);
+                h.frame();
+                for (int i = 0; i < lines; i++) {
+                    h.scroll(1, ROWS, -1);
+                    h.text(0, ROWS - 1, "flood line " + i + " of " + lines);
+                    if (i % ROWS == 0) {
+                        h.frame();
+                    }
+                }
+                h.frame();
+            }
+        };
+    }
+
+    /**
+     * Repaints the whole screen in place many times, like paging in vim or less.
+     *
+     * @param pages
+     *            the number of pages
+     * @return the scenario
+     */
+    static RenderScenario paging(final int pages) {
+        return new RenderScenario() {
+
+            @Override
+            public String getName() {
+                return "paging";
+            }
+
+            @Override
+            public void run(final RenderHarness h) {
+                h.resize(COLUMNS, ROWS);
+                for (int page = 0; page < pages; page++) {
+                    h.fill(page * ROWS);
+                    h.frame();
+                }
+            }
+        };
+    }
+
+    /**
+     * Selects a stream of text over several rows, exercising the selection overlay.
+     *
+     * @return the scenario
+     */
+    static RenderScenario streamSelection() {
+        return new RenderScenario() {
+
+            @Override
+            public String getName() {
+                return "stream-selection";
+            }
+
+            @Override
+            public void run(final RenderHarness h) {
+                h.resize(COLUMNS, ROWS);
+                h.fill(0);
+                h.frame();
+                h.select(30, 3, 12, 9, SelectionMode.STREAM);
+            }
+        };
+    }
+
+    /**
+     * Selects a block, exercising the selection overlay.
+     *
+     * @return the scenario
+     */
+    static RenderScenario blockSelection() {
+        return new RenderScenario() {
+
+            @Override
+            public String getName() {
+                return "block-selection";
+            }
+
+            @Override
+            public void run(final RenderHarness h) {
+                h.resize(COLUMNS, ROWS);
+                h.fill(0);
+                h.frame();
+                h.select(40, 12, 10, 4, SelectionMode.BLOCK);
+            }
+        };
+    }
+}